@@ -0,0 +1,16 @@
+package main;
+
+import java.util.*;
+
+//Runs the JMH benchmarks, writing the results as JSON to jmh-result.json unless another result format is asked for
+//so that runs can be compared by other tools; every other argument is passed on to JMH, -h lists them
+public class Benchmarks {
+    public static void main(String[] args) throws Exception {
+        List<String> options = new ArrayList<>(Arrays.asList(args));
+        if(!options.contains("-rf")){
+            options.add(0, "-rf");
+            options.add(1, "json");
+        }
+        org.openjdk.jmh.Main.main(options.toArray(new String[0]));
+    }
+}
@@ -0,0 +1,44 @@
+package main;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+//Entry.toString and Entry.fromString, the text save format, one entry per operation
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EntryBench extends PortfolioParams {
+    private Entry[] generated;
+    private String[] lines;
+    private int next = 0;
+
+    @Setup
+    public void generate(){
+        generated = generator().generate();
+        lines = new String[generated.length];
+        for(int i = 0; i < generated.length; i++){
+            lines[i] = generated[i].toString();
+        }
+    }
+
+    //Walks through every entry rather than repeating one, so the caches see a realistic spread
+    private int nextIndex(){
+        int index = next;
+        next = index + 1 == generated.length ? 0 : index + 1;
+        return index;
+    }
+
+    @Benchmark
+    public String toLine(){
+        return generated[nextIndex()].toString();
+    }
+
+    @Benchmark
+    public void fromLine(Blackhole blackhole){
+        blackhole.consume(Entry.fromString(lines[nextIndex()]));
+    }
+}
@@ -0,0 +1,67 @@
+package main;
+
+import java.io.*;
+import java.util.*;
+
+//Times writing entries in the save line format and parsing them back, and checks every line survives the round trip
+//Run from the repository root:
+//  javac -d out main/*.java bench/main/EntryRoundTripBench.java && java -cp out main.EntryRoundTripBench [entries] [tags per entry]
+public class EntryRoundTripBench {
+    public static void main(String[] args) throws IOException {
+        int numEntries = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int numTags = args.length > 1 ? Integer.parseInt(args[1]) : 8;
+
+        Random random = new Random(42);
+        Entry[] entries = new Entry[numEntries];
+        for(int i = 0; i < numEntries; i++){
+            entries[i] = new Entry("T" + random.nextInt(5000), random.nextInt(1000) / 4f, random.nextBoolean(), random.nextInt(100000) / 100f, Currency.values()[random.nextInt(Currency.values().length)]);
+            for(int j = 0; j < numTags; j++){
+                entries[i].addValue("Tag" + j, "Value" + random.nextInt(20));
+            }
+        }
+
+        //Warm up, then measure
+        String text = null;
+        for(int round = 0; round < 5; round++){
+            long start = System.nanoTime();
+            StringWriter out = new StringWriter(numEntries * (40 + numTags * 16));
+            try(BufferedWriter bw = new BufferedWriter(out)){
+                StringBuilder line = new StringBuilder(128);
+                for(Entry i : entries){
+                    i.writeTo(bw, line);
+                }
+            }
+            text = out.toString();
+            long written = System.nanoTime();
+
+            int parsed = 0;
+            try(BufferedReader br = new BufferedReader(new StringReader(text))){
+                String line;
+                while((line = br.readLine()) != null){
+                    if(Entry.fromString(line) != null)
+                        parsed++;
+                }
+            }
+            long read = System.nanoTime();
+
+            long displayed = 0;
+            for(Entry i : entries){
+                displayed += i.displayLine().length();
+            }
+            long shown = System.nanoTime();
+
+            System.out.printf("Round %d: write %.1f ms, parse %.1f ms (%d entries), display %.1f ms (%d chars)%n", round, (written - start) / 1e6, (read - written) / 1e6, parsed, (shown - read) / 1e6, displayed);
+        }
+
+        //Every entry must come back exactly as it was written
+        try(BufferedReader br = new BufferedReader(new StringReader(text))){
+            for(Entry i : entries){
+                String line = br.readLine();
+                String again = Entry.fromString(line).toString();
+                if(!again.equals(i.toString()))
+                    throw new IllegalStateException("Round trip changed " + line + " into " + again);
+            }
+        }
+        System.out.println("Round trip verified for " + numEntries + " entries");
+    }
+}
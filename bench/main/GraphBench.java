@@ -0,0 +1,62 @@
+package main;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+//Db.findGraphables on a loaded database, unfiltered from the running totals and filtered through the tag index
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Dstocks.dir=target/bench-db")
+public class GraphBench extends PortfolioParams {
+    private final ArrayList<String> none = new ArrayList<>();
+    private final ArrayList<String> incTag = new ArrayList<>();
+    private final ArrayList<String> incVal = new ArrayList<>();
+    private final ArrayList<String> remTag = new ArrayList<>();
+    private final ArrayList<String> remVal = new ArrayList<>();
+    private String axis;
+
+    @Setup
+    public void load() throws IOException {
+        generator().writeSaveFile(Paths.get(System.getProperty("stocks.dir")));
+        Db.readDb();
+        if(Db.getNumEntries() != entries)
+            throw new IllegalStateException("Loaded " + Db.getNumEntries() + " of " + entries + " entries");
+
+        //Group by the first tag, keep one value of the second and drop one value of the third, as far as there are tags
+        axis = tags > 0 ? PortfolioGenerator.tagName(0) : "";
+        if(tags > 1){
+            incTag.add(PortfolioGenerator.tagName(1));
+            incVal.add(PortfolioGenerator.valueName(0));
+        }
+        if(tags > 2){
+            remTag.add(PortfolioGenerator.tagName(2));
+            remVal.add(PortfolioGenerator.valueName(0));
+        }
+    }
+
+    @Benchmark
+    public Map<String, Float> byTicker(){
+        return Db.findGraphables("", none, none, none, none);
+    }
+
+    @Benchmark
+    public Map<String, Float> byTag(){
+        return Db.findGraphables(axis, none, none, none, none);
+    }
+
+    @Benchmark
+    public Map<String, Float> byTagFiltered(){
+        return Db.findGraphables(axis, incVal, incTag, remVal, remTag);
+    }
+
+    @Benchmark
+    public Map<String, Float> byTickerTop20(){
+        return Db.findGraphables("", none, none, none, none, 20);
+    }
+}
@@ -0,0 +1,99 @@
+package main;
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.*;
+
+//Makes up portfolios of any shape for the benchmarks, the same every time for the same settings
+//Every entry holds every tag, with values spread evenly over the tag's cardinality
+//The currency mix is given as weights, e.g. CAD:60/USD:30/EUR:10; slashes rather than commas, as JMH splits parameters on
+//commas
+//Also writes a save file for trying the program, Cli or local server on a large portfolio:
+//  java -cp bench/target/benchmarks.jar main.PortfolioGenerator DIR [entries] [tags] [cardinality] [currency mix]
+public class PortfolioGenerator {
+    private final int numEntries;
+    private final int numTags;
+    private final int cardinality;
+    private final Currency[] currencies; //Each currency repeated by its weight, so a uniform pick follows the mix
+    private final long seed;
+
+    public PortfolioGenerator(int numEntries, int numTags, int cardinality, String currencyMix, long seed){
+        if(numEntries < 1 || numTags < 0 || cardinality < 1)
+            throw new IllegalArgumentException("Needs at least one entry and one value per tag");
+        this.numEntries = numEntries;
+        this.numTags = numTags;
+        this.cardinality = cardinality;
+        this.currencies = parseMix(currencyMix);
+        this.seed = seed;
+    }
+
+    //The tags are named Tag0, Tag1... and their values Value0, Value1...
+    static String tagName(int tag){
+        return "Tag" + tag;
+    }
+
+    static String valueName(int value){
+        return "Value" + value;
+    }
+
+    private static Currency[] parseMix(String mix){
+        List<Currency> weighted = new ArrayList<>();
+        for(String i : mix.split("/")){
+            String[] parts = i.trim().split(":");
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+            if(weight < 0)
+                throw new IllegalArgumentException("Negative weight in " + mix);
+            weighted.addAll(Collections.nCopies(weight, Currency.valueOf(parts[0].trim())));
+        }
+        if(weighted.isEmpty())
+            throw new IllegalArgumentException("No currency has any weight in " + mix);
+        return weighted.toArray(new Currency[0]);
+    }
+
+    //A new set of entries, none of them in the database yet
+    //Around two entries share each ticker, as when a position is held in more than one account
+    Entry[] generate(){
+        Random random = new Random(seed);
+        int numTickers = Math.max(1, numEntries / 2);
+        Entry[] entries = new Entry[numEntries];
+        for(int i = 0; i < numEntries; i++){
+            entries[i] = new Entry("T" + random.nextInt(numTickers), random.nextInt(4000) / 4f, random.nextBoolean(), random.nextInt(100000) / 100f, currencies[random.nextInt(currencies.length)]);
+            for(int tag = 0; tag < numTags; tag++){
+                entries[i].addValue(tagName(tag), valueName(random.nextInt(cardinality)));
+            }
+        }
+        return entries;
+    }
+
+    //Save file contents holding a new set of entries and default settings
+    DbFile.Contents contents(){
+        DbFile.Contents contents = new DbFile.Contents();
+        contents.baseRates = new float[Currency.values().length];
+        Arrays.fill(contents.baseRates, 1f);
+        contents.priceTime = LocalDateTime.now();
+        contents.dbTime = contents.priceTime;
+        contents.entries = Arrays.asList(generate());
+        return contents;
+    }
+
+    //Writes the save file into the directory, replacing any save file and journal already there
+    void writeSaveFile(Path dir) throws IOException {
+        Files.createDirectories(dir);
+        Files.deleteIfExists(dir.resolve("prevInfo.journal"));
+        DbFile.writeBinary(dir.resolve("prevInfo.bin"), contents());
+    }
+
+    public static void main(String[] args) throws IOException {
+        if(args.length < 1){
+            System.err.println("Usage: main.PortfolioGenerator DIR [entries] [tags] [cardinality] [currency mix]");
+            System.exit(1);
+        }
+        int numEntries = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+        int numTags = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+        int cardinality = args.length > 3 ? Integer.parseInt(args[3]) : 20;
+        String mix = args.length > 4 ? args[4] : "CAD:60/USD:30/EUR:10";
+        new PortfolioGenerator(numEntries, numTags, cardinality, mix, 42).writeSaveFile(Paths.get(args[0]));
+        System.out.println("Wrote " + numEntries + " entries to " + Paths.get(args[0]).resolve("prevInfo.bin"));
+    }
+}
@@ -0,0 +1,25 @@
+package main;
+
+import org.openjdk.jmh.annotations.*;
+
+//Shape of the generated portfolio, shared by every benchmark and set from the command line, e.g.
+//  -p entries=1000,100000 -p tags=4 -p cardinality=200 -p currencies=CAD:50/USD:50
+//JMH needs the parameters public, the rest of the benchmark state stays package-private like the program
+@State(Scope.Benchmark)
+public abstract class PortfolioParams {
+    @Param("100000")
+    public int entries;
+
+    @Param("8")
+    public int tags;
+
+    @Param("20")
+    public int cardinality;
+
+    @Param("CAD:60/USD:30/EUR:10")
+    public String currencies;
+
+    PortfolioGenerator generator(){
+        return new PortfolioGenerator(entries, tags, cardinality, currencies, 42);
+    }
+}
@@ -0,0 +1,84 @@
+package main;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.LocalDate;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+//Lookups in one ticker's saved closing prices, as /api/entries?on=DATE and /api/prices make
+//Prices take a random walk of up to 1% a weekday
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class PriceSeriesBench {
+    @Param("20")
+    public int years;
+
+    private PriceHistory history;
+    private Path dir;
+    private PriceSeries series;
+    private LocalDate first;
+    private LocalDate last;
+    private int span;
+    private Random random;
+
+    @Setup
+    public void write() throws IOException {
+        dir = Files.createTempDirectory("history");
+        history = new PriceHistory(dir);
+        series = history.get("TSX:RY");
+        first = LocalDate.of(2000, 1, 3);
+        last = first.plusYears(years);
+        span = (int) (last.toEpochDay() - first.toEpochDay());
+
+        int[] days = new int[span];
+        long[] ticks = new long[span];
+        int length = 0;
+        Random walk = new Random(42);
+        double price = 100;
+        for(LocalDate i = first; i.isBefore(last); i = i.plusDays(1)){
+            if(i.getDayOfWeek().getValue() > 5)
+                continue;
+            price *= 1 + (walk.nextDouble() - 0.5) / 50;
+            days[length] = (int) i.toEpochDay();
+            ticks[length] = Math.round(price * PriceSeries.TICKS);
+            length++;
+        }
+        series.append(days, ticks, length);
+        System.out.printf("%n%d closing prices take %,d bytes%n", length, Files.size(dir.resolve(PriceHistory.fileName("TSX:RY"))));
+        random = new Random(42);
+    }
+
+    @TearDown
+    public void delete() throws IOException {
+        history.close();
+        Files.delete(dir.resolve(PriceHistory.fileName("TSX:RY")));
+        Files.delete(dir);
+    }
+
+    @Benchmark
+    public float priceOnRandomDay(){
+        return series.priceOn(first.plusDays(random.nextInt(span)));
+    }
+
+    //Finding the open series first, as Db.valueOn does for every entry
+    @Benchmark
+    public float findThenPriceOn(){
+        return history.find("TSX:RY").priceOn(last);
+    }
+
+    @Benchmark
+    public PriceSeries.Points lastYear(){
+        return series.range(last.minusYears(1), last);
+    }
+
+    @Benchmark
+    public PriceSeries.Points allTime(){
+        return series.range(first, last);
+    }
+}
@@ -0,0 +1,55 @@
+package main;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+//Db.readDb and Db.writeDb against a generated save file
+//Loading fills the database's static state, which can't be emptied again, so each fork loads exactly once and
+//the time is taken over several forks; that is also how the program loads, once, on a fresh JVM
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class SaveFileBench {
+    @State(Scope.Benchmark)
+    public static class Saved extends PortfolioParams {
+        boolean read = false;
+
+        @Setup
+        public void write() throws IOException {
+            generator().writeSaveFile(Paths.get(System.getProperty("stocks.dir")));
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Loaded extends Saved {
+        @Setup
+        public void load(){
+            Db.readDb();
+        }
+    }
+
+    @Benchmark
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(value = 10, jvmArgsAppend = "-Dstocks.dir=target/bench-db")
+    public int readDb(Saved saved){
+        if(saved.read) //A second load would add every entry again
+            throw new IllegalStateException("readDb is measured once per fork, run it with -i 1 -wi 0 and raise -f instead");
+        saved.read = true;
+        Db.readDb();
+        return Db.getNumEntries();
+    }
+
+    //Saving can be repeated, so it is measured warm like the other benchmarks
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @Warmup(iterations = 3, time = 1)
+    @Measurement(iterations = 5, time = 1)
+    @Fork(value = 1, jvmArgsAppend = "-Dstocks.dir=target/bench-db")
+    public boolean writeDb(Loaded loaded){
+        if(!Db.writeDb())
+            throw new IllegalStateException("Save failed: " + Db.getSaveError());
+        return true;
+    }
+}
@@ -0,0 +1,94 @@
+package main;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+//SnapshotLog queries over a value history of one snapshot a day, as "Update all prices" once a day would record
+//Prices take a random walk of up to 1% a day; the size of the log is printed once it is written
+//Its own defaults, as a portfolio of PortfolioParams' size recorded for years would take minutes to write
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SnapshotBench {
+    @Param("100")
+    public int entries;
+
+    @Param("3")
+    public int tags;
+
+    @Param("10")
+    public int cardinality;
+
+    @Param("3650")
+    public int days;
+
+    private Path file;
+    private SnapshotLog log;
+    private Instant end;
+    private int[] serials;
+    private String[] names;
+
+    @Setup
+    public void record() throws IOException {
+        Entry[] generated = new PortfolioGenerator(entries, tags, cardinality, "CAD:1", 42).generate();
+        float[] prices = new float[entries];
+        for(int i = 0; i < entries; i++){
+            prices[i] = generated[i].getPriceF();
+        }
+
+        file = Files.createTempFile("snapshots", ".bin");
+        log = SnapshotLog.open(file);
+        Instant start = LocalDateTime.of(2015, 1, 1, 17, 0).toInstant(ZoneOffset.UTC);
+        Random random = new Random(42);
+        float[] values = new float[entries];
+        for(int day = 0; day < days; day++){
+            Map<String, Map<String, Float>> groups = new HashMap<>();
+            for(int i = 0; i < entries; i++){
+                prices[i] *= 1 + (random.nextFloat() - 0.5f) / 50;
+                values[i] = prices[i] * generated[i].getQuantityF();
+                groups.computeIfAbsent("", k -> new HashMap<>()).merge(generated[i].getTicker(), values[i], Float::sum);
+                for(Map.Entry<String, String> j : generated[i].getIterable()){
+                    groups.computeIfAbsent(j.getKey(), k -> new HashMap<>()).merge(j.getValue(), values[i], Float::sum);
+                }
+            }
+            log.append(start.plus(Duration.ofDays(day)), values, entries, groups);
+        }
+        end = start.plus(Duration.ofDays(days - 1));
+        System.out.printf("%n%d snapshots of %d entries take %,d bytes%n", log.size(), entries, log.bytes());
+
+        serials = new int[Math.min(entries, 10)];
+        names = new String[serials.length];
+        for(int i = 0; i < serials.length; i++){
+            serials[i] = i;
+            names[i] = "Entry" + i;
+        }
+    }
+
+    @TearDown
+    public void delete() throws IOException {
+        log.close();
+        Files.delete(file);
+    }
+
+    @Benchmark
+    public SnapshotLog.History tagLastYear() throws IOException {
+        return log.groups(PortfolioGenerator.tagName(0), end.minus(Duration.ofDays(365)), end);
+    }
+
+    @Benchmark
+    public SnapshotLog.History tickersLastMonth() throws IOException {
+        return log.groups("", end.minus(Duration.ofDays(30)), end);
+    }
+
+    @Benchmark
+    public SnapshotLog.History entriesAllTime() throws IOException {
+        return log.entries(serials, names, Instant.MIN, end);
+    }
+}
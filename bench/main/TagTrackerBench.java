@@ -0,0 +1,45 @@
+package main;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+//TagTracker.addEntry and removeEntry, both on a full index and building one from nothing
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TagTrackerBench extends PortfolioParams {
+    private Entry[] generated;
+    private TagTracker full;
+    private int next = 0;
+
+    @Setup
+    public void fill(){
+        generated = generator().generate();
+        full = new TagTracker();
+        for(int i = 0; i < generated.length; i++){
+            full.addEntry(i, generated[i]);
+        }
+    }
+
+    //Takes one entry out of the full index and puts it back, so the index is the same after every operation
+    @Benchmark
+    public boolean removeThenAdd(){
+        int id = next;
+        next = id + 1 == generated.length ? 0 : id + 1;
+        return full.removeEntry(id, generated[id]) | full.addEntry(id, generated[id]);
+    }
+
+    //Indexes every entry, as loading does; the time is for the whole portfolio, not per entry
+    @Benchmark
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public TagTracker addAll(){
+        TagTracker tracker = new TagTracker();
+        for(int i = 0; i < generated.length; i++){
+            tracker.addEntry(i, generated[i]);
+        }
+        return tracker;
+    }
+}
@@ -0,0 +1,383 @@
+package main;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.time.*;
+import java.time.format.DateTimeParseException;
+import com.sun.net.httpserver.*;
+
+//Optional local HTTP server answering portfolio queries as JSON, for other programs
+//Only listens on the loopback address. Every request reads an immutable snapshot of the database, so requests never
+//wait on edits or price refreshes, and they never wait on each other
+//The value and price histories are read as far as they went when the snapshot was taken, so every answer, dates and
+//prices included, is of the moment in its "taken" field
+//After a change the snapshot is rebuilt by the next request, at most once per stocks.apiSnapshotMillis; requests
+//arriving during the rebuild are answered from the previous snapshot
+//  GET /api/entries?include=TAG=VALUE&exclude=TAG=VALUE&offset=N&limit=N&on=DATE
+//  GET /api/tags
+//  GET /api/totals?by=TAG&include=TAG=VALUE&exclude=TAG=VALUE&top=N
+//  GET /api/history?by=TAG&top=N&from=DATE&to=DATE or /api/history?entry=ID&from=DATE&to=DATE
+//  GET /api/prices?ticker=TICKER&from=DATE&to=DATE
+class ApiServer implements DbListener {
+    private static final long SNAPSHOT_NANOS = TimeUnit.MILLISECONDS.toNanos(Long.getLong("stocks.apiSnapshotMillis", 1000));
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final CountDownLatch stopped = new CountDownLatch(1);
+
+    private volatile PortfolioSnapshot snapshot;
+    private volatile boolean stale = false;
+    private volatile long builtAt;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    //A query that can't be answered, reported to the client as a 400
+    private static class BadRequest extends Exception {
+        BadRequest(String message){
+            super(message);
+        }
+    }
+
+    private ApiServer(HttpServer server, ExecutorService executor){
+        this.server = server;
+        this.executor = executor;
+    }
+
+    //Starts serving on the port, 0 picks a free one; call once the database is loaded
+    static ApiServer start(int port) throws IOException {
+        HttpServer server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        ExecutorService executor = newExecutor();
+        ApiServer api = new ApiServer(server, executor);
+        api.snapshot = Db.snapshot();
+        api.builtAt = System.nanoTime();
+        Db.addListener(api);
+
+        server.createContext("/api/entries", exchange -> api.handle(exchange, api::entries));
+        server.createContext("/api/tags", exchange -> api.handle(exchange, api::tags));
+        server.createContext("/api/totals", exchange -> api.handle(exchange, api::totals));
+        server.createContext("/api/history", exchange -> api.handle(exchange, api::history));
+        server.createContext("/api/prices", exchange -> api.handle(exchange, api::prices));
+        server.createContext("/", exchange -> api.handle(exchange, null));
+        server.setExecutor(executor);
+        server.start();
+        return api;
+    }
+
+    //A virtual thread per request where the runtime has them (Java 21 on), otherwise a pool of ordinary threads
+    private static ExecutorService newExecutor(){
+        try{
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch(ReflectiveOperationException unused){
+            return Executors.newFixedThreadPool(Integer.getInteger("stocks.apiThreads", 8), r -> {
+                Thread thread = new Thread(r, "Api");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    int getPort(){
+        return server.getAddress().getPort();
+    }
+
+    void stop(){
+        Db.removeListener(this);
+        server.stop(0);
+        executor.shutdownNow();
+        stopped.countDown();
+    }
+
+    //Blocks until the server is stopped
+    void awaitStop() throws InterruptedException {
+        stopped.await();
+    }
+
+    //Called under the database's lock, so only note that the snapshot is out of date
+    @Override
+    public void dbChanged(List<DbEvent> events){
+        stale = true;
+    }
+
+    //Returns the snapshot to answer from, rebuilding it first if it is out of date and no other request is already
+    private PortfolioSnapshot current(){
+        PortfolioSnapshot current = snapshot;
+        if(stale && System.nanoTime() - builtAt >= SNAPSHOT_NANOS && rebuilding.compareAndSet(false, true)){
+            try{
+                stale = false; //Cleared first, so a change made during the rebuild leaves it stale again
+                current = Db.snapshot();
+                snapshot = current;
+                builtAt = System.nanoTime();
+            } finally{
+                rebuilding.set(false);
+            }
+        }
+        return current;
+    }
+
+    //Answers a query from the snapshot and parameters
+    private interface Query {
+        String answer(PortfolioSnapshot snapshot, Map<String, List<String>> params) throws BadRequest;
+    }
+
+    private void handle(HttpExchange exchange, Query query) throws IOException {
+        try(exchange){
+            int status = 200;
+            String body;
+            //Contexts match by prefix, so /api/tagsX would otherwise reach /api/tags
+            if(query == null || !exchange.getRequestURI().getPath().equals(exchange.getHttpContext().getPath())){
+                status = 404;
+                body = error("Unknown path " + exchange.getRequestURI().getPath());
+            }
+            else if(!"GET".equals(exchange.getRequestMethod())){
+                status = 405;
+                exchange.getResponseHeaders().set("Allow", "GET");
+                body = error("Only GET is supported");
+            }
+            else{
+                try{
+                    body = query.answer(current(), parseQuery(exchange.getRequestURI().getRawQuery()));
+                } catch(BadRequest e){
+                    status = 400;
+                    body = error(e.getMessage());
+                } catch(RuntimeException e){
+                    status = 500;
+                    body = error("The query failed: " + e);
+                }
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json; charset=utf-8");
+            exchange.sendResponseHeaders(status, bytes.length);
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+
+    private static String error(String message){
+        return Json.string(new StringBuilder("{\"error\":"), message).append("}\n").toString();
+    }
+
+    //With a date, each entry also has its value at the close that day in its own currency, from the saved price history,
+    //or null if the history doesn't reach back that far
+    private String entries(PortfolioSnapshot snapshot, Map<String, List<String>> params) throws BadRequest {
+        BitSet rows = snapshot.matching(pairs(params, "include"), pairs(params, "exclude"));
+        LocalDate on = date(params, "on", null);
+        int offset = number(params, "offset", 0);
+        int limit = number(params, "limit", Integer.MAX_VALUE);
+        String[] tags = snapshot.getTags();
+
+        StringBuilder text = new StringBuilder(128 + Math.min(rows.cardinality(), limit) * 128);
+        header(text, snapshot).append(",\"count\":").append(rows.cardinality()).append(",\"entries\":[");
+        int skipped = 0;
+        int written = 0;
+        for(int row = rows.nextSetBit(0); row >= 0 && written < limit; row = rows.nextSetBit(row + 1)){
+            if(skipped++ < offset)
+                continue;
+            text.append(written++ == 0 ? "{\"id\":" : ",{\"id\":").append(snapshot.getId(row)).append(",\"ticker\":");
+            Json.string(text, snapshot.getTicker(row)).append(",\"currency\":");
+            Json.string(text, snapshot.getCurrency(row).toString()).append(",\"quantity\":");
+            Json.decimal(text, snapshot.getQuantity(row), 4).append(",\"price\":");
+            Json.decimal(text, snapshot.getPrice(row), 4).append(",\"value\":");
+            Json.decimal(text, snapshot.getValue(row), 2).append(",\"convertedValue\":");
+            Json.decimal(text, snapshot.getConvertedValue(row), 2);
+            if(on != null)
+                Json.decimal(text.append(",\"valueOn\":"), snapshot.valueOn(row, on), 2);
+            text.append(",\"autoPriced\":").append(snapshot.getAutoPriced(row)).append(",\"tags\":{");
+            boolean first = true;
+            for(String tag : tags){
+                String value = snapshot.getValueForTag(row, tag);
+                if(value == null)
+                    continue;
+                if(!first)
+                    text.append(',');
+                Json.string(text, tag).append(':');
+                Json.string(text, value);
+                first = false;
+            }
+            text.append("}}");
+        }
+        return text.append("]}\n").toString();
+    }
+
+    private String tags(PortfolioSnapshot snapshot, Map<String, List<String>> params){
+        StringBuilder text = new StringBuilder(256);
+        header(text, snapshot).append(",\"tags\":[");
+        String[] tags = snapshot.getTags();
+        for(int i = 0; i < tags.length; i++){
+            text.append(i == 0 ? "{\"name\":" : ",{\"name\":");
+            Json.string(text, tags[i]).append(",\"values\":[");
+            String[] values = snapshot.getValuesForTag(tags[i]);
+            for(int j = 0; j < values.length; j++){
+                text.append(j == 0 ? "{\"value\":" : ",{\"value\":");
+                Json.string(text, values[j]).append(",\"entries\":").append(snapshot.countWith(tags[i], values[j])).append('}');
+            }
+            text.append("]}");
+        }
+        return text.append("]}\n").toString();
+    }
+
+    private String totals(PortfolioSnapshot snapshot, Map<String, List<String>> params) throws BadRequest {
+        List<String> by = params.getOrDefault("by", Collections.emptyList());
+        String axis = by.isEmpty() ? "" : by.get(0);
+        int top = number(params, "top", Integer.MAX_VALUE);
+        if(top < 1)
+            throw new BadRequest("top must be at least 1");
+        BitSet rows = snapshot.matching(pairs(params, "include"), pairs(params, "exclude"));
+        return Cli.toJson(axis, snapshot.getGraphCurrency(), snapshot.getPriceTime(), snapshot.totals(rows, axis, top), null);
+    }
+
+    //Values recorded at the end of each price refresh, of each value of a tag or of the given entries, in the graph currency
+    //Entries are given by the ids /api/entries lists; an entry's history starts when it was created, even if it took the
+    //id of one removed before
+    private String history(PortfolioSnapshot snapshot, Map<String, List<String>> params) throws BadRequest {
+        //Dates are of this machine's time zone, as the times in the answer are
+        ZoneId zone = ZoneId.systemDefault();
+        Instant from = date(params, "from", LocalDate.MIN).atStartOfDay(zone).toInstant();
+        Instant to = date(params, "to", LocalDate.MAX).atTime(LocalTime.MAX).atZone(zone).toInstant();
+        List<String> entries = params.getOrDefault("entry", Collections.emptyList());
+        List<String> by = params.getOrDefault("by", Collections.emptyList());
+        int top = number(params, "top", Integer.MAX_VALUE);
+        if(top < 1)
+            throw new BadRequest("top must be at least 1");
+
+        int[] serials = new int[entries.size()];
+        String[] names = new String[entries.size()];
+        for(int i = 0; i < entries.size(); i++){
+            int id;
+            try{
+                id = Integer.parseInt(entries.get(i));
+            } catch(NumberFormatException e){
+                throw new BadRequest("entry must be an entry id");
+            }
+            int row = snapshot.rowOf(id);
+            if(row < 0)
+                throw new BadRequest("No entry has the id " + id);
+            serials[i] = snapshot.getSerial(row);
+            names[i] = Integer.toString(id);
+        }
+
+        SnapshotLog log = Db.getSnapshots();
+        SnapshotLog.History history;
+        try{
+            if(log == null)
+                history = new SnapshotLog.History(new Instant[0], new LinkedHashMap<>());
+            else if(entries.isEmpty())
+                history = log.groups(by.isEmpty() ? "" : by.get(0), from, to, snapshot.getHistoryRecords()).largest(top, 1f);
+            else
+                history = log.entries(serials, names, from, to, snapshot.getHistoryRecords());
+        } catch(IOException e){
+            throw new UncheckedIOException(e);
+        }
+
+        StringBuilder text = new StringBuilder(256);
+        header(text, snapshot).append(",\"times\":[");
+        for(int i = 0; i < history.times.length; i++){
+            if(i > 0)
+                text.append(',');
+            Json.string(text, history.times[i].atZone(zone).toOffsetDateTime().toString());
+        }
+        text.append("],\"series\":[");
+        int i = 0;
+        for(Map.Entry<String, float[]> j : history.series.entrySet()){
+            text.append(i > 0 ? ",{" : "{");
+            if(entries.isEmpty())
+                Json.string(text.append("\"name\":"), j.getKey());
+            else
+                Json.string(text.append("\"id\":").append(j.getKey()).append(",\"ticker\":"), snapshot.getTicker(snapshot.rowOf(Integer.parseInt(j.getKey()))));
+            text.append(",\"values\":[");
+            float[] values = j.getValue();
+            for(int k = 0; k < values.length; k++){
+                if(k > 0)
+                    text.append(',');
+                Json.decimal(text, snapshot.fromBase(values[k]), 2);
+            }
+            text.append("]}");
+            i++;
+        }
+        return text.append("]}\n").toString();
+    }
+
+    //Saved closing prices of a ticker in its own currency, empty if none have been fetched or no entry holds it
+    private String prices(PortfolioSnapshot snapshot, Map<String, List<String>> params) throws BadRequest {
+        List<String> ticker = params.getOrDefault("ticker", Collections.emptyList());
+        if(ticker.isEmpty() || ticker.get(0).isEmpty())
+            throw new BadRequest("ticker is required");
+        LocalDate from = date(params, "from", LocalDate.ofEpochDay(0));
+        LocalDate to = date(params, "to", LocalDate.now());
+        PriceSeries.Points points = snapshot.pricesOf(ticker.get(0), from, to);
+
+        StringBuilder text = new StringBuilder(128 + points.size * 24);
+        Json.string(header(text, snapshot).append(",\"ticker\":"), ticker.get(0)).append(",\"days\":[");
+        for(int i = 0; i < points.size; i++){
+            if(i > 0)
+                text.append(',');
+            Json.string(text, LocalDate.ofEpochDay(points.days[i]).toString());
+        }
+        text.append("],\"prices\":[");
+        for(int i = 0; i < points.size; i++){
+            if(i > 0)
+                text.append(',');
+            Json.decimal(text, points.prices[i], 4);
+        }
+        return text.append("]}\n").toString();
+    }
+
+    private static StringBuilder header(StringBuilder text, PortfolioSnapshot snapshot){
+        text.append("{\"taken\":");
+        Json.string(text, snapshot.getTaken().toString()).append(",\"pricesUpdated\":");
+        Json.string(text, snapshot.getPriceTime().toString()).append(",\"currency\":");
+        return Json.string(text, snapshot.getGraphCurrency().toString());
+    }
+
+    //Splits the query into its parameters; a parameter may be given more than once
+    private static Map<String, List<String>> parseQuery(String rawQuery){
+        Map<String, List<String>> params = new HashMap<>();
+        if(rawQuery == null || rawQuery.isEmpty())
+            return params;
+        for(String i : rawQuery.split("&")){
+            int equals = i.indexOf('=');
+            String key = URLDecoder.decode(equals < 0 ? i : i.substring(0, equals), StandardCharsets.UTF_8);
+            String value = equals < 0 ? "" : URLDecoder.decode(i.substring(equals + 1), StandardCharsets.UTF_8);
+            params.computeIfAbsent(key, k -> new ArrayList<>()).add(value);
+        }
+        return params;
+    }
+
+    //Each value of the parameter as a tag and a value, given as TAG=VALUE like the command line
+    private static List<String[]> pairs(Map<String, List<String>> params, String name) throws BadRequest {
+        List<String[]> pairs = new ArrayList<>();
+        for(String i : params.getOrDefault(name, Collections.emptyList())){
+            int equals = i.indexOf('=');
+            if(equals <= 0)
+                throw new BadRequest(name + " must be TAG=VALUE but was " + i);
+            pairs.add(new String[]{i.substring(0, equals), i.substring(equals + 1)});
+        }
+        return pairs;
+    }
+
+    private static LocalDate date(Map<String, List<String>> params, String name, LocalDate fallback) throws BadRequest {
+        List<String> values = params.get(name);
+        if(values == null || values.isEmpty())
+            return fallback;
+        try{
+            return LocalDate.parse(values.get(0));
+        } catch(DateTimeParseException e){
+            throw new BadRequest(name + " must be a date such as 2024-01-31");
+        }
+    }
+
+    private static int number(Map<String, List<String>> params, String name, int fallback) throws BadRequest {
+        List<String> values = params.get(name);
+        if(values == null || values.isEmpty())
+            return fallback;
+        try{
+            int value = Integer.parseInt(values.get(0));
+            if(value < 0)
+                throw new BadRequest(name + " can't be negative");
+            return value;
+        } catch(NumberFormatException e){
+            throw new BadRequest(name + " must be a whole number");
+        }
+    }
+}
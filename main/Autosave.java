@@ -0,0 +1,97 @@
+package main;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.io.*;
+import java.time.*;
+import java.time.format.*;
+
+//Runs a save on its own thread a short while after the last request, so a burst of changes is written once
+//A save is never put off by more than the maximum delay, however often new requests keep arriving
+class Autosave {
+    interface Save {
+        void run() throws IOException;
+    }
+
+    private final Save save;
+    private final long delayNanos;
+    private final long maxDelayNanos;
+    private final ScheduledExecutorService executor;
+    private ScheduledFuture<?> pending;
+    private long firstRequest; //When the pending save was first requested
+
+    //Statistics
+    private final AtomicLong saves = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong saveNanos = new AtomicLong();
+    private volatile long lastNanos;
+    private volatile LocalDateTime lastSaved;
+    private volatile String lastError; //Null once a save succeeds
+
+    Autosave(String name, Save save, long delayMillis, long maxDelayMillis){
+        this.save = save;
+        this.delayNanos = TimeUnit.MILLISECONDS.toNanos(delayMillis);
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, name);
+            thread.setDaemon(true); //Anything not yet saved is written by flush before exit
+            return thread;
+        });
+    }
+
+    //Call after every change
+    synchronized void request(){
+        long now = System.nanoTime();
+        if(pending == null || !pending.cancel(false)) //Nothing waiting; a save already running may have missed this change
+            firstRequest = now;
+        long delay = Math.min(delayNanos, firstRequest + maxDelayNanos - now);
+        pending = executor.schedule(this::runSave, Math.max(delay, 0), TimeUnit.NANOSECONDS);
+    }
+
+    //Saves now and waits for it, taking the place of any save still waiting; returns whether it succeeded
+    boolean flush(){
+        synchronized(this){
+            if(pending != null)
+                pending.cancel(false);
+        }
+        try{
+            executor.submit(this::runSave).get();
+        } catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            return false;
+        } catch(ExecutionException e){
+            return false;
+        }
+        return lastError == null;
+    }
+
+    private void runSave(){
+        long start = System.nanoTime();
+        try{
+            save.run();
+            lastSaved = LocalDateTime.now();
+            lastError = null;
+            saves.incrementAndGet();
+        } catch(IOException | RuntimeException e){
+            lastError = e.getMessage() != null ? e.getMessage() : e.toString();
+            failures.incrementAndGet();
+        }
+        lastNanos = System.nanoTime() - start;
+        saveNanos.addAndGet(lastNanos);
+    }
+
+    //Why the last save failed, or null if it succeeded
+    String getLastError(){
+        return lastError;
+    }
+
+    //Returns when the last save happened and how long saves take, formatted as text
+    String statsToLabel(){
+        DateTimeFormatter dispTimeFormat = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.SHORT);
+        long attempts = saves.get() + failures.get();
+        double averageMs = attempts == 0 ? 0.0 : saveNanos.get() / 1e6 / attempts;
+        String saved = lastSaved == null ? "Not saved yet" : String.format("Saved %s in %.1f ms", lastSaved.format(dispTimeFormat), lastNanos / 1e6);
+        String failed = lastError == null ? "" : "; last save failed: " + lastError;
+        return String.format("%s; %d saves averaging %.1f ms, %d failed%s", saved, attempts, averageMs, failures.get(), failed);
+    }
+}
@@ -0,0 +1,249 @@
+package main;
+
+import java.util.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+
+//Runs without a window, e.g. from cron: loads the saved portfolio, optionally refreshes the prices, writes the totals
+//and exits
+//Nothing here touches AWT or Swing, so it starts quickly and works on a server without a display
+public class Cli {
+    //Exit codes
+    static final int OK = 0;
+    static final int USAGE = 1; //The arguments could not be understood, or the port to serve on could not be opened
+    static final int FAILED_TICKERS = 2; //Some prices could not be refreshed, the totals use their previous prices
+    static final int NO_MATCH = 3; //No entries matched the criteria, nothing was written
+    static final int SAVE_FAILED = 4; //The totals were written but the refreshed prices could not be saved
+
+    private static final String USAGE_TEXT = String.join(System.lineSeparator(),
+        "Usage: java -cp runnable.jar main.Cli [options]",
+        "  --refresh              update every price before reporting",
+        "  --by TAG               group the totals by the tag rather than by ticker",
+        "  --include TAG=VALUE    only count entries with the value, may be repeated",
+        "  --exclude TAG=VALUE    leave out entries with the value, may be repeated",
+        "  --top N                list the N largest groups and add the rest up as one",
+        "  --format csv|json      output format (default csv)",
+        "  --output FILE          write to the file instead of standard output",
+        "  --serve PORT           after saving, answer queries on the local HTTP port until stopped");
+
+    //What the arguments asked for
+    private static class Options {
+        boolean refresh = false;
+        String axis = "";
+        ArrayList<String> incVal = new ArrayList<>();
+        ArrayList<String> incTag = new ArrayList<>();
+        ArrayList<String> remVal = new ArrayList<>();
+        ArrayList<String> remTag = new ArrayList<>();
+        int top = Integer.MAX_VALUE;
+        boolean json = false;
+        Path output = null;
+        int serve = 0;
+    }
+
+    public static void main(String[] args){
+        System.setProperty("java.awt.headless", "true");
+        System.exit(run(args, System.out, System.err));
+    }
+
+    static int run(String[] args, PrintStream out, PrintStream err){
+        Options options;
+        try{
+            options = parse(args);
+        } catch(IllegalArgumentException e){
+            err.println(e.getMessage());
+            err.println(USAGE_TEXT);
+            return USAGE;
+        }
+        if(options == null){
+            out.println(USAGE_TEXT);
+            return OK;
+        }
+
+        Db.readDb();
+        if(Db.getLoadProblem() != null) //Saving stays off, only the window can start again without the saved entries
+            err.println(Db.getLoadProblem() + " Nothing will be saved until the program is started with its window.");
+        int skipped = Db.getSkippedOnLoad();
+        if(skipped > 0)
+            err.println(skipped + (skipped == 1 ? " saved entry" : " saved entries") + " could not be read and were left out.");
+
+        int result = OK;
+        List<String> failed = Collections.emptyList();
+        if(options.refresh){
+            try{
+                failed = QuoteFetcher.refreshAll(completed -> {});
+            } catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+                err.println("The price update was interrupted.");
+            }
+            Db.updatePriceTime();
+            if(!failed.isEmpty()){
+                err.println("The following tickers failed to update: " + String.join(", ", failed));
+                result = FAILED_TICKERS;
+            }
+        }
+
+        Map<String, Float> graphable = Db.findGraphables(options.axis, options.incVal, options.incTag, options.remVal, options.remTag, options.top);
+        if(graphable == null){
+            err.println("No entries matched the criteria.");
+            result = NO_MATCH;
+        }
+        else{
+            String text = options.json ? toJson(options.axis, Db.getGraphCurrency(), Db.getPriceTime(), graphable, failed) : toCsv(options.axis, graphable);
+            try{
+                if(options.output == null)
+                    out.print(text);
+                else
+                    Files.write(options.output, text.getBytes(StandardCharsets.UTF_8));
+            } catch(IOException e){
+                err.println("Could not write " + options.output + ": " + e.getMessage());
+                result = SAVE_FAILED;
+            }
+        }
+
+        if(!Db.writeDb()){
+            err.println("Could not save: " + Db.getSaveError());
+            result = SAVE_FAILED;
+        }
+
+        if(options.serve > 0){
+            try{
+                ApiServer server = ApiServer.start(options.serve);
+                err.println("Serving on http://127.0.0.1:" + server.getPort() + "/api/");
+                server.awaitStop();
+            } catch(IOException e){
+                err.println("Could not serve on port " + options.serve + ": " + e.getMessage());
+                return USAGE;
+            } catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        }
+        return result;
+    }
+
+    //Returns null if only the usage was asked for
+    private static Options parse(String[] args){
+        Options options = new Options();
+        for(int i = 0; i < args.length; i++){
+            String arg = args[i];
+            switch(arg){
+                case "--help":
+                case "-h":
+                    return null;
+                case "--refresh":
+                    options.refresh = true;
+                    break;
+                case "--by":
+                    options.axis = value(args, ++i, arg);
+                    break;
+                case "--include":
+                    addPair(value(args, ++i, arg), options.incTag, options.incVal);
+                    break;
+                case "--exclude":
+                    addPair(value(args, ++i, arg), options.remTag, options.remVal);
+                    break;
+                case "--top":
+                    try{
+                        options.top = Integer.parseInt(value(args, ++i, arg));
+                    } catch(NumberFormatException e){
+                        throw new IllegalArgumentException("--top needs a whole number");
+                    }
+                    if(options.top < 1)
+                        throw new IllegalArgumentException("--top needs a number of at least 1");
+                    break;
+                case "--format":
+                    String format = value(args, ++i, arg);
+                    if(!format.equals("csv") && !format.equals("json"))
+                        throw new IllegalArgumentException("Unknown format " + format);
+                    options.json = format.equals("json");
+                    break;
+                case "--output":
+                    options.output = Paths.get(value(args, ++i, arg));
+                    break;
+                case "--serve":
+                    try{
+                        options.serve = Integer.parseInt(value(args, ++i, arg));
+                    } catch(NumberFormatException e){
+                        throw new IllegalArgumentException("--serve needs a port number");
+                    }
+                    if(options.serve < 1 || options.serve > 65535)
+                        throw new IllegalArgumentException("--serve needs a port from 1 to 65535");
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown option " + arg);
+            }
+        }
+        return options;
+    }
+
+    private static String value(String[] args, int index, String option){
+        if(index >= args.length)
+            throw new IllegalArgumentException(option + " needs a value");
+        return args[index];
+    }
+
+    private static void addPair(String pair, ArrayList<String> tags, ArrayList<String> values){
+        int equals = pair.indexOf('=');
+        if(equals <= 0)
+            throw new IllegalArgumentException("Expected TAG=VALUE but got " + pair);
+        tags.add(pair.substring(0, equals));
+        values.add(pair.substring(equals + 1));
+    }
+
+    //One line per group, largest first, after a header naming the columns
+    static String toCsv(String axis, Map<String, Float> graphable){
+        float total = total(graphable);
+        StringBuilder text = new StringBuilder();
+        csvField(text, "".equals(axis) ? "Ticker" : axis).append(',');
+        csvField(text, "Value (" + Db.getGraphCurrency() + ")").append(",Percent\n");
+        graphable.forEach((k, v) -> {
+            csvField(text, k).append(',');
+            Json.decimal(text, v, 2).append(',');
+            Json.decimal(text, total == 0f ? 0.0 : v / (double) total * 100, 2).append('\n');
+        });
+        return text.toString();
+    }
+
+    private static StringBuilder csvField(StringBuilder text, String field){
+        if(field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0)
+            return text.append(field);
+        return text.append('"').append(field.replace("\"", "\"\"")).append('"');
+    }
+
+    //Also used by the local server, which passes the currency and price time of its snapshot and no failed list
+    static String toJson(String axis, Currency currency, LocalDateTime priceTime, Map<String, Float> graphable, List<String> failed){
+        float total = total(graphable);
+        StringBuilder text = new StringBuilder("{\"axis\":");
+        Json.string(text, axis).append(",\"currency\":");
+        Json.string(text, currency.toString()).append(",\"pricesUpdated\":");
+        Json.string(text, priceTime.toString()).append(",\"total\":");
+        Json.decimal(text, total, 2).append(",\"groups\":[");
+        boolean[] first = {true};
+        graphable.forEach((k, v) -> {
+            text.append(first[0] ? "{\"name\":" : ",{\"name\":");
+            Json.string(text, k).append(",\"value\":");
+            Json.decimal(text, v, 2).append(",\"percent\":");
+            Json.decimal(text, total == 0f ? 0.0 : v / (double) total * 100, 2).append('}');
+            first[0] = false;
+        });
+        text.append(']');
+        if(failed == null)
+            return text.append("}\n").toString();
+        text.append(",\"failed\":[");
+        for(int i = 0; i < failed.size(); i++){
+            if(i > 0)
+                text.append(',');
+            Json.string(text, failed.get(i));
+        }
+        return text.append("]}\n").toString();
+    }
+
+    private static float total(Map<String, Float> graphable){
+        float total = 0f;
+        for(float i : graphable.values()){
+            total += i;
+        }
+        return total;
+    }
+}
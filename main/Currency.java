@@ -2,5 +2,11 @@ package main;
 
 public enum Currency {
     CAD,
-    USD
+    USD,
+    EUR,
+    GBP,
+    JPY;
+
+    //Every exchange rate is quoted against this currency
+    public static final Currency BASE = CAD;
 }
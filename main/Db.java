@@ -1,83 +1,378 @@
 package main;
 
 import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
 import java.io.*;
+import java.nio.file.*;
 import java.time.*;
 import java.time.format.*;
 
 //Manages the information about the entries and settings
 class Db {
 
-    //Save file
-    private static final String saveFname = "prevInfo.txt";
+    //Every file lives in this directory, the working directory unless stocks.dir names another
+    private static final Path dir = Paths.get(System.getProperty("stocks.dir", ""));
+
+    //Save file; the text file is only read when there is no binary file yet
+    private static final String saveFname = "prevInfo.bin";
+    private static final String textFname = "prevInfo.txt";
+    private static final String quoteFname = "prevQuotes.txt";
+
+    //Every change is appended to the journal as it happens and folded into the save file once changes pause, and at exit
+    private static final String journalFname = "prevInfo.journal";
+    private static final String historyDir = "prevHistory";
+    private static final String snapshotFname = "prevSnapshots.bin";
+    private static Journal journal; //Null until the database has been read
+    private static boolean journalBroken = false; //An append failed, so nothing more is appended until the next save
+    private static final Autosave autosave = new Autosave("Autosave", Db::saveAndClearJournal, 30 * 1000, 5 * 60 * 1000);
+
+    //Loading happens in the background; until it is done the database is incomplete and must not be saved over the file
+    private static volatile boolean loaded = false;
+    private static int skippedOnLoad = 0;
+
+    //Why the save file could not be loaded, or null; nothing is saved or journaled until the user has been told, so the
+    //damaged file and the journal that follows it are never written over
+    private static final String damagedSuffix = ".corrupt";
+    private static volatile String loadProblem = null;
+    private static boolean setAside = false; //The damaged file and its journal were moved out of the way
 
     //Saved settings
     private static String apiKey = "";
 
-    private static float rate = 1.0f;
     private static boolean autoRate = false;
     private static Currency graphCurrency = Currency.CAD;
 
+    //Rates used for every conversion, replaced whenever a rate changes; the base rates are saved
+    private static volatile RateSnapshot rates = new RateSnapshot(defaultRates());
+
+    //Rate statistics
+    private static final AtomicLong rateQueries = new AtomicLong();
+    private static final AtomicLong rateRefreshes = new AtomicLong();
+    private static final AtomicLong rateRefreshFailures = new AtomicLong();
+    private static final AtomicLong rateRefreshNanos = new AtomicLong();
+
     //Modification times
     private static LocalDateTime priceTime = LocalDateTime.now(); //Default to current, overwritten if previous is found
     private static LocalDateTime dbTime = priceTime;
 
-    //Entries
-    private static ArrayList<Entry> entries = new ArrayList<Entry>();
+    //Entries, stored column by column and indexed by id
+    //Ids also index the bitsets in the tag manager and are reused once freed
+    private static EntryStore store = new EntryStore();
+    private static BitSet liveIds = new BitSet();
+
+    //Ids in the order the entries were added
+    private static int[] order = new int[16];
+    private static int numEntries = 0;
+    private static int nextSerial = 0; //Serials are never reused, so the value history can tell entries apart
     private static TagTracker tagMap = new TagTracker();
+    private static GroupTotals totals = new GroupTotals();
+
+    //Told about every change
+    private static final List<DbListener> listeners = new CopyOnWriteArrayList<>();
+
+    //Daily closing prices by ticker, kept apart from the save file as it is only ever appended to
+    private static final PriceHistory history = new PriceHistory(dir.resolve(historyDir));
+
+    //Values at the end of every price refresh, null if the file can't be opened
+    private static SnapshotLog snapshots;
 
     //Private constructor; this class cannot be instantiated and is purely static
     private Db() {}
 
-    //Read from the filesystem for our settings and saved entries
+    //Read from the filesystem for our settings and saved entries, then replay the changes made since
+    //This can take a while for a large database so it must not be called from the EDT
     static void readDb(){
-        try(BufferedReader br = new BufferedReader(new FileReader(saveFname))){
-            //First lines contain settings
-            apiKey = br.readLine();
-            graphCurrency = Currency.valueOf(br.readLine());
-            autoRate = readBool(br.readLine());
-            rate = Float.parseFloat(br.readLine());
-
-            //Next lines are times
-            priceTime = LocalDateTime.parse(br.readLine());
-            dbTime = LocalDateTime.parse(br.readLine());
-
-            //Rest of the lines correspond to entries
-            String line;
-            while((line = br.readLine()) != null){
-                Entry currentEntry = Entry.fromString(line);
-                if (currentEntry != null)
-                    initEntry(currentEntry);
-            }
-        } catch (Exception unused){
-            //Someone modified something manually incorrectly, silently give up
-        }
-    }
-
-    //Write to the filesystem to store our settings and entries for next time
-    static void writeDb(){
-        try(BufferedWriter bw = new BufferedWriter(new FileWriter(saveFname))){
-            //First lines contain settings
-            bw.write(apiKey);
-            bw.newLine();
-            bw.write(graphCurrency.toString());
-            bw.newLine();
-            bw.write(writeBool(autoRate));
-            bw.newLine();
-            bw.write(Float.toString(rate));
-            bw.newLine();
-            bw.write(priceTime.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-            bw.newLine();
-            bw.write(dbTime.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
-            bw.newLine();
-            for(Entry i : entries){
-                bw.write(i.toString());
-            }
-        } catch (Exception unused){
-            //Very bad
+        QuoteFetcher.readCache(dir.resolve(quoteFname).toString());
+
+        DbFile.Contents contents = null;
+        Path binaryPath = dir.resolve(saveFname);
+        Path textPath = dir.resolve(textFname);
+        Path journalPath = dir.resolve(journalFname);
+        boolean migrate = false;
+        if(Files.exists(binaryPath)){
+            try{
+                contents = DbFile.readBinary(binaryPath);
+            } catch(IOException e){
+                setAside(binaryPath, journalPath, e);
+            }
+        }
+        else if(Files.exists(dir.resolve(saveFname + damagedSuffix))){
+            //Set aside by an earlier run that ended before the user chose to start again
+            loadProblem = saveFname + " was moved to " + saveFname + damagedSuffix + " by an earlier run as it could not be read.";
+            setAside = !Files.exists(journalPath); //A journal left behind would be replayed onto the wrong file
+        }
+        else{
+            try{
+                contents = DbFile.readText(textPath);
+                migrate = true;
+            } catch(IOException unused){
+                //Nothing saved yet, or someone modified something manually incorrectly; start empty
+            }
+        }
+        if(contents != null){
+            applyContents(contents);
+            skippedOnLoad = contents.skipped;
+        }
+
+        //A journal only ever follows the binary file it was started after, so it is only deleted on a first migration from
+        //the text file, and only replayed onto its own binary file
+        if(loadProblem == null){
+            try{
+                if(migrate)
+                    Files.deleteIfExists(journalPath);
+                journal = Journal.open(journalPath, contents != null ? contents.journalSequence : 0, new Replay());
+            } catch(IOException unused){
+                journalBroken = true; //Changes are then only saved at exit
+            }
+        }
+
+        try{
+            snapshots = SnapshotLog.open(dir.resolve(snapshotFname));
+        } catch(IOException unused){
+            //Valuations are then not recorded this run
+        }
+
+        loaded = true;
+        if(migrate)
+            writeDb(); //One time migration, the text file is left alone as a backup
+    }
+
+    //Moves the unreadable binary file and the journal that follows it aside together, under names no save uses
+    private static void setAside(Path binaryPath, Path journalPath, IOException cause){
+        String suffix = damagedSuffix;
+        for(int i = 2; Files.exists(dir.resolve(saveFname + suffix)) || Files.exists(dir.resolve(journalFname + suffix)); i++)
+            suffix = damagedSuffix + i;
+        try{
+            Files.move(binaryPath, dir.resolve(saveFname + suffix));
+            if(Files.exists(journalPath))
+                Files.move(journalPath, dir.resolve(journalFname + suffix));
+            setAside = true;
+            loadProblem = saveFname + " could not be read (" + cause.getMessage() + "). It was moved to " + saveFname + suffix
+                + ", along with the changes made since it was saved, to " + journalFname + suffix + ".";
+        } catch(IOException e){
+            loadProblem = saveFname + " could not be read (" + cause.getMessage() + ") or moved aside (" + e.getMessage() + ").";
+        }
+    }
+
+    //Why the saved entries could not be loaded, or null if they were; saving is off until acknowledgeLoadProblem
+    static String getLoadProblem(){
+        return loadProblem;
+    }
+
+    //Call once the user has been told about the load problem and chose to carry on with the database as it is
+    //The damaged files stay where they were set aside; saving and journaling start again, beginning with a save now
+    //Returns whether that save succeeded, false without saving if the damaged file could not be moved aside
+    static boolean acknowledgeLoadProblem(){
+        synchronized(Db.class){
+            if(loadProblem == null)
+                return true;
+            if(!setAside)
+                return false;
+            loadProblem = null;
+            try{
+                journal = Journal.open(dir.resolve(journalFname), 0, new Replay());
+            } catch(IOException unused){
+                journalBroken = true;
+            }
+        }
+        return writeDb();
+    }
+
+    //Number of saved entries that could not be read
+    static int getSkippedOnLoad(){
+        return skippedOnLoad;
+    }
+
+    private static synchronized void applyContents(DbFile.Contents contents){
+        applySettings(contents);
+        nextSerial = Math.max(nextSerial, contents.nextSerial);
+        for(int i = 0; i < contents.entries.size(); i++){
+            int id = contents.ids != null ? contents.ids[i] : liveIds.nextClearBit(0);
+            //Files from before serials use the ids, which is also what the value history was keyed by until then
+            initEntry(contents.entries.get(i), id, contents.serials != null ? contents.serials[i] : id);
+        }
+    }
+
+    private static void applySettings(DbFile.Contents settings){
+        apiKey = settings.apiKey;
+        graphCurrency = settings.graphCurrency;
+        autoRate = settings.autoRate;
+        rates = new RateSnapshot(settings.baseRates);
+        priceTime = settings.priceTime;
+        dbTime = settings.dbTime;
+    }
+
+    //Applies the journal's records without journaling them again
+    private static class Replay implements Journal.Replayer {
+        @Override
+        public void created(LocalDateTime time, int id, int serial, Entry entry){
+            synchronized(Db.class){
+                if(!liveIds.get(id))
+                    initEntry(entry, id, serial >= 0 ? serial : id);
+                dbTime = time;
+            }
+        }
+
+        @Override
+        public void removed(LocalDateTime time, int id){
+            synchronized(Db.class){
+                if(liveIds.get(id))
+                    removeId(id);
+                dbTime = time;
+            }
+        }
+
+        @Override
+        public void priceSet(int id, float price){
+            synchronized(Db.class){
+                if(liveIds.get(id))
+                    applyPrice(id, price);
+            }
+        }
+
+        @Override
+        public void settingsChanged(DbFile.Contents settings){
+            synchronized(Db.class){
+                applySettings(settings);
+            }
         }
+    }
+
+    private static synchronized DbFile.Contents toContents(){
+        DbFile.Contents contents = settingsToContents();
+        contents.ids = Arrays.copyOf(order, numEntries);
+        contents.serials = new int[numEntries];
+        contents.nextSerial = nextSerial;
+        for(int i = 0; i < numEntries; i++){
+            contents.entries.add(store.get(order[i]));
+            contents.serials[i] = store.getSerial(order[i]);
+        }
+        return contents;
+    }
+
+    private static synchronized DbFile.Contents settingsToContents(){
+        DbFile.Contents contents = new DbFile.Contents();
+        contents.apiKey = apiKey;
+        contents.graphCurrency = graphCurrency;
+        contents.autoRate = autoRate;
+        contents.baseRates = rates.getBaseRates();
+        contents.priceTime = priceTime;
+        contents.dbTime = dbTime;
+        return contents;
+    }
+
+    //Write to the filesystem to store our settings and entries for next time, waiting until it is done
+    //Returns whether the save succeeded; getSaveError explains a failure
+    static boolean writeDb(){
+        if(!loaded) //Nothing can have changed yet
+            return true;
+        QuoteFetcher.writeCache(dir.resolve(quoteFname).toString());
+        return autosave.flush();
     };
 
+    //Writes everything to the save file, after which the journal's records are no longer needed
+    //Only copying the contents holds the lock, so changes carry on while the file is written
+    private static void saveAndClearJournal() throws IOException {
+        DbFile.Contents contents;
+        synchronized(Db.class){
+            if(loadProblem != null)
+                throw new IOException("Saving is off as the saved entries could not be loaded: " + loadProblem);
+            contents = toContents();
+            contents.journalSequence = journal != null ? journal.getSequence() : 0;
+        }
+        DbFile.writeBinary(dir.resolve(saveFname), contents);
+        synchronized(Db.class){
+            //Records added while writing stay for the next save, the saved ones before them are skipped on replay
+            if(journal != null && journal.getSequence() == contents.journalSequence){
+                journal.clear();
+                journalBroken = false;
+            }
+        }
+    }
+
+    //Why the last save failed, or null if it succeeded
+    static String getSaveError(){
+        return autosave.getLastError();
+    }
+
+    static String saveStatsToLabel(){
+        return autosave.statsToLabel();
+    }
+
+    //Journaling
+
+    //Every change passes through here, which also schedules the next save
+    //Once an append fails the journal has a gap, so later records could not be replayed correctly; stop until the next save
+    private interface JournalAppend {
+        void append(Journal journal) throws IOException;
+    }
+
+    private static synchronized void journal(JournalAppend append){
+        if(loadProblem == null)
+            autosave.request();
+        if(journal == null || journalBroken)
+            return;
+        try{
+            append.append(journal);
+        } catch(IOException unused){
+            journalBroken = true; //The change is still saved at the next save
+        }
+    }
+
+    //Every settings change passes through here
+    private static void journalSettings(){
+        synchronized(Db.class){
+            DbFile.Contents settings = settingsToContents();
+            journal(j -> j.appendSettings(settings));
+            fire(DbEvent.Type.SETTINGS_CHANGED, -1, -1);
+        }
+        syncJournal();
+    }
+
+    //Puts the journal's records on disk; called after the lock is released, so a slow disk never holds up readers
+    //Structural changes call it straight away, price updates once per refresh; the autosave covers anything else
+    static void syncJournal(){
+        Journal current;
+        synchronized(Db.class){
+            if(journal == null || journalBroken)
+                return;
+            current = journal;
+        }
+        try{
+            current.force();
+        } catch(IOException unused){
+            synchronized(Db.class){
+                journalBroken = true; //As for a failed append, the changes are saved at the next save
+            }
+        }
+    }
+
+    //Change notification
+
+    static void addListener(DbListener listener){
+        listeners.add(listener);
+    }
+
+    static void removeListener(DbListener listener){
+        listeners.remove(listener);
+    }
+
+    //Called with the lock held, so listeners see the changes in the order they were made
+    private static void fire(DbEvent.Type type, int id, int row){
+        if(listeners.isEmpty())
+            return;
+        List<DbEvent> events = Collections.singletonList(new DbEvent(type, id, row));
+        for(DbListener i : listeners){
+            i.dbChanged(events);
+        }
+    }
+
+    //Write everything in the readable text format, which can be loaded again by renaming it to the text save file
+    static void exportText(File file) throws IOException {
+        DbFile.writeText(file.toPath(), toContents());
+    }
+
     static String writeBool(boolean val){
         return val ? "true" : "false";
     }
@@ -86,22 +381,140 @@ class Db {
         return "true".equals(val);
     }
 
-    //Remove an entry from the database
+    //Rates are saved as CUR=rate pairs against the base currency
+    static String writeRates(float[] baseRates){
+        StringJoiner joiner = new StringJoiner(",");
+        for(Currency i : Currency.values()){
+            if(i != Currency.BASE)
+                joiner.add(i + "=" + baseRates[i.ordinal()]);
+        }
+        return joiner.toString();
+    }
+
+    //Older saves only hold the USD rate
+    static float[] readRates(String val){
+        float[] baseRates = defaultRates();
+        if(!val.contains("=")){
+            baseRates[Currency.USD.ordinal()] = Float.parseFloat(val);
+            return baseRates;
+        }
+
+        for(String i : val.split(",")){
+            String[] pair = i.split("=");
+            try{
+                baseRates[Currency.valueOf(pair[0]).ordinal()] = Float.parseFloat(pair[1]);
+            } catch(IllegalArgumentException unused){
+                //Currency no longer supported or a bad rate, keep the default
+            }
+        }
+        return baseRates;
+    }
+
+    static float[] defaultRates(){
+        float[] baseRates = new float[Currency.values().length];
+        Arrays.fill(baseRates, 1f);
+        return baseRates;
+    }
+
+    //Changes to the entries may come from the price worker's threads as well as the EDT, so they are synchronized
+
+    //Remove an entry from the database, the entry must be a view handed out by the database
     static void removeEntry(Entry entry){
-        entries.remove(entry);
-        tagMap.removeEntry(entry.getIterable());
-        updateDbTime();
+        synchronized(Db.class){
+            int id = entry.getId();
+            if(!isCurrent(entry)) //Already removed, possibly with the id reused since
+                return;
+
+            removeId(id);
+            updateDbTime();
+            LocalDateTime time = dbTime;
+            journal(j -> j.appendRemove(time, id));
+        }
+        syncJournal();
+    }
+
+    private static void removeId(int id){
+        Entry current = store.get(id);
+        int position = 0;
+        while(order[position] != id)
+            position++;
+        System.arraycopy(order, position + 1, order, position, numEntries - position - 1);
+        numEntries--;
+
+        liveIds.clear(id);
+        boolean tagsChanged = tagMap.removeEntry(id, current);
+        totals.removeEntry(current);
+
+        fire(DbEvent.Type.ENTRY_REMOVED, id, position);
+        if(tagsChanged)
+            fire(DbEvent.Type.TAGS_CHANGED, -1, -1);
     }
 
     //Insert an entry into the database
     static void createEntry(Entry entry){
-        initEntry(entry);
-        updateDbTime();
+        synchronized(Db.class){
+            //Always take the lowest free id so the columns and bitsets stay dense
+            int id = liveIds.nextClearBit(0);
+            int serial = nextSerial;
+            initEntry(entry, id, serial);
+            updateDbTime();
+            LocalDateTime time = dbTime;
+            Entry saved = store.get(id);
+            journal(j -> j.appendCreate(time, id, serial, saved));
+        }
+        syncJournal();
+    }
+
+    private static void initEntry(Entry entry, int id, int serial){
+        liveIds.set(id);
+        store.set(id, entry);
+        store.setSerial(id, serial);
+        nextSerial = Math.max(nextSerial, serial + 1);
+        entry.attach(id, store.getGeneration(id)); //The caller's copy becomes a view like any other
+
+        if(numEntries == order.length)
+            order = Arrays.copyOf(order, numEntries * 2);
+        order[numEntries++] = id;
+
+        boolean tagsChanged = tagMap.addEntry(id, entry);
+        totals.addEntry(entry);
+
+        fire(DbEvent.Type.ENTRY_ADDED, id, numEntries - 1);
+        if(tagsChanged)
+            fire(DbEvent.Type.TAGS_CHANGED, -1, -1);
+    }
+
+    private static boolean isCurrent(Entry entry){
+        int id = entry.getId();
+        return id >= 0 && liveIds.get(id) && store.getGeneration(id) == entry.getGeneration();
+    }
+
+    //Update the price of the entry with the given id, keeping the totals in step
+    //The record is not forced to disk here, a refresh calls syncJournal once all its prices are set
+    static synchronized void setPrice(int id, float price){
+        if(!liveIds.get(id))
+            return;
+
+        applyPrice(id, price);
+        journal(j -> j.appendPrice(id, price));
     }
 
-    private static void initEntry(Entry entry){
-        entries.add(entry);
-        tagMap.addEntry(entry.getIterable());
+    private static void applyPrice(int id, float price){
+        float oldValue = store.getValue(id);
+        store.setPrice(id, price);
+        totals.changeValue(store.get(id), oldValue, store.getValue(id));
+        fire(DbEvent.Type.PRICE_CHANGED, id, -1);
+    }
+
+    //Groups the ids of the automatically priced entries by ticker
+    static synchronized Map<String, List<Integer>> autoPricedByTicker(){
+        Map<String, List<Integer>> byTicker = new LinkedHashMap<>();
+        for(int i = 0; i < numEntries; i++){
+            int id = order[i];
+            if(store.getUpdatePrice(id))
+                byTicker.computeIfAbsent(store.getTicker(id), k -> new ArrayList<>()).add(id);
+        }
+        return byTicker;
     }
 
     private static void updateDbTime(){
@@ -110,6 +523,11 @@ class Db {
 
     static void updatePriceTime(){
         priceTime = LocalDateTime.now();
+        journalSettings();
+    }
+
+    static LocalDateTime getPriceTime(){
+        return priceTime;
     }
 
     //Returns the timestamps formatted as text
@@ -139,87 +557,120 @@ class Db {
         return tagMap.getTags();
     };
 
-    //From tag manager
-    static int maxValsForTag(){
-        return tagMap.maxValsForTag();
-    };
-
     //Searches through the entries to find the ones satisfying the criteria
     //The inc values MUST be present, and the rem values MUST NOT, this functions as a logical AND
     static Map<String, Float> findGraphables(String axis, ArrayList<String> incVal, ArrayList<String> incTag, ArrayList<String> remVal, ArrayList<String> remTag){
-        ArrayList<Entry> clone = new ArrayList<>(entries);
+        return findGraphables(axis, incVal, incTag, remVal, remTag, Integer.MAX_VALUE);
+    }
 
-        //Remove all of the entries that don't satisfy the includes
-        for(int i = 0; i < incVal.size(); i++){
-            for(int j = clone.size()-1; j >= 0; j--){
-                if(!clone.get(j).containsPair(incTag.get(i), incVal.get(i)))
-                    clone.remove(j);
-            }
-        }
+    //As above, but only the largest topK groups are returned, largest first, and the rest are added up into one last group
+    static synchronized Map<String, Float> findGraphables(String axis, ArrayList<String> incVal, ArrayList<String> incTag, ArrayList<String> remVal, ArrayList<String> remTag, int topK){
+        if (liveIds.isEmpty())
+            return null;
 
-        //Remove all entries that satisfy the removes
-        for(int i = 0; i < remVal.size(); i++){
-            for(int j = clone.size()-1; j >= 0; j--){
-                if(clone.get(j).containsPair(remTag.get(i), remVal.get(i)))
-                    clone.remove(j);
-            }
+        //Resolve the rates once, the loops below are then pure arithmetic
+        float[] factors = rates.factorsTo(graphCurrency);
+        rateQueries.incrementAndGet();
+
+        Map<String, Float> unsortedMap;
+        if(incVal.isEmpty() && remVal.isEmpty()){
+            //Nothing to filter, the running totals already hold the answer
+            unsortedMap = totals.totals(axis, factors);
         }
+        else{
+            //Narrow down the ids through the index before looking at any entry; unknown strings match nothing
+            BitSet matches = (BitSet) liveIds.clone();
+            for(int i = 0; i < incVal.size(); i++){
+                matches.and(tagMap.entriesWith(TagDictionary.NAMES.find(incTag.get(i)), TagDictionary.VALUES.find(incVal.get(i))));
+            }
+            for(int i = 0; i < remVal.size(); i++){
+                matches.andNot(tagMap.entriesWith(TagDictionary.NAMES.find(remTag.get(i)), TagDictionary.VALUES.find(remVal.get(i))));
+            }
 
-        if (clone.size() == 0)
-            return null;
+            if (matches.isEmpty())
+                return null;
 
-        //Clone now holds only valid values
-        Map<String, Float> unsortedMap = new HashMap<>();
-        for(Entry i : clone){
-            String myTag = "".equals(axis) ? i.getTicker() : i.valueForTag(axis); //If no axis, use ticker as label
-            float value = currencyExchange(i.getValue(), i.getCurrency(), graphCurrency);
-            unsortedMap.put(myTag, value + unsortedMap.getOrDefault(myTag, 0f));
+            //Matches now holds only valid values
+            unsortedMap = store.sum(matches, axis, factors);
         }
 
-        Map<String, Float> retMap = new LinkedHashMap<>(); //Order is required
-        //Sort by value
-        unsortedMap.entrySet().stream().sorted(Collections.reverseOrder(Map.Entry.comparingByValue())).forEach(entry -> retMap.put(entry.getKey(), entry.getValue()));
-        return retMap;
+        return GroupSums.largest(unsortedMap, topK);
     }
 
-    //Convert the total from the given currency to the target currency, using the current exchange rate
-    private static float currencyExchange(float total, Currency from, Currency to){
-        if (from == to)
-            return total;
-        
-        float usingRate = getExchangeRateF();
-        if (to == Currency.CAD)
-            usingRate = 1 / usingRate;
-        return total * usingRate; 
+    //Whether the last group of a result from findGraphables holds the groups beyond the largest topK
+    static boolean hasOtherGroup(Map<String, Float> graphables, int topK){
+        return graphables.size() > topK;
     }
 
-    //Manually set exchange rate, only if automatic updating is already disabled
-    static void setExchangeRate(float rate){
-        if(!autoRate)
-            Db.rate = rate;
+    //Manually set the rate from the base currency, only if automatic updating is already disabled
+    //Returns whether the rate was taken; a rate that is not positive and finite would make every cross rate through it
+    //infinite or NaN, so it is refused
+    //Rates are read, changed and replaced under the lock, so a manual rate and a refresh never lose each other's change
+    static boolean setExchangeRate(Currency currency, float rate){
+        synchronized(Db.class){
+            if(autoRate || currency == Currency.BASE || !RateSnapshot.isValid(rate))
+                return false;
+            float[] baseRates = rates.getBaseRates();
+            baseRates[currency.ordinal()] = rate;
+            rates = new RateSnapshot(baseRates);
+        }
+        journalSettings();
+        return true;
     }
 
-    //Gets the current exchange rate, updating from the remote if required
-    private static float getExchangeRateF(){
-        if(autoRate){
-            float retVal = PriceWorker.updateRate();
-            if (retVal > 0f)
-                rate = retVal;
+    //Fetches every exchange rate in one pass if they are automatic, else does nothing
+    //This can block on the network so it must not be called from the EDT
+    //The fetch runs without the lock; the fetched rates are then laid over the rates as they are by then
+    static void refreshRates(){
+        if(!getAutoRate())
+            return;
+
+        long start = System.nanoTime();
+        float[] fetched = new float[Currency.values().length];
+        Arrays.fill(fetched, Float.NaN); //Left in place for any rate that can't be fetched, which keeps its last known value
+        if(QuoteFetcher.updateRates(fetched) < Currency.values().length - 1)
+            rateRefreshFailures.incrementAndGet();
+        synchronized(Db.class){
+            if(!autoRate) //Switched to manual rates during the fetch, which must not be overwritten
+                return;
+            float[] baseRates = rates.getBaseRates();
+            for(int i = 0; i < fetched.length; i++){
+                if(RateSnapshot.isValid(fetched[i]))
+                    baseRates[i] = fetched[i];
+            }
+            rates = new RateSnapshot(baseRates);
         }
+        journalSettings();
+        rateRefreshNanos.addAndGet(System.nanoTime() - start);
+        rateRefreshes.incrementAndGet();
+    }
 
-        return rate;
+    //Converts an amount in the base currency to the graph currency
+    static float baseToGraphFactor(){
+        return rates.factor(Currency.BASE, graphCurrency);
     }
 
-    static String getExchangeRate(){
-        return Float.toString(getExchangeRateF());
+    static String getExchangeRate(Currency currency){
+        return Float.toString(rates.getBaseRate(currency));
     }
 
-    static boolean getAutoRate(){
+    //Returns where the exchange rate came from and how expensive it has been, formatted as text
+    static String rateStatsToLabel(){
+        DateTimeFormatter dispTimeFormat = DateTimeFormatter.ofLocalizedDateTime(FormatStyle.SHORT);
+        long refreshes = rateRefreshes.get();
+        double averageMs = refreshes == 0 ? 0.0 : rateRefreshNanos.get() / 1e6 / refreshes;
+        return String.format("Rate as of %s; %d refreshes averaging %.1f ms, %d failed; used by %d graphs", rates.getResolved().format(dispTimeFormat), refreshes, averageMs, rateRefreshFailures.get(), rateQueries.get());
+    }
+
+    static synchronized boolean getAutoRate(){
         return autoRate;
     }
 
     static void toggleAutoRate(){
-        autoRate = !autoRate;
+        synchronized(Db.class){
+            autoRate = !autoRate;
+        }
+        journalSettings();
     }
 
     static String getApiKey() {
@@ -227,7 +678,10 @@ class Db {
     }
 
     static void setApiKey(String key){
+        if(key.equals(apiKey))
+            return;
         apiKey = key;
+        journalSettings();
     }
 
     static Currency getGraphCurrency() {
@@ -236,14 +690,89 @@ class Db {
 
     static void setGraphCurrency(Currency currency) {
         graphCurrency = currency;
+        journalSettings();
     }
 
-    static int getNumEntries() {
-        return entries.size();
+    static synchronized int getNumEntries() {
+        return numEntries;
+    }
+
+    //Returns a view of the entry, in the order the entries were added
+    static synchronized Entry getEntry(int index){
+        return store.get(order[index]);
+    }
+
+    //Returns a view of the entry with the given id, or null if there is none
+    static synchronized Entry getEntryById(int id){
+        return id >= 0 && liveIds.get(id) ? store.get(id) : null;
+    }
+
+    static PriceHistory getHistory(){
+        return history;
+    }
+
+    static SnapshotLog getSnapshots(){
+        return snapshots;
+    }
+
+    //Records the value of every entry and the total of every group in the base currency, call after prices are refreshed
+    //The values are copied under the lock and written after it is released
+    static void recordSnapshot(){
+        if(snapshots == null || loadProblem != null) //Values of a portfolio that failed to load would only mislead
+            return;
+
+        Instant time = Instant.now();
+        float[] values;
+        int numSerials;
+        Map<String, Map<String, Float>> groups = new HashMap<>();
+        synchronized(Db.class){
+            //Keyed by serial, so an entry created in a removed entry's place starts a history of its own
+            float[] factors = rates.factorsTo(Currency.BASE);
+            numSerials = nextSerial;
+            values = new float[numSerials];
+            for(int id = liveIds.nextSetBit(0); id >= 0; id = liveIds.nextSetBit(id + 1)){
+                values[store.getSerial(id)] = store.getValue(id) * factors[store.getCurrency(id).ordinal()];
+            }
+            groups.put("", totals.totals("", factors));
+            for(String i : tagMap.getTags()){
+                groups.put(i, totals.totals(i, factors));
+            }
+        }
+
+        try{
+            snapshots.append(time, values, numSerials, groups);
+        } catch(IOException unused){
+            //This refresh is missing from the history, the next one is recorded as usual
+        }
+    }
+
+    //Copies the portfolio for readers that must not hold up, or be held up by, changes and price refreshes
+    //Only the entry views are made under the lock, the snapshot is indexed after it is released, along with where the
+    //value and price histories end
+    static PortfolioSnapshot snapshot(){
+        Entry[] entries;
+        int[] serials;
+        LocalDateTime snapshotPriceTime;
+        Currency currency;
+        float[] factors;
+        synchronized(Db.class){
+            entries = new Entry[numEntries];
+            serials = new int[numEntries];
+            for(int i = 0; i < numEntries; i++){
+                entries[i] = store.get(order[i]);
+                serials[i] = store.getSerial(order[i]);
+            }
+            snapshotPriceTime = priceTime;
+            currency = graphCurrency;
+            factors = rates.factorsTo(graphCurrency);
+        }
+        SnapshotLog log = snapshots;
+        return new PortfolioSnapshot(entries, serials, snapshotPriceTime, currency, factors, log == null ? 0 : log.size(), history);
     }
 
-    static Entry getEntry(int index){
-        return entries.get(index);
+    //Returns the ids of the entries in the order they were added
+    static synchronized int[] getIdsInOrder(){
+        return Arrays.copyOf(order, numEntries);
     }
 
 }
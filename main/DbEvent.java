@@ -0,0 +1,41 @@
+package main;
+
+//A single change to the database, as published to its listeners
+class DbEvent {
+    enum Type {
+        ENTRY_ADDED, //The entry was appended as the last row
+        ENTRY_REMOVED, //The entry was taken out of the given row; later rows move up one
+        PRICE_CHANGED,
+        TAGS_CHANGED, //A tag or value appeared or disappeared
+        SETTINGS_CHANGED //Settings, rates or times; there is no entry
+    }
+
+    private final Type type;
+    private final int id;
+    private final int row;
+
+    DbEvent(Type type, int id, int row){
+        this.type = type;
+        this.id = id;
+        this.row = row;
+    }
+
+    Type getType(){
+        return type;
+    }
+
+    //Id of the entry, or -1 if the change is not about one entry
+    int getId(){
+        return id;
+    }
+
+    //Row of the entry in the order the entries were added, as of the change
+    int getRow(){
+        return row;
+    }
+
+    @Override
+    public String toString(){
+        return type + " " + id + "@" + row;
+    }
+}
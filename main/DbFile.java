@@ -0,0 +1,403 @@
+package main;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.*;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.*;
+import java.time.format.*;
+
+//Reads and writes the save files
+//The binary format is the normal one; the original line based text format is kept for migration and readable backups
+//
+//Binary layout, big endian:
+//  header      magic "STKS", version int, last journal sequence included long (version 2), next serial int (version 3)
+//  settings    api key, graph currency ordinal byte, automatic rate byte, currency count byte then a base rate float per currency,
+//              price time and database time as epoch second long + nano int
+//  dictionary  string count int, then each string as a byte length int followed by UTF-8
+//  entries     entry count int, then one fixed width record per entry (see RECORD_SIZE)
+//  tags        pair count int, then tag and value dictionary indices as int pairs
+//Strings in the records are indices into the dictionary section, so each distinct string is written once
+//Version 2 records carry the entry's id so the journal written after the snapshot still refers to the right entries
+//Version 3 records carry the entry's serial, which unlike the id is never reused, so the value history can follow it
+class DbFile {
+    private static final int MAGIC = 0x53544B53; //"STKS"
+    static final int VERSION = 3;
+
+    //Ticker int, quantity float, price float, currency byte, flags byte, tag count short, first tag pair int, then id int from
+    //version 2 and serial int from version 3
+    private static final int RECORD_SIZE_V1 = 20;
+    private static final int RECORD_SIZE_V2 = 24;
+    private static final int RECORD_SIZE = 28;
+    private static final int FLAG_UPDATE_PRICE = 1;
+
+    //Entries are parsed in parallel, split until a chunk holds at most this many
+    private static final int CHUNK_SIZE = 2048;
+    private static final int UNSET = Integer.MIN_VALUE;
+
+    //Everything that is saved
+    static class Contents {
+        String apiKey = "";
+        Currency graphCurrency = Currency.CAD;
+        boolean autoRate = false;
+        float[] baseRates;
+        LocalDateTime priceTime;
+        LocalDateTime dbTime;
+        List<Entry> entries = new ArrayList<>();
+        int[] ids; //Id of each entry, or null to number them in order
+        int[] serials; //Serial of each entry, or null if the file predates them and the ids should stand in
+        int nextSerial; //Serial the next new entry gets
+        long journalSequence; //Every journal record up to this one is already part of the contents
+        int skipped; //Entries that could not be read and were left out
+    }
+
+    //Private constructor; this class cannot be instantiated and is purely static
+    private DbFile() {}
+
+    //Binary
+
+    //Reads the whole file into the heap with a single buffer, then decodes it from there
+    //It is not memory-mapped: a mapping lasts until it is garbage collected, and while it does Windows refuses to let the
+    //next save be renamed over the file
+    static Contents readBinary(Path path) throws IOException {
+        ByteBuffer buf;
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)){
+            long size = channel.size();
+            if(size > Integer.MAX_VALUE - 8)
+                throw new IOException("Save file too large");
+            buf = ByteBuffer.allocate((int) size);
+            while(buf.hasRemaining() && channel.read(buf) != -1);
+            buf.flip();
+        }
+        try{
+            return decode(buf);
+        } catch(RuntimeException e){ //Whatever a damaged file makes decoding trip over is reported like any unreadable file
+            throw new IOException("Truncated or corrupt save file", e);
+        }
+    }
+
+    private static Contents decode(ByteBuffer buf) throws IOException {
+        if(buf.getInt() != MAGIC)
+            throw new IOException("Not a save file");
+        int version = buf.getInt();
+        if(version < 1 || version > VERSION)
+            throw new IOException("Unsupported save file version " + version);
+
+        Contents contents = new Contents();
+        if(version >= 2)
+            contents.journalSequence = buf.getLong();
+        if(version >= 3)
+            contents.nextSerial = buf.getInt();
+        contents.apiKey = getString(buf);
+        contents.graphCurrency = Currency.values()[buf.get()];
+        contents.autoRate = buf.get() != 0;
+        contents.baseRates = new float[Currency.values().length];
+        Arrays.fill(contents.baseRates, 1f);
+        int numRates = buf.get();
+        for(int i = 0; i < numRates; i++){
+            float rate = buf.getFloat();
+            if(i < contents.baseRates.length) //Currencies are only ever added, never reordered
+                contents.baseRates[i] = rate;
+        }
+        contents.priceTime = getTime(buf);
+        contents.dbTime = getTime(buf);
+
+        String[] dictionary = new String[getCount(buf, 4, 0)];
+        for(int i = 0; i < dictionary.length; i++){
+            dictionary[i] = getString(buf);
+        }
+
+        //The tags follow the fixed width records, so both sections can be read side by side
+        int recordSize = version >= 3 ? RECORD_SIZE : version == 2 ? RECORD_SIZE_V2 : RECORD_SIZE_V1;
+        int numEntries = getCount(buf, recordSize, 4); //The tag count follows the records
+        int recordStart = buf.position();
+        ByteBuffer tags = buf.duplicate();
+        tags.position(recordStart + numEntries * recordSize);
+        int numPairs = getCount(tags, 8, 0);
+        int tagStart = tags.position();
+
+        //Intern each tag string once up front, so the parallel parsing below never waits on the tag dictionary
+        int[] nameIds = new int[dictionary.length];
+        int[] valueIds = new int[dictionary.length];
+        Arrays.fill(nameIds, UNSET);
+        Arrays.fill(valueIds, UNSET);
+        for(int i = 0; i < numPairs; i++){
+            int name = tags.getInt();
+            int value = tags.getInt();
+            if(name >= 0 && name < dictionary.length && nameIds[name] == UNSET)
+                nameIds[name] = TagDictionary.NAMES.intern(dictionary[name]);
+            if(value >= 0 && value < dictionary.length && valueIds[value] == UNSET)
+                valueIds[value] = TagDictionary.VALUES.intern(dictionary[value]);
+        }
+
+        //Only absolute reads are used from here on, so every chunk can share the buffer
+        Currency[] currencies = Currency.values();
+        int[] ids = new int[numEntries];
+        int[] serials = new int[numEntries];
+        Entry[] entries = parseAll(numEntries, i -> {
+            int record = recordStart + i * recordSize;
+            Entry entry = new Entry(dictionary[buf.getInt(record)], buf.getFloat(record + 4), (buf.get(record + 13) & FLAG_UPDATE_PRICE) != 0, buf.getFloat(record + 8), currencies[buf.get(record + 12)]);
+            int numTags = buf.getShort(record + 14);
+            int firstTag = tagStart + buf.getInt(record + 16) * 8;
+            for(int j = 0; j < numTags; j++){
+                int name = nameIds[buf.getInt(firstTag + j * 8)];
+                int value = valueIds[buf.getInt(firstTag + j * 8 + 4)];
+                if(name == UNSET || value == UNSET)
+                    throw new IllegalArgumentException("Tag outside the tag section");
+                entry.addValue(name, value);
+            }
+            ids[i] = version >= 2 ? buf.getInt(record + 20) : i;
+            serials[i] = version >= 3 ? buf.getInt(record + 24) : ids[i];
+            return entry;
+        });
+
+        contents.ids = new int[numEntries];
+        contents.serials = version >= 3 ? new int[numEntries] : null;
+        for(int i = 0; i < numEntries; i++){
+            if(entries[i] == null){
+                contents.skipped++;
+                continue;
+            }
+            contents.ids[contents.entries.size()] = ids[i];
+            if(contents.serials != null)
+                contents.serials[contents.entries.size()] = serials[i];
+            contents.entries.add(entries[i]);
+        }
+        contents.ids = Arrays.copyOf(contents.ids, contents.entries.size());
+        if(contents.serials != null)
+            contents.serials = Arrays.copyOf(contents.serials, contents.entries.size());
+        return contents;
+    }
+
+    //Parses every item in parallel, in order; an item that can't be parsed is left null rather than stopping the rest
+    private static Entry[] parseAll(int count, IntFunction<Entry> parse){
+        Entry[] results = new Entry[count];
+        ForkJoinPool.commonPool().invoke(new ParseChunk(parse, results, 0, count));
+        return results;
+    }
+
+    private static class ParseChunk extends RecursiveAction {
+        private final IntFunction<Entry> parse;
+        private final Entry[] results;
+        private final int start;
+        private final int end;
+
+        ParseChunk(IntFunction<Entry> parse, Entry[] results, int start, int end){
+            this.parse = parse;
+            this.results = results;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute(){
+            if(end - start <= CHUNK_SIZE){
+                for(int i = start; i < end; i++){
+                    try{
+                        results[i] = parse.apply(i);
+                    } catch(RuntimeException unused){
+                        //Damaged item, leave it out
+                    }
+                }
+                return;
+            }
+            int middle = (start + end) >>> 1;
+            invokeAll(new ParseChunk(parse, results, start, middle), new ParseChunk(parse, results, middle, end));
+        }
+    }
+
+    static void writeBinary(Path path, Contents contents) throws IOException {
+        //Build the dictionary first so every record can refer to it
+        Map<String, Integer> dictionary = new LinkedHashMap<>();
+        int numTags = 0;
+        for(Entry i : contents.entries){
+            dictionary.putIfAbsent(i.getTicker(), dictionary.size());
+            for(Map.Entry<String, String> j : i.getIterable()){
+                dictionary.putIfAbsent(j.getKey(), dictionary.size());
+                dictionary.putIfAbsent(j.getValue(), dictionary.size());
+                numTags++;
+            }
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + contents.entries.size() * (RECORD_SIZE + 16));
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(contents.journalSequence);
+        out.writeInt(contents.nextSerial);
+
+        putString(out, contents.apiKey);
+        out.writeByte(contents.graphCurrency.ordinal());
+        out.writeByte(contents.autoRate ? 1 : 0);
+        out.writeByte(contents.baseRates.length);
+        for(float i : contents.baseRates){
+            out.writeFloat(i);
+        }
+        putTime(out, contents.priceTime);
+        putTime(out, contents.dbTime);
+
+        out.writeInt(dictionary.size());
+        for(String i : dictionary.keySet()){
+            putString(out, i);
+        }
+
+        out.writeInt(contents.entries.size());
+        int firstTag = 0;
+        for(int k = 0; k < contents.entries.size(); k++){
+            Entry i = contents.entries.get(k);
+            out.writeInt(dictionary.get(i.getTicker()));
+            out.writeFloat(i.getQuantityF());
+            out.writeFloat(i.getPriceF());
+            out.writeByte(i.getCurrency().ordinal());
+            out.writeByte(i.getUpdatePrice() ? FLAG_UPDATE_PRICE : 0);
+            out.writeShort(i.getNumTags());
+            out.writeInt(firstTag);
+            out.writeInt(contents.ids != null ? contents.ids[k] : k);
+            out.writeInt(contents.serials != null ? contents.serials[k] : contents.ids != null ? contents.ids[k] : k);
+            firstTag += i.getNumTags();
+        }
+
+        out.writeInt(numTags);
+        for(Entry i : contents.entries){
+            for(Map.Entry<String, String> j : i.getIterable()){
+                out.writeInt(dictionary.get(j.getKey()));
+                out.writeInt(dictionary.get(j.getValue()));
+            }
+        }
+
+        out.flush();
+        writeAtomically(path, bytes.toByteArray());
+    }
+
+    //Writes a temporary file next to the target, forces it to disk and renames it over the target
+    //The target then always holds either the old contents or all of the new, never part of the new
+    //The directory is forced after the rename too, otherwise a crash soon after could still bring back the old file
+    static void writeAtomically(Path path, byte[] bytes) throws IOException {
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try(FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+            ByteBuffer buf = ByteBuffer.wrap(bytes);
+            while(buf.hasRemaining()){
+                channel.write(buf);
+            }
+            channel.force(true);
+        }
+        try{
+            Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch(AtomicMoveNotSupportedException e){
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING);
+        }
+        forceDirectory(path.toAbsolutePath().getParent());
+    }
+
+    //Puts the directory's entries on disk, such as a rename into it
+    //Windows can't open a directory this way, but its file system journals renames itself, so there it is skipped
+    private static void forceDirectory(Path dir) throws IOException {
+        FileChannel channel;
+        try{
+            channel = FileChannel.open(dir, StandardOpenOption.READ);
+        } catch(IOException unused){
+            return;
+        }
+        try(channel){
+            channel.force(true);
+        }
+    }
+
+    //Reads a count of items of at least the given size, checking they fit in what is left, less the reserved bytes that
+    //follow them, before anything is allocated for them; a damaged count can't ask for a huge or negative array
+    static int getCount(ByteBuffer buf, int itemSize, int reserved){
+        int count = buf.getInt();
+        if(count < 0 || (long) count * itemSize > buf.remaining() - reserved)
+            throw new IllegalArgumentException("Count of " + count + " runs past the end of the data");
+        return count;
+    }
+
+    static String getString(ByteBuffer buf){
+        byte[] bytes = new byte[getCount(buf, 1, 0)];
+        buf.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static void putString(DataOutputStream out, String string) throws IOException {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static LocalDateTime getTime(ByteBuffer buf){
+        long seconds = buf.getLong();
+        return LocalDateTime.ofEpochSecond(seconds, buf.getInt(), ZoneOffset.UTC);
+    }
+
+    static void putTime(DataOutputStream out, LocalDateTime time) throws IOException {
+        out.writeLong(time.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(time.getNano());
+    }
+
+    //Text
+
+    static Contents readText(Path path) throws IOException {
+        Contents contents = new Contents();
+        List<String> lines = new ArrayList<>();
+        try(BufferedReader br = Files.newBufferedReader(path)){
+            //First lines contain settings, each keeps its default if someone modified it manually incorrectly
+            contents.apiKey = parseOr(br.readLine(), Objects::requireNonNull, "");
+            contents.graphCurrency = parseOr(br.readLine(), Currency::valueOf, Currency.CAD);
+            contents.autoRate = parseOr(br.readLine(), Db::readBool, false);
+            contents.baseRates = parseOr(br.readLine(), Db::readRates, Db.defaultRates());
+
+            //Next lines are times
+            contents.priceTime = parseOr(br.readLine(), LocalDateTime::parse, LocalDateTime.now());
+            contents.dbTime = parseOr(br.readLine(), LocalDateTime::parse, contents.priceTime);
+
+            //Rest of the lines correspond to entries
+            String line;
+            while((line = br.readLine()) != null){
+                if(!line.isEmpty())
+                    lines.add(line);
+            }
+        }
+
+        for(Entry i : parseAll(lines.size(), i -> Entry.fromString(lines.get(i)))){
+            if(i != null)
+                contents.entries.add(i);
+            else
+                contents.skipped++;
+        }
+        return contents;
+    }
+
+    private static <T> T parseOr(String line, Function<String, T> parse, T fallback){
+        try{
+            return parse.apply(line);
+        } catch(RuntimeException unused){
+            return fallback;
+        }
+    }
+
+    static void writeText(Path path, Contents contents) throws IOException {
+        try(BufferedWriter bw = Files.newBufferedWriter(path)){
+            //First lines contain settings
+            bw.write(contents.apiKey);
+            bw.newLine();
+            bw.write(contents.graphCurrency.toString());
+            bw.newLine();
+            bw.write(Db.writeBool(contents.autoRate));
+            bw.newLine();
+            bw.write(Db.writeRates(contents.baseRates));
+            bw.newLine();
+            bw.write(contents.priceTime.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            bw.newLine();
+            bw.write(contents.dbTime.format(DateTimeFormatter.ISO_LOCAL_DATE_TIME));
+            bw.newLine();
+            StringBuilder line = new StringBuilder(128);
+            for(Entry i : contents.entries){
+                i.writeTo(bw, line);
+            }
+        }
+    }
+}
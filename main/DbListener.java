@@ -0,0 +1,10 @@
+package main;
+
+import java.util.*;
+
+//Told about changes to the database, in the order they happened
+//Db calls this on the thread making the change while holding its lock, so it must be quick and must not wait on another thread
+//Wrap it in an EdtDispatcher to have the changes delivered in batches on the EDT instead
+interface DbListener {
+    void dbChanged(List<DbEvent> events);
+}
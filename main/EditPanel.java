@@ -1,6 +1,7 @@
 package main;
 
 import java.util.*;
+import java.util.List;
 import javax.swing.*;
 import java.awt.*;
 import java.awt.event.*;
@@ -147,7 +148,7 @@ class EditPanel extends JPanel {
         //Initialize the boxes only if entry exists
         if (entry != null){
             int i = 0;
-            Set<Map.Entry<String, String>> tags = entry.getIterable();
+            List<Map.Entry<String, String>> tags = entry.getIterable();
             for(Map.Entry<String, String> kv : tags){
                 addItemButton.doClick();
                 boxes.get(i).setSelectedItem(kv.getKey());
@@ -204,9 +205,10 @@ class EditPanel extends JPanel {
             }
         }
         else if(resultPassed){
-            price = PriceWorker.updatePrice(ticker);
-            if(price < 0f){
-                msg = "Could not find a price for the ticker " + ticker + ".";
+            try{
+                price = QuoteFetcher.updatePrice(ticker);
+            } catch(QuoteException e){
+                msg = "Could not find a price for the ticker " + ticker + ". " + e.getMessage() + ".";
                 resultPassed = false;
             }
         }
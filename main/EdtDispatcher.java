@@ -0,0 +1,47 @@
+package main;
+
+import java.util.*;
+import javax.swing.SwingUtilities;
+
+//Collects changes from any thread and hands them to the wrapped listener on the EDT, in batches
+//Only one delivery is queued at a time and repeated price changes to an entry count once, so a price update with
+//thousands of quotes costs a handful of repaints rather than one per quote
+//Kept apart from Db so that using the database without a UI never loads Swing
+class EdtDispatcher implements DbListener {
+    private final DbListener target;
+    private List<DbEvent> pending = new ArrayList<>();
+    private final Set<Integer> pendingPrices = new HashSet<>(); //Entries with a price change already pending
+    private boolean scheduled = false;
+
+    EdtDispatcher(DbListener target){
+        this.target = target;
+    }
+
+    @Override
+    public synchronized void dbChanged(List<DbEvent> events){
+        for(DbEvent i : events){
+            if(i.getType() == DbEvent.Type.PRICE_CHANGED){
+                if(!pendingPrices.add(i.getId()))
+                    continue;
+            }
+            else if(i.getType() != DbEvent.Type.SETTINGS_CHANGED)
+                pendingPrices.clear(); //The id may now mean a different entry
+            pending.add(i);
+        }
+        if(!scheduled && !pending.isEmpty()){
+            scheduled = true;
+            SwingUtilities.invokeLater(this::deliver);
+        }
+    }
+
+    private void deliver(){
+        List<DbEvent> batch;
+        synchronized(this){
+            batch = pending;
+            pending = new ArrayList<>();
+            pendingPrices.clear();
+            scheduled = false;
+        }
+        target.dbChanged(batch);
+    }
+}
@@ -1,15 +1,23 @@
 package main;
 
 import java.util.*;
+import java.io.*;
 
 //Entries contain a quantity, price, and an optional map of categorizing tags
+//Tags are held as pairs of ids from the tag dictionary
+//Entries handed out by the database are views of its rows; changes go through the database, not the view
 class Entry {
     private float quantity;
     private boolean updatePrice;
     private String ticker;
     private float price;
     private Currency currency;
-    private Map<String, String> tagMap;
+    private int[] tags; //Tag id followed by value id for each tag
+    private int numTags;
+
+    //Row this entry is a view of, -1 while the entry is not in the database
+    private int id = -1;
+    private int generation;
 
     public Entry(String ticker, float quantity, boolean updatePrice, float price, Currency currency){
         this.ticker = ticker;
@@ -17,17 +25,18 @@ class Entry {
         this.updatePrice = updatePrice;
         this.price = price;
         this.currency = currency;
-        this.tagMap = new HashMap<>(32);
+        this.tags = new int[4]; //Most entries hold only a couple of tags
     }
 
     //Opposite of toString()
+    //Fields are found in a single pass over the line; like split(","), empty fields at the end are ignored
     public static Entry fromString(String line){
         Entry retVal;
         try{
-            String[] splitLine = line.split(",");
-            retVal = new Entry(splitLine[0], Float.parseFloat(splitLine[1]), Db.readBool(splitLine[2]), Float.parseFloat(splitLine[3]), Currency.valueOf(splitLine[4]));
-            for(int i = 5; i < splitLine.length; i += 2){
-                retVal.addValue(splitLine[i], splitLine[i+1]);
+            Fields fields = new Fields(line);
+            retVal = new Entry(fields.next(), Float.parseFloat(fields.next()), Db.readBool(fields.next()), Float.parseFloat(fields.next()), Currency.valueOf(fields.next()));
+            while(fields.hasNext()){
+                retVal.addValue(fields.next(), fields.next());
             }
         } catch(Exception unused){//Something went wrong while parsing the string, don't complete the construction
             retVal = null;
@@ -36,20 +45,86 @@ class Entry {
         return retVal;
     }
 
+    //Walks the comma separated fields of a line
+    private static class Fields {
+        private final String line;
+        private final int end;
+        private int pos = 0;
+
+        Fields(String line){
+            int end = line.length();
+            while(end > 0 && line.charAt(end - 1) == ',')
+                end--;
+            this.line = line;
+            this.end = end;
+        }
+
+        boolean hasNext(){
+            return pos < end;
+        }
+
+        String next(){
+            if(pos > end)
+                throw new NoSuchElementException("The line has too few fields");
+            int comma = line.indexOf(',', pos);
+            if(comma < 0 || comma > end)
+                comma = end;
+            String field = line.substring(pos, comma);
+            pos = comma + 1;
+            return field;
+        }
+    }
+
     public float getValue(){
         return price * quantity;
     };
 
     public void addValue(String key, String value){
-        tagMap.put(key, value);
+        addValue(TagDictionary.NAMES.intern(key), TagDictionary.VALUES.intern(value));
     };
 
+    //Sets the value of the tag, replacing any value already held for that tag
+    void addValue(int tag, int value){
+        for(int i = 0; i < numTags; i++){
+            if(tags[2*i] == tag){
+                tags[2*i + 1] = value;
+                return;
+            }
+        }
+        if(2*numTags == tags.length)
+            tags = Arrays.copyOf(tags, tags.length * 2);
+        tags[2*numTags] = tag;
+        tags[2*numTags + 1] = value;
+        numTags++;
+    }
+
+    int getNumTags(){
+        return numTags;
+    }
+
+    int getTagId(int index){
+        return tags[2*index];
+    }
+
+    int getValueId(int index){
+        return tags[2*index + 1];
+    }
+
+    //Returns the value id held for the tag id, or StringDictionary.NONE
+    int valueIdForTag(int tag){
+        for(int i = 0; i < numTags; i++){
+            if(tags[2*i] == tag)
+                return tags[2*i + 1];
+        }
+        return StringDictionary.NONE;
+    }
+
     public String getPrice(){
         return Float.toString(price);
     };
 
-    public void setPrice(float newPrice){
-        price = newPrice;
+    float getPriceF(){
+        return price;
     }
 
     public boolean getUpdatePrice(){
@@ -60,12 +135,18 @@ class Entry {
         return Float.toString(quantity);
     };
 
+    float getQuantityF(){
+        return quantity;
+    }
+
     public boolean containsPair(String key, String value){
-        return value.equals(tagMap.get(key));
+        int valueId = TagDictionary.VALUES.find(value);
+        return valueId != StringDictionary.NONE && valueIdForTag(TagDictionary.NAMES.find(key)) == valueId;
     };
 
     public String valueForTag(String key){
-        return tagMap.getOrDefault(key, "Not classified");
+        int value = valueIdForTag(TagDictionary.NAMES.find(key));
+        return value == StringDictionary.NONE ? GroupSums.UNCLASSIFIED : TagDictionary.VALUES.get(value);
     };
 
     public String getTicker(){
@@ -76,29 +157,69 @@ class Entry {
         return currency;
     }
 
-    public Set<Map.Entry<String, String>> getIterable(){
-        return tagMap.entrySet();
+    int getId(){
+        return id;
+    }
+
+    int getGeneration(){
+        return generation;
+    }
+
+    //Called by the store when it creates a view of a row
+    void attach(int id, int generation){
+        this.id = id;
+        this.generation = generation;
+    }
+
+    //The tags as strings, for display
+    public List<Map.Entry<String, String>> getIterable(){
+        List<Map.Entry<String, String>> retList = new ArrayList<>(numTags);
+        for(int i = 0; i < numTags; i++){
+            retList.add(new AbstractMap.SimpleImmutableEntry<>(TagDictionary.NAMES.get(getTagId(i)), TagDictionary.VALUES.get(getValueId(i))));
+        }
+        return retList;
     }
 
     //The line that gets saved in the file
     @Override
     public String toString(){
-        String essentials = String.join(",", ticker, Float.toString(quantity), Db.writeBool(updatePrice), Float.toString(price), currency.toString());
-        String tags = System.lineSeparator();
-        for(Map.Entry<String, String> i : tagMap.entrySet()){
-            tags = "," + i.getKey() + "," + i.getValue() + tags;
-        }
-
-        return essentials + tags;
+        StringBuilder line = new StringBuilder(32 + numTags * 16);
+        appendTo(line);
+        return line.toString();
     };
 
+    //Writes the saved line, including the line separator, straight to the output
+    //The line is assembled in the caller's buffer, which a save reuses for every entry
+    void writeTo(Writer out, StringBuilder buffer) throws IOException {
+        buffer.setLength(0);
+        appendTo(buffer);
+        out.append(buffer);
+    }
+
+    void appendTo(StringBuilder line){
+        line.append(ticker).append(',');
+        line.append(quantity).append(',');
+        line.append(Db.writeBool(updatePrice)).append(',');
+        line.append(price).append(',');
+        line.append(currency);
+        for(int i = 0; i < numTags; i++){
+            line.append(',').append(TagDictionary.NAMES.get(getTagId(i)));
+            line.append(',').append(TagDictionary.VALUES.get(getValueId(i)));
+        }
+        line.append(System.lineSeparator());
+    }
+
     //The line that gets written to the display
     public String displayLine(){
-        String summary = String.join(", ", "Ticker: " + ticker, "Currency: " + getCurrency(), "Quantity: " + Float.toString(quantity), "Price: " + Float.toString(price));
-        for(Map.Entry<String, String> i : tagMap.entrySet()){
-            summary += ", " + i.getKey() + ": " + i.getValue();
+        StringBuilder summary = new StringBuilder(64 + numTags * 24);
+        summary.append("Ticker: ").append(ticker);
+        summary.append(", Currency: ").append(currency);
+        summary.append(", Quantity: ").append(quantity);
+        summary.append(", Price: ").append(price);
+        for(int i = 0; i < numTags; i++){
+            summary.append(", ").append(TagDictionary.NAMES.get(getTagId(i))).append(": ").append(TagDictionary.VALUES.get(getValueId(i)));
         }
-       return summary;
+        return summary.toString();
     };
 
 }
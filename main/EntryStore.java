@@ -0,0 +1,134 @@
+package main;
+
+import java.util.*;
+
+//Holds the entries column by column in primitive arrays indexed by entry id
+//Tickers, tags and values are dictionary encoded so each distinct string is stored once, tags through the shared tag dictionary
+//Entry objects are only created on request as views of a single row
+class EntryStore {
+    private static final int NONE = StringDictionary.NONE;
+
+    private int capacity = 16;
+    private float[] quantity = new float[capacity];
+    private float[] price = new float[capacity];
+    private byte[] currency = new byte[capacity];
+    private int[] ticker = new int[capacity];
+    private int[] generation = new int[capacity]; //Bumped whenever an id is reused, so stale views can be told apart
+    private int[] serial = new int[capacity]; //Numbered in the order entries were created and never reused, unlike ids
+    private BitSet updatePrice = new BitSet();
+    private int[][] tagColumns = new int[0][]; //tagColumns[tag][id] is the value, or NONE if the entry lacks the tag
+
+    private StringDictionary tickers = new StringDictionary();
+
+    private static final Currency[] CURRENCIES = Currency.values();
+
+    //Writes the entry into the row for the id, replacing whatever was there
+    void set(int id, Entry entry){
+        ensureCapacity(id + 1);
+        quantity[id] = entry.getQuantityF();
+        price[id] = entry.getPriceF();
+        currency[id] = (byte) entry.getCurrency().ordinal();
+        ticker[id] = tickers.intern(entry.getTicker());
+        updatePrice.set(id, entry.getUpdatePrice());
+        generation[id]++;
+
+        for(int[] column : tagColumns){
+            column[id] = NONE;
+        }
+        for(int i = 0; i < entry.getNumTags(); i++){
+            int tag = entry.getTagId(i);
+            while(tag >= tagColumns.length){ //New tag, give it a column
+                int[] column = new int[capacity];
+                Arrays.fill(column, NONE);
+                tagColumns = Arrays.copyOf(tagColumns, tagColumns.length + 1);
+                tagColumns[tagColumns.length - 1] = column;
+            }
+            tagColumns[tag][id] = entry.getValueId(i);
+        }
+    }
+
+    //Creates a view of the row, which is not updated if the row later changes
+    Entry get(int id){
+        Entry entry = new Entry(tickers.get(ticker[id]), quantity[id], updatePrice.get(id), price[id], CURRENCIES[currency[id]]);
+        for(int tag = 0; tag < tagColumns.length; tag++){
+            int value = tagColumns[tag][id];
+            if(value != NONE)
+                entry.addValue(tag, value);
+        }
+        entry.attach(id, generation[id]);
+        return entry;
+    }
+
+    String getTicker(int id){
+        return tickers.get(ticker[id]);
+    }
+
+    boolean getUpdatePrice(int id){
+        return updatePrice.get(id);
+    }
+
+    float getValue(int id){
+        return quantity[id] * price[id];
+    }
+
+    Currency getCurrency(int id){
+        return CURRENCIES[currency[id]];
+    }
+
+    int getGeneration(int id){
+        return generation[id];
+    }
+
+    int getSerial(int id){
+        return serial[id];
+    }
+
+    void setSerial(int id, int newSerial){
+        serial[id] = newSerial;
+    }
+
+    void setPrice(int id, float newPrice){
+        price[id] = newPrice;
+    }
+
+    //Totals the converted value of the given ids along the axis, with the conversion factors indexed by currency ordinal
+    //An empty axis groups by ticker; entries without the tag are grouped as not classified
+    Map<String, Float> sum(BitSet ids, String axis, float[] factors){
+        int[] labels;
+        StringDictionary labelNames;
+        if("".equals(axis)){
+            labels = ticker;
+            labelNames = tickers;
+        }
+        else{
+            int tag = TagDictionary.NAMES.find(axis);
+            labels = tag == NONE || tag >= tagColumns.length ? null : tagColumns[tag];
+            labelNames = TagDictionary.VALUES;
+        }
+
+        GroupSums sums = new GroupSums(labelNames.size());
+        for(int id = ids.nextSetBit(0); id >= 0; id = ids.nextSetBit(id + 1)){
+            int label = labels == null ? NONE : labels[id];
+            sums.add(label == NONE ? -1 : label, quantity[id] * price[id] * factors[currency[id]]);
+        }
+        return sums.toMap(labelNames::get);
+    }
+
+    private void ensureCapacity(int needed){
+        if(needed <= capacity)
+            return;
+
+        int newCapacity = Math.max(needed, capacity * 2);
+        quantity = Arrays.copyOf(quantity, newCapacity);
+        price = Arrays.copyOf(price, newCapacity);
+        currency = Arrays.copyOf(currency, newCapacity);
+        ticker = Arrays.copyOf(ticker, newCapacity);
+        generation = Arrays.copyOf(generation, newCapacity);
+        serial = Arrays.copyOf(serial, newCapacity);
+        for(int tag = 0; tag < tagColumns.length; tag++){
+            tagColumns[tag] = Arrays.copyOf(tagColumns[tag], newCapacity);
+            Arrays.fill(tagColumns[tag], capacity, newCapacity, NONE);
+        }
+        capacity = newCapacity;
+    }
+}
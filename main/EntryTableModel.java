@@ -0,0 +1,188 @@
+package main;
+
+import java.util.*;
+import javax.swing.table.*;
+
+//Presents the entries to a table, which only asks for the cells it is about to paint
+//Rows are in the order the entries were added; sorting is left to the table's row sorter
+//The rows follow the database's change events, so a change only touches the rows it affects
+//The model keeps its own list of ids, which only changes as events are handled on the EDT, so the table never sees
+//a row count that is ahead of the events it has been told about
+class EntryTableModel extends AbstractTableModel implements DbListener {
+    static final int REMOVE = 0;
+    static final int MODIFY = 1;
+    static final int TICKER = 2;
+    static final int CURRENCY = 3;
+    static final int QUANTITY = 4;
+    static final int PRICE = 5;
+    static final int VALUE = 6;
+    static final int TAGS = 7;
+
+    private static final String[] NAMES = {"", "", "Ticker", "Currency", "Quantity", "Price", "Value", "Tags"};
+    private static final Class<?>[] CLASSES = {String.class, String.class, String.class, String.class, Float.class, Float.class, Float.class, String.class};
+
+    private int[] ids = new int[0]; //Id of the entry in each row
+    private int numRows = 0;
+    private int[] rowOfId = new int[0]; //Row of each id, or -1
+
+    //A row's cells are asked for one after another, so keep the last entry rather than fetch it for every cell
+    private int cachedRow = -1;
+    private Entry cachedEntry;
+
+    //Reloads every row; call once when starting to listen for changes
+    void refresh(){
+        ids = Db.getIdsInOrder();
+        numRows = ids.length;
+        rowOfId = new int[0];
+        for(int i = 0; i < numRows; i++){
+            setRowOfId(ids[i], i);
+        }
+        cachedRow = -1;
+        fireTableDataChanged();
+    }
+
+    @Override
+    public void dbChanged(List<DbEvent> events){
+        cachedRow = -1;
+        BitSet updated = new BitSet(); //Price changes are collected so neighbouring rows are repainted together
+        for(DbEvent i : events){
+            switch(i.getType()){
+                case ENTRY_ADDED:
+                    fireUpdated(updated);
+                    insertRow(i.getId(), Math.min(i.getRow(), numRows));
+                    break;
+                case ENTRY_REMOVED:
+                    fireUpdated(updated);
+                    removeRow(i.getId(), i.getRow());
+                    break;
+                case PRICE_CHANGED:
+                    int row = rowOf(i.getId());
+                    if(row >= 0)
+                        updated.set(row);
+                    break;
+                default:
+                    //Nothing shown in the table
+            }
+        }
+        fireUpdated(updated);
+    }
+
+    private void insertRow(int id, int row){
+        if(numRows == ids.length)
+            ids = Arrays.copyOf(ids, Math.max(16, numRows * 2));
+        System.arraycopy(ids, row, ids, row + 1, numRows - row);
+        ids[row] = id;
+        numRows++;
+        for(int i = row; i < numRows; i++){
+            setRowOfId(ids[i], i);
+        }
+        fireTableRowsInserted(row, row);
+    }
+
+    private void removeRow(int id, int row){
+        if(row >= numRows || ids[row] != id) //Should not happen, but find the row rather than remove the wrong one
+            row = rowOf(id);
+        if(row < 0)
+            return;
+        System.arraycopy(ids, row + 1, ids, row, numRows - row - 1);
+        numRows--;
+        setRowOfId(id, -1);
+        for(int i = row; i < numRows; i++){
+            setRowOfId(ids[i], i);
+        }
+        fireTableRowsDeleted(row, row);
+    }
+
+    //Fires one update per run of consecutive rows, or a single one over the whole range when there are many
+    private void fireUpdated(BitSet rows){
+        if(rows.cardinality() > 64){
+            fireTableRowsUpdated(rows.nextSetBit(0), rows.length() - 1);
+            rows.clear();
+            return;
+        }
+        for(int start = rows.nextSetBit(0); start >= 0; start = rows.nextSetBit(start)){
+            int end = rows.nextClearBit(start);
+            fireTableRowsUpdated(start, end - 1);
+            start = end;
+        }
+        rows.clear();
+    }
+
+    private int rowOf(int id){
+        return id < rowOfId.length ? rowOfId[id] : -1;
+    }
+
+    private void setRowOfId(int id, int row){
+        if(id >= rowOfId.length){
+            int oldLength = rowOfId.length;
+            rowOfId = Arrays.copyOf(rowOfId, Math.max(id + 1, oldLength * 2));
+            Arrays.fill(rowOfId, oldLength, rowOfId.length, -1);
+        }
+        rowOfId[id] = row;
+    }
+
+    //Returns a view of the entry shown in the row, which is a model row rather than a view row
+    //Null if the entry was removed and the event saying so has not arrived yet
+    Entry getEntry(int row){
+        if(row != cachedRow){
+            cachedEntry = Db.getEntryById(ids[row]);
+            cachedRow = row;
+        }
+        return cachedEntry;
+    }
+
+    @Override
+    public int getRowCount(){
+        return numRows;
+    }
+
+    @Override
+    public int getColumnCount(){
+        return NAMES.length;
+    }
+
+    @Override
+    public String getColumnName(int column){
+        return NAMES[column];
+    }
+
+    @Override
+    public Class<?> getColumnClass(int column){
+        return CLASSES[column];
+    }
+
+    @Override
+    public Object getValueAt(int row, int column){
+        Entry entry = getEntry(row);
+        if(entry == null)
+            return CLASSES[column] == Float.class ? null : "";
+        switch(column){
+            case REMOVE:
+                return "Remove";
+            case MODIFY:
+                return "Modify";
+            case TICKER:
+                return entry.getTicker();
+            case CURRENCY:
+                return entry.getCurrency().toString();
+            case QUANTITY:
+                return entry.getQuantityF();
+            case PRICE:
+                return entry.getPriceF();
+            case VALUE:
+                return entry.getValue();
+            default:
+                return tagsToText(entry);
+        }
+    }
+
+    private static String tagsToText(Entry entry){
+        StringBuilder text = new StringBuilder();
+        for(int i = 0; i < entry.getNumTags(); i++){
+            if(i > 0)
+                text.append(", ");
+            text.append(TagDictionary.NAMES.get(entry.getTagId(i))).append(": ").append(TagDictionary.VALUES.get(entry.getValueId(i)));
+        }
+        return text.toString();
+    }
+}
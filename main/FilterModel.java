@@ -0,0 +1,130 @@
+package main;
+
+import java.util.*;
+
+//What the graph pane has selected: the tag to group by, and values that entries must or must not hold
+//Selections are held here rather than in the components, so the lists showing them can be rebuilt or scrolled freely
+//A tag's values are fetched from the database only once that tag is looked at, then kept sorted until the tags change
+class FilterModel {
+    enum State {
+        NONE, INCLUDE, EXCLUDE;
+
+        //Clicking a value steps through the states in this order
+        State next(){
+            return values()[(ordinal() + 1) % values().length];
+        }
+    }
+
+    private String axis = ""; //Empty to group by ticker
+    private final Map<String, Map<String, State>> selected = new TreeMap<>(); //Tag, then value; only values that are not NONE
+    private final Map<String, String[]> valueCache = new HashMap<>();
+
+    String getAxis(){
+        return axis;
+    }
+
+    void setAxis(String tag){
+        axis = tag == null ? "" : tag;
+    }
+
+    State getState(String tag, String value){
+        Map<String, State> thisTag = tag == null ? null : selected.get(tag);
+        if(thisTag == null)
+            return State.NONE;
+        return thisTag.getOrDefault(value, State.NONE);
+    }
+
+    //Moves the value on to its next state and returns it
+    State cycle(String tag, String value){
+        State next = getState(tag, value).next();
+        if(next == State.NONE){
+            Map<String, State> thisTag = selected.get(tag);
+            thisTag.remove(value);
+            if(thisTag.isEmpty())
+                selected.remove(tag);
+        }
+        else
+            selected.computeIfAbsent(tag, k -> new TreeMap<>()).put(value, next);
+        return next;
+    }
+
+    //Number of values of the tag that are included or excluded
+    int countSelected(String tag){
+        Map<String, State> thisTag = tag == null ? null : selected.get(tag);
+        return thisTag == null ? 0 : thisTag.size();
+    }
+
+    void clear(){
+        selected.clear();
+    }
+
+    //Returns the values of the tag containing the query, ignoring case, in sorted order
+    String[] values(String tag, String query){
+        String[] all = valueCache.computeIfAbsent(tag, k -> {
+            String[] values = Db.getValuesForTag(k);
+            if(values == null)
+                return new String[0];
+            Arrays.sort(values, String.CASE_INSENSITIVE_ORDER);
+            return values;
+        });
+        if(query == null || query.isEmpty())
+            return all;
+
+        String lowerQuery = query.toLowerCase();
+        List<String> matches = new ArrayList<>();
+        for(String i : all){
+            if(i.toLowerCase().contains(lowerQuery))
+                matches.add(i);
+        }
+        return matches.toArray(new String[0]);
+    }
+
+    //Call when tags or values may have appeared or disappeared
+    //Selections of values that no longer exist are dropped, as is an axis that no longer exists
+    void tagsChanged(){
+        valueCache.clear();
+        Set<String> tags = new HashSet<>(Arrays.asList(Db.getTags()));
+        if(!tags.contains(axis))
+            axis = "";
+
+        Iterator<Map.Entry<String, Map<String, State>>> i = selected.entrySet().iterator();
+        while(i.hasNext()){
+            Map.Entry<String, Map<String, State>> thisTag = i.next();
+            String[] values = tags.contains(thisTag.getKey()) ? Db.getValuesForTag(thisTag.getKey()) : null;
+            if(values == null){
+                i.remove();
+                continue;
+            }
+            thisTag.getValue().keySet().retainAll(Arrays.asList(values));
+            if(thisTag.getValue().isEmpty())
+                i.remove();
+        }
+    }
+
+    //Fills the lists findGraphables takes with the included and excluded values and their tags
+    void fillCriteria(ArrayList<String> incVal, ArrayList<String> incTag, ArrayList<String> remVal, ArrayList<String> remTag){
+        selected.forEach((tag, values) -> values.forEach((value, state) -> {
+            if(state == State.INCLUDE){
+                incVal.add(value);
+                incTag.add(tag);
+            }
+            else{
+                remVal.add(value);
+                remTag.add(tag);
+            }
+        }));
+    }
+
+    //Summary of the selection, for display
+    String describe(){
+        StringJoiner include = new StringJoiner(", ");
+        StringJoiner exclude = new StringJoiner(", ");
+        selected.forEach((tag, values) -> values.forEach((value, state) -> (state == State.INCLUDE ? include : exclude).add(tag + ": " + value)));
+        if(include.length() == 0 && exclude.length() == 0)
+            return "No filters, every entry is graphed";
+        String text = include.length() == 0 ? "" : "Only " + include;
+        if(exclude.length() > 0)
+            text += (text.isEmpty() ? "" : "; ") + "Not " + exclude;
+        return text;
+    }
+}
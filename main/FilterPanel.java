@@ -0,0 +1,222 @@
+package main;
+
+import java.util.*;
+import javax.swing.*;
+import javax.swing.event.*;
+import java.awt.*;
+import java.awt.event.*;
+
+//Lets the user pick the tag to graph by and filter on tag values
+//Tags are listed on the left; the values of the chosen tag are listed on the right and can be searched
+//Both are lists, which only create what they paint, so a tag with thousands of values costs no more than one with a few
+//Clicking a value includes it, again excludes it, and a third time clears it
+class FilterPanel extends JPanel {
+    private static final String NO_AXIS = "None (by ticker)";
+
+    private final FilterModel filters = new FilterModel();
+
+    private final DefaultComboBoxModel<String> axisModel = new DefaultComboBoxModel<>();
+    private final DefaultListModel<String> tagModel = new DefaultListModel<>();
+    private final ValueListModel valueModel = new ValueListModel();
+    private final JList<String> tagList = new JList<>(tagModel);
+    private final JList<String> valueList = new JList<>(valueModel);
+    private final JTextField searchField = new JTextField(12);
+    private final JLabel summaryLabel = new JLabel();
+    private boolean updatingAxis = false;
+
+    public FilterPanel(){
+        setLayout(new GridBagLayout());
+
+        //Tag to graph by
+        JLabel axisLabel = new JLabel("Graph by: ");
+        GridBagConstraints axisLabelC = Main.createGridBagConstraints(0, 1, 0, 1);
+        axisLabelC.anchor = GridBagConstraints.WEST;
+        add(axisLabel, axisLabelC);
+
+        JComboBox<String> axisBox = new JComboBox<>(axisModel);
+        axisBox.addActionListener(e -> {
+            if(updatingAxis)
+                return;
+            Object axis = axisBox.getSelectedItem();
+            filters.setAxis(axis == null || NO_AXIS.equals(axis) ? "" : (String) axis);
+        });
+        GridBagConstraints axisBoxC = Main.createGridBagConstraints(1, 2, 0, 1);
+        axisBoxC.anchor = GridBagConstraints.WEST;
+        add(axisBox, axisBoxC);
+
+        //Tags
+        JLabel tagLabel = new JLabel("Filter on tag");
+        GridBagConstraints tagLabelC = Main.createGridBagConstraints(0, 1, 1, 1);
+        tagLabelC.anchor = GridBagConstraints.WEST;
+        add(tagLabel, tagLabelC);
+
+        tagList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        tagList.setCellRenderer(new DefaultListCellRenderer(){
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus){
+                int count = filters.countSelected((String) value);
+                return super.getListCellRendererComponent(list, count == 0 ? value : value + " (" + count + ")", index, isSelected, cellHasFocus);
+            }
+        });
+        tagList.addListSelectionListener(e -> {
+            if(!e.getValueIsAdjusting())
+                showValues();
+        });
+        GridBagConstraints tagScrollC = Main.createGridBagConstraints(0, 1, 2, 1);
+        tagScrollC.weightx = 0.3;
+        tagScrollC.weighty = 1;
+        tagScrollC.fill = GridBagConstraints.BOTH;
+        add(new JScrollPane(tagList), tagScrollC);
+
+        //Values of the selected tag
+        JLabel searchLabel = new JLabel("Values matching ");
+        GridBagConstraints searchLabelC = Main.createGridBagConstraints(1, 1, 1, 1);
+        searchLabelC.anchor = GridBagConstraints.EAST;
+        add(searchLabel, searchLabelC);
+
+        searchField.getDocument().addDocumentListener(new DocumentListener(){
+            @Override
+            public void insertUpdate(DocumentEvent e){
+                showValues();
+            }
+
+            @Override
+            public void removeUpdate(DocumentEvent e){
+                showValues();
+            }
+
+            @Override
+            public void changedUpdate(DocumentEvent e){
+                showValues();
+            }
+        });
+        GridBagConstraints searchFieldC = Main.createGridBagConstraints(2, 1, 1, 1);
+        searchFieldC.fill = GridBagConstraints.HORIZONTAL;
+        add(searchField, searchFieldC);
+
+        valueList.setPrototypeCellValue("A reasonably long tag value"); //Fixed cell size, so long lists are laid out without measuring every value
+        valueList.setSelectionMode(ListSelectionModel.SINGLE_SELECTION);
+        valueList.setCellRenderer(new DefaultListCellRenderer(){
+            @Override
+            public Component getListCellRendererComponent(JList<?> list, Object value, int index, boolean isSelected, boolean cellHasFocus){
+                super.getListCellRendererComponent(list, value, index, false, cellHasFocus);
+                FilterModel.State state = filters.getState(tagList.getSelectedValue(), (String) value);
+                if(state != FilterModel.State.NONE){
+                    setOpaque(true);
+                    setBackground(state == FilterModel.State.INCLUDE ? Color.GREEN : Color.RED);
+                }
+                return this;
+            }
+        });
+        valueList.addMouseListener(new MouseAdapter(){
+            @Override
+            public void mouseClicked(MouseEvent e){
+                int index = valueList.locationToIndex(e.getPoint());
+                if(index >= 0 && valueList.getCellBounds(index, index).contains(e.getPoint()))
+                    cycle(index);
+            }
+        });
+        valueList.addKeyListener(new KeyAdapter(){
+            @Override
+            public void keyPressed(KeyEvent e){
+                if(e.getKeyCode() == KeyEvent.VK_SPACE && valueList.getSelectedIndex() >= 0)
+                    cycle(valueList.getSelectedIndex());
+            }
+        });
+        GridBagConstraints valueScrollC = Main.createGridBagConstraints(1, 2, 2, 1);
+        valueScrollC.weightx = 0.7;
+        valueScrollC.weighty = 1;
+        valueScrollC.fill = GridBagConstraints.BOTH;
+        add(new JScrollPane(valueList), valueScrollC);
+
+        //Summary of the filters
+        GridBagConstraints summaryLabelC = Main.createGridBagConstraints(0, 2, 3, 1);
+        summaryLabelC.anchor = GridBagConstraints.WEST;
+        summaryLabelC.weightx = 1;
+        add(summaryLabel, summaryLabelC);
+
+        JButton clearButton = new JButton("Clear filters");
+        clearButton.addActionListener(e -> {
+            filters.clear();
+            filtersChanged();
+        });
+        GridBagConstraints clearButtonC = Main.createGridBagConstraints(2, 1, 3, 1);
+        clearButtonC.anchor = GridBagConstraints.EAST;
+        add(clearButton, clearButtonC);
+
+        tagsChanged();
+    }
+
+    //Call when tags or values may have appeared or disappeared
+    void tagsChanged(){
+        filters.tagsChanged();
+        String selectedTag = tagList.getSelectedValue();
+        String[] tags = Db.getTags();
+        Arrays.sort(tags, String.CASE_INSENSITIVE_ORDER);
+
+        updatingAxis = true;
+        axisModel.removeAllElements();
+        axisModel.addElement(NO_AXIS);
+        tagModel.clear();
+        for(String i : tags){
+            axisModel.addElement(i);
+            tagModel.addElement(i);
+        }
+        axisModel.setSelectedItem(filters.getAxis().isEmpty() ? NO_AXIS : filters.getAxis());
+        updatingAxis = false;
+
+        if(selectedTag != null)
+            tagList.setSelectedValue(selectedTag, true);
+        if(tagList.getSelectedValue() == null && !tagModel.isEmpty())
+            tagList.setSelectedIndex(0);
+        showValues();
+        filtersChanged();
+    }
+
+    //Fills the criteria for findGraphables and returns the tag to graph by
+    String getCriteria(ArrayList<String> incVal, ArrayList<String> incTag, ArrayList<String> remVal, ArrayList<String> remTag){
+        filters.fillCriteria(incVal, incTag, remVal, remTag);
+        return filters.getAxis();
+    }
+
+    private void showValues(){
+        String tag = tagList.getSelectedValue();
+        valueModel.setValues(tag == null ? new String[0] : filters.values(tag, searchField.getText()));
+    }
+
+    private void cycle(int index){
+        filters.cycle(tagList.getSelectedValue(), valueModel.getElementAt(index));
+        valueList.repaint(valueList.getCellBounds(index, index));
+        filtersChanged();
+    }
+
+    private void filtersChanged(){
+        summaryLabel.setText(filters.describe());
+        tagList.repaint();
+        valueList.repaint();
+    }
+
+    //The values currently listed, swapped out whole whenever the tag or search changes
+    private static class ValueListModel extends AbstractListModel<String> {
+        private String[] values = new String[0];
+
+        void setValues(String[] values){
+            int oldSize = this.values.length;
+            this.values = values;
+            if(oldSize > 0)
+                fireIntervalRemoved(this, 0, oldSize - 1);
+            if(values.length > 0)
+                fireIntervalAdded(this, 0, values.length - 1);
+        }
+
+        @Override
+        public int getSize(){
+            return values.length;
+        }
+
+        @Override
+        public String getElementAt(int index){
+            return values[index];
+        }
+    }
+}
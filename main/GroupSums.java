@@ -0,0 +1,77 @@
+package main;
+
+import java.util.*;
+import java.util.function.IntFunction;
+
+//Totals of values grouped by a label index, with one more group for values without a label
+//Every total of entries, whether from the database, a snapshot or the value history, names its groups through here,
+//so the graph, the command line and the local server always agree on them
+class GroupSums {
+    static final String UNCLASSIFIED = "Not classified"; //Matches Entry.valueForTag
+
+    private final int unclassified; //Index of the group for values without a label
+    private final double[] sums;
+    private final BitSet seen = new BitSet();
+
+    //Labels are numbered from 0 up to but not including numLabels
+    GroupSums(int numLabels){
+        unclassified = numLabels;
+        sums = new double[numLabels + 1];
+    }
+
+    //Adds the value to the label's group, or to the unclassified group if the label is negative
+    void add(int label, double value){
+        if(label < 0)
+            label = unclassified;
+        sums[label] += value;
+        seen.set(label);
+    }
+
+    //Returns the total of every group something was added to, named through the labels
+    Map<String, Float> toMap(IntFunction<String> names){
+        Map<String, Float> retMap = new HashMap<>();
+        for(int label = seen.nextSetBit(0); label >= 0; label = seen.nextSetBit(label + 1)){
+            String name = label == unclassified ? UNCLASSIFIED : names.apply(label);
+            retMap.merge(name, (float) sums[label], Float::sum);
+        }
+        return retMap;
+    }
+
+    //Name of the group holding everything beyond the largest few
+    static String other(int rest){
+        return String.format("Other (%d more)", rest);
+    }
+
+    //Keeps the largest k groups in a heap whose smallest is pushed out as bigger ones arrive, so only k groups are ever sorted
+    //They are returned largest first, and the rest are added up into one last group
+    static Map<String, Float> largest(Map<String, Float> groups, int k){
+        int keep = Math.min(k, groups.size());
+        PriorityQueue<Map.Entry<String, Float>> heap = new PriorityQueue<>(Math.max(keep, 1), Map.Entry.comparingByValue());
+        double other = 0;
+        for(Map.Entry<String, Float> i : groups.entrySet()){
+            if(heap.size() < keep)
+                heap.add(i);
+            else if(keep > 0 && i.getValue() > heap.peek().getValue()){
+                other += heap.poll().getValue();
+                heap.add(i);
+            }
+            else
+                other += i.getValue();
+        }
+
+        //The heap gives the smallest first
+        List<Map.Entry<String, Float>> top = new ArrayList<>(heap.size());
+        while(!heap.isEmpty())
+            top.add(heap.poll());
+        Collections.reverse(top);
+
+        Map<String, Float> retMap = new LinkedHashMap<>(); //Order is required
+        for(Map.Entry<String, Float> i : top){
+            retMap.put(i.getKey(), i.getValue());
+        }
+        int rest = groups.size() - keep;
+        if(rest > 0)
+            retMap.put(other(rest), (float) other);
+        return retMap;
+    }
+}
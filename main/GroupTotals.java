@@ -0,0 +1,78 @@
+package main;
+
+import java.util.*;
+
+//Running totals of entry values grouped by ticker and by every tag value, kept separately for each currency
+//These follow every change to the entries so an unfiltered graph never has to look at the entries themselves
+class GroupTotals {
+    //Each group holds a total per currency, indexed by ordinal, followed by the number of entries in the group
+    private final int countSlot = Currency.values().length;
+    private final Map<Integer, Map<Integer, double[]>> byTag = new HashMap<>(); //Keyed by tag id, then value id
+    private final Map<String, double[]> byTicker = new HashMap<>();
+    private final double[] overall = new double[countSlot + 1];
+
+    void addEntry(Entry entry){
+        apply(entry, entry.getValue(), 1);
+    }
+
+    void removeEntry(Entry entry){
+        apply(entry, -entry.getValue(), -1);
+    }
+
+    //Call around a change in value, with the value before and after the change
+    void changeValue(Entry entry, float oldValue, float newValue){
+        apply(entry, newValue - (double) oldValue, 0);
+    }
+
+    private void apply(Entry entry, double delta, int count){
+        int currency = entry.getCurrency().ordinal();
+        overall[currency] += delta;
+        overall[countSlot] += count;
+        adjust(byTicker, entry.getTicker(), currency, delta, count);
+        for(int i = 0; i < entry.getNumTags(); i++){
+            int tag = entry.getTagId(i);
+            Map<Integer, double[]> thisTag = byTag.computeIfAbsent(tag, k -> new HashMap<>());
+            adjust(thisTag, entry.getValueId(i), currency, delta, count);
+            if(thisTag.isEmpty())
+                byTag.remove(tag);
+        }
+    }
+
+    private <K> void adjust(Map<K, double[]> groups, K group, int currency, double delta, int count){
+        double[] totals = groups.computeIfAbsent(group, k -> new double[countSlot + 1]);
+        totals[currency] += delta;
+        totals[countSlot] += count;
+        if(totals[countSlot] == 0) //Last entry in the group left, drop it rather than keep a rounding error around
+            groups.remove(group);
+    }
+
+    //Returns the total of each group along the axis converted with the given factors, indexed by currency ordinal
+    //An empty axis groups by ticker; entries without the tag are grouped as not classified
+    Map<String, Float> totals(String axis, float[] factors){
+        Map<String, Float> retMap = new HashMap<>();
+        if("".equals(axis)){
+            byTicker.forEach((k, v) -> retMap.put(k, convert(v, factors)));
+            return retMap;
+        }
+
+        double[] unclassified = overall.clone();
+        for(Map.Entry<Integer, double[]> i : byTag.getOrDefault(TagDictionary.NAMES.find(axis), Collections.emptyMap()).entrySet()){
+            double[] totals = i.getValue();
+            retMap.merge(TagDictionary.VALUES.get(i.getKey()), convert(totals, factors), Float::sum);
+            for(int j = 0; j <= countSlot; j++){
+                unclassified[j] -= totals[j];
+            }
+        }
+        if(unclassified[countSlot] > 0) //Only entries without the tag are left over
+            retMap.merge(GroupSums.UNCLASSIFIED, convert(unclassified, factors), Float::sum);
+        return retMap;
+    }
+
+    private float convert(double[] totals, float[] factors){
+        double sum = 0;
+        for(int i = 0; i < countSlot; i++){
+            sum += totals[i] * factors[i];
+        }
+        return (float) sum;
+    }
+}
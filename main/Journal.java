@@ -0,0 +1,250 @@
+package main;
+
+import java.util.*;
+import java.util.zip.CRC32;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.*;
+
+//Append only log of every change made since the last save, so a save only writes what changed
+//Record layout, big endian: body length int, CRC32 of the body int, then the body: type byte, sequence long, payload
+//Sequences keep counting across saves; the save file remembers the last one it includes so nothing is applied twice
+class Journal implements Closeable {
+    private static final byte CREATE = 1; //Time, id, entry, then serial in newer versions
+    private static final byte REMOVE = 2; //Time, id
+    private static final byte PRICE = 3; //Id, price
+    private static final byte SETTINGS = 4; //Everything in the save file's settings section
+
+    private static final int HEADER_SIZE = 8;
+    private static final int BODY_HEADER_SIZE = 9;
+
+    //Receives the records found when the journal is opened, in the order they were written
+    interface Replayer {
+        void created(LocalDateTime time, int id, int serial, Entry entry); //Serial is -1 in records from older versions
+        void removed(LocalDateTime time, int id);
+        void priceSet(int id, float price);
+        void settingsChanged(DbFile.Contents settings);
+    }
+
+    private final FileChannel channel;
+    private long sequence;
+    private long forcedSequence; //Every record up to this one is on disk
+
+    private Journal(FileChannel channel, long sequence){
+        this.channel = channel;
+        this.sequence = sequence;
+        this.forcedSequence = sequence;
+    }
+
+    //Opens the journal for appending after replaying every record newer than the save file
+    //Reading stops at the first damaged record; it and anything after it were never completely written, so they are cut off
+    static Journal open(Path path, long savedSequence, Replayer replayer) throws IOException {
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try{
+            ByteBuffer buf = ByteBuffer.allocate((int) channel.size());
+            while(buf.hasRemaining() && channel.read(buf) != -1);
+            buf.flip();
+
+            long sequence = savedSequence;
+            int intact = 0;
+            CRC32 crc = new CRC32();
+            while(buf.remaining() >= HEADER_SIZE){
+                int length = buf.getInt();
+                int checksum = buf.getInt();
+                if(length < BODY_HEADER_SIZE || length > buf.remaining())
+                    break;
+                crc.reset();
+                crc.update(buf.array(), buf.position(), length);
+                if((int) crc.getValue() != checksum)
+                    break;
+
+                ByteBuffer body = buf.slice();
+                body.limit(length);
+                buf.position(buf.position() + length);
+                byte type = body.get();
+                long recordSequence = body.getLong();
+                if(recordSequence > sequence){ //Older records are already in the save file
+                    replay(type, body, replayer);
+                    sequence = recordSequence;
+                }
+                intact = buf.position();
+            }
+
+            channel.truncate(intact);
+            channel.position(intact);
+            return new Journal(channel, sequence);
+        } catch(IOException | RuntimeException e){
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static void replay(byte type, ByteBuffer body, Replayer replayer){
+        switch(type){
+            case CREATE:
+                LocalDateTime time = DbFile.getTime(body);
+                int id = body.getInt();
+                Entry entry = getEntry(body);
+                replayer.created(time, id, body.remaining() >= 4 ? body.getInt() : -1, entry);
+                break;
+            case REMOVE:
+                replayer.removed(DbFile.getTime(body), body.getInt());
+                break;
+            case PRICE:
+                replayer.priceSet(body.getInt(), body.getFloat());
+                break;
+            case SETTINGS:
+                replayer.settingsChanged(getSettings(body));
+                break;
+            default:
+                //Written by a newer version, nothing this version can do with it
+        }
+    }
+
+    //Sequence of the last record written, which a save including every record so far should remember
+    synchronized long getSequence(){
+        return sequence;
+    }
+
+    synchronized long size() throws IOException {
+        return channel.size();
+    }
+
+    //Drops every record, call once they are all included in the save file
+    synchronized void clear() throws IOException {
+        channel.truncate(0);
+        channel.position(0);
+        channel.force(true);
+        forcedSequence = sequence;
+    }
+
+    //Puts every record appended so far on disk; appends carry on meanwhile, as the lock is not held while forcing
+    //Many records are forced by one call, so a batch of changes costs one disk flush rather than one each
+    void force() throws IOException {
+        long upTo;
+        synchronized(this){
+            if(forcedSequence == sequence)
+                return;
+            upTo = sequence;
+        }
+        channel.force(false);
+        synchronized(this){
+            forcedSequence = Math.max(forcedSequence, upTo);
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    void appendCreate(LocalDateTime time, int id, int serial, Entry entry) throws IOException {
+        Record record = new Record(CREATE);
+        DbFile.putTime(record.out, time);
+        record.out.writeInt(id);
+        putEntry(record.out, entry);
+        record.out.writeInt(serial);
+        append(record);
+    }
+
+    void appendRemove(LocalDateTime time, int id) throws IOException {
+        Record record = new Record(REMOVE);
+        DbFile.putTime(record.out, time);
+        record.out.writeInt(id);
+        append(record);
+    }
+
+    void appendPrice(int id, float price) throws IOException {
+        Record record = new Record(PRICE);
+        record.out.writeInt(id);
+        record.out.writeFloat(price);
+        append(record);
+    }
+
+    //Only the settings are written, any entries in the contents are ignored
+    void appendSettings(DbFile.Contents settings) throws IOException {
+        Record record = new Record(SETTINGS);
+        DbFile.putString(record.out, settings.apiKey);
+        record.out.writeByte(settings.graphCurrency.ordinal());
+        record.out.writeByte(settings.autoRate ? 1 : 0);
+        record.out.writeByte(settings.baseRates.length);
+        for(float i : settings.baseRates){
+            record.out.writeFloat(i);
+        }
+        DbFile.putTime(record.out, settings.priceTime);
+        DbFile.putTime(record.out, settings.dbTime);
+        append(record);
+    }
+
+    //The record is in the file once this returns, and survives the program exiting; it is only on disk after force
+    private synchronized void append(Record record) throws IOException {
+        byte[] bytes = record.bytes.toByteArray();
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        buf.putLong(HEADER_SIZE + 1, ++sequence);
+        CRC32 crc = new CRC32();
+        crc.update(bytes, HEADER_SIZE, bytes.length - HEADER_SIZE);
+        buf.putInt(0, bytes.length - HEADER_SIZE);
+        buf.putInt(4, (int) crc.getValue());
+        while(buf.hasRemaining()){
+            channel.write(buf);
+        }
+    }
+
+    //A record being built, with room left at the front for the header, type and sequence
+    private static class Record {
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        final DataOutputStream out = new DataOutputStream(bytes);
+
+        Record(byte type) throws IOException {
+            out.writeLong(0); //Length and checksum
+            out.writeByte(type);
+            out.writeLong(0); //Sequence, assigned when appended
+        }
+    }
+
+    private static void putEntry(DataOutputStream out, Entry entry) throws IOException {
+        DbFile.putString(out, entry.getTicker());
+        out.writeFloat(entry.getQuantityF());
+        out.writeBoolean(entry.getUpdatePrice());
+        out.writeFloat(entry.getPriceF());
+        out.writeByte(entry.getCurrency().ordinal());
+        out.writeShort(entry.getNumTags());
+        for(Map.Entry<String, String> i : entry.getIterable()){
+            DbFile.putString(out, i.getKey());
+            DbFile.putString(out, i.getValue());
+        }
+    }
+
+    private static Entry getEntry(ByteBuffer buf){
+        String ticker = DbFile.getString(buf);
+        float quantity = buf.getFloat();
+        boolean updatePrice = buf.get() != 0;
+        float price = buf.getFloat();
+        Entry entry = new Entry(ticker, quantity, updatePrice, price, Currency.values()[buf.get()]);
+        int numTags = buf.getShort();
+        for(int i = 0; i < numTags; i++){
+            entry.addValue(DbFile.getString(buf), DbFile.getString(buf));
+        }
+        return entry;
+    }
+
+    private static DbFile.Contents getSettings(ByteBuffer buf){
+        DbFile.Contents settings = new DbFile.Contents();
+        settings.apiKey = DbFile.getString(buf);
+        settings.graphCurrency = Currency.values()[buf.get()];
+        settings.autoRate = buf.get() != 0;
+        settings.baseRates = new float[Currency.values().length];
+        Arrays.fill(settings.baseRates, 1f);
+        int numRates = buf.get();
+        for(int i = 0; i < numRates; i++){
+            float rate = buf.getFloat();
+            if(i < settings.baseRates.length)
+                settings.baseRates[i] = rate;
+        }
+        settings.priceTime = DbFile.getTime(buf);
+        settings.dbTime = DbFile.getTime(buf);
+        return settings;
+    }
+}
@@ -0,0 +1,47 @@
+package main;
+
+import java.math.*;
+
+//Writes the pieces of JSON text the command line and the local server produce
+class Json {
+    //Private constructor; this class cannot be instantiated and is purely static
+    private Json() {}
+
+    //Appends the string in quotes, escaping what JSON requires
+    static StringBuilder string(StringBuilder out, String value){
+        out.append('"');
+        for(int i = 0; i < value.length(); i++){
+            char c = value.charAt(i);
+            switch(c){
+                case '"':
+                    out.append("\\\"");
+                    break;
+                case '\\':
+                    out.append("\\\\");
+                    break;
+                case '\n':
+                    out.append("\\n");
+                    break;
+                case '\r':
+                    out.append("\\r");
+                    break;
+                case '\t':
+                    out.append("\\t");
+                    break;
+                default:
+                    if(c < 0x20)
+                        out.append(String.format("\\u%04x", (int) c));
+                    else
+                        out.append(c);
+            }
+        }
+        return out.append('"');
+    }
+
+    //Appends the number rounded to the given decimal places without an exponent, or null if it isn't a number
+    static StringBuilder decimal(StringBuilder out, double value, int places){
+        if(Double.isNaN(value) || Double.isInfinite(value))
+            return out.append("null");
+        return out.append(BigDecimal.valueOf(value).setScale(places, RoundingMode.HALF_UP).toPlainString());
+    }
+}
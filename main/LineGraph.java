@@ -0,0 +1,99 @@
+package main;
+
+import java.util.*;
+import java.util.List;
+import java.awt.*;
+import java.time.*;
+import java.time.format.*;
+import javax.swing.JComponent;
+
+//This a resizable component that draws one line per series over time, in the same colours a pie would use
+//Points are placed by their time, so a gap between refreshes shows as a longer segment
+class LineGraph extends JComponent{
+    private static final int LEFT = 90;
+    private static final int RIGHT = 15;
+    private static final int TOP = 10;
+    private static final int BOTTOM = 25;
+    private static final int GRID_LINES = 4;
+
+    private final long[] seconds;
+    private final List<float[]> lines;
+    private final ArrayList<Color> colourList;
+    private final String[] dateLabels;
+    private float max = 0f;
+
+    //Takes in the times of the points and each series' values at those times, already converted for display
+    LineGraph(Instant[] times, Map<String, float[]> series){
+        seconds = new long[times.length];
+        for(int i = 0; i < times.length; i++){
+            seconds[i] = times[i].getEpochSecond();
+        }
+        lines = new ArrayList<>(series.values());
+        colourList = Pie.makeColours(lines.size());
+        for(float[] i : lines){
+            for(float j : i){
+                max = Math.max(max, j);
+            }
+        }
+        if(max <= 0f)
+            max = 1f;
+
+        DateTimeFormatter dispDateFormat = DateTimeFormatter.ofLocalizedDate(FormatStyle.MEDIUM).withZone(ZoneId.systemDefault());
+        dateLabels = times.length == 0 ? new String[0] : new String[]{dispDateFormat.format(times[0]), dispDateFormat.format(times[times.length - 1])};
+    }
+
+    //Used to match the legend colours with the line colours
+    public ArrayList<Color> getColours(){
+        return colourList;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g){
+        int width = getWidth() - LEFT - RIGHT;
+        int height = getHeight() - TOP - BOTTOM;
+        if(width <= 0 || height <= 0 || seconds.length == 0)
+            return;
+
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+        FontMetrics metrics = g2.getFontMetrics();
+
+        //Value grid with labels down the left
+        for(int i = 0; i <= GRID_LINES; i++){
+            int y = TOP + height - height * i / GRID_LINES;
+            g2.setColor(i == 0 ? Color.BLACK : Color.LIGHT_GRAY);
+            g2.drawLine(LEFT, y, LEFT + width, y);
+            String label = String.format("$%,.0f", max * i / GRID_LINES);
+            g2.setColor(Color.BLACK);
+            g2.drawString(label, LEFT - 5 - metrics.stringWidth(label), y + metrics.getAscent() / 2);
+        }
+        g2.drawLine(LEFT, TOP, LEFT, TOP + height);
+
+        //First and last dates along the bottom
+        int labelY = TOP + height + metrics.getAscent() + 5;
+        g2.drawString(dateLabels[0], LEFT, labelY);
+        if(seconds.length > 1)
+            g2.drawString(dateLabels[1], LEFT + width - metrics.stringWidth(dateLabels[1]), labelY);
+
+        //Place the points by time
+        long span = Math.max(seconds[seconds.length - 1] - seconds[0], 1);
+        int[] xs = new int[seconds.length];
+        for(int i = 0; i < seconds.length; i++){
+            xs[i] = seconds.length == 1 ? LEFT + width / 2 : LEFT + (int) ((seconds[i] - seconds[0]) * width / span);
+        }
+        int[] ys = new int[seconds.length];
+        g2.setStroke(new BasicStroke(2));
+        for(int i = 0; i < lines.size(); i++){
+            float[] values = lines.get(i);
+            for(int j = 0; j < values.length; j++){
+                ys[j] = TOP + height - Math.round(values[j] / max * height);
+            }
+            g2.setColor(colourList.get(i));
+            if(values.length == 1)
+                g2.fillOval(xs[0] - 3, ys[0] - 3, 6, 6);
+            else
+                g2.drawPolyline(xs, ys, values.length);
+        }
+        g2.dispose();
+    }
+}
@@ -1,10 +1,15 @@
 package main;
 
 import java.util.*;
+import java.util.List;
 import javax.swing.*;
+import javax.swing.table.*;
 import java.awt.*;
 import java.awt.event.*;
 import java.beans.*;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZonedDateTime;
 import javax.imageio.ImageIO;
 
 public class Main {
@@ -14,6 +19,11 @@ public class Main {
     private JFrame frame = new JFrame("Stock Visualizer");
     private JPanel viewPane = new JPanel(new GridBagLayout());
     private JPanel graphPane = new JPanel(new GridBagLayout());
+    private EntryTableModel entryModel = new EntryTableModel();
+    private FilterPanel filterPanel;
+
+    //Largest groups shown in a graph, the rest are shown together as one
+    private static final int graphGroups = 20;
 
     public static void main(String[] args) {
         new Main();
@@ -21,8 +31,6 @@ public class Main {
 
     //Initializes the UI
     public Main(){
-        Db.readDb();
-
         /*try{//Windows does not respect setting the button colour
             UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
         } catch(Exception unused){}//Too bad, default look it is*/
@@ -31,27 +39,98 @@ public class Main {
             frame.setIconImage(ImageIO.read(this.getClass().getResource("icon.png")));
         } catch(Exception unused){}//Too bad, no icon
 
-        //Save before exit
+        //Save before exit, the window is hidden first so a slow disk doesn't look like a hang
         frame.setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
         frame.addWindowListener(new WindowAdapter(){
             public void windowClosing(WindowEvent e){
-                Db.writeDb();
+                frame.setVisible(false);
+                if(Db.getLoadProblem() == null && !Db.writeDb()) //The user chose not to save over entries that failed to load
+                    JOptionPane.showMessageDialog(null, "Could not save: " + Db.getSaveError() + "\nChanges since the last save are replayed from prevInfo.journal next time, if it could be written.", "Save failed", JOptionPane.ERROR_MESSAGE);
             };
         });
 
-        //Set up UI
-        drawViewPane();
-        drawGraphPane();
+        //Show the window straight away, the tabs replace the loading indicator once the database is read
+        JPanel loadingPane = new JPanel(new GridBagLayout());
+        JLabel loadingLabel = new JLabel("Loading saved entries...");
+        loadingPane.add(loadingLabel, createGridBagConstraints(0, 1, 0, 1));
+        JProgressBar loadingBar = new JProgressBar();
+        loadingBar.setIndeterminate(true);
+        loadingPane.add(loadingBar, createGridBagConstraints(0, 1, 1, 1));
+        loadingPane.setBorder(BorderFactory.createEmptyBorder(40, 80, 40, 80));
+        frame.add(loadingPane);
+        frame.pack();
+        frame.setVisible(true);
 
-        JTabbedPane mainPane = new JTabbedPane();
-        mainPane.addTab("Add items", createAddPane());
-        mainPane.addTab("Edit items", viewPane);
-        mainPane.addTab("Graph items", graphPane);
-        mainPane.addTab("Config", createCfgPane());
+        new SwingWorker<Void, Void>(){
+            @Override
+            public Void doInBackground(){
+                Db.readDb();
+                return null;
+            }
 
-        frame.add(mainPane);
-        frame.pack();//Automatically sets the size, probably not optimal...
-        frame.setVisible(true);
+            @Override
+            public void done(){
+                //Set up UI
+                filterPanel = new FilterPanel();
+                drawViewPane();
+                drawGraphPane();
+
+                JTabbedPane mainPane = new JTabbedPane();
+                mainPane.addTab("Add items", createAddPane());
+                mainPane.addTab("Edit items", viewPane);
+                mainPane.addTab("Graph items", graphPane);
+                mainPane.addTab("Config", createCfgPane());
+
+                frame.remove(loadingPane);
+                frame.add(mainPane);
+                frame.pack();//Automatically sets the size, probably not optimal...
+
+                //From now on the panes follow the changes rather than being rebuilt
+                Db.addListener(new EdtDispatcher(Main.this::dbChanged));
+                entryModel.refresh();
+
+                //Nothing is saved until the user knows the saved entries are missing and chooses to carry on without them
+                String problem = Db.getLoadProblem();
+                if(problem != null){
+                    String[] choices = {"Start again", "Continue without saving"};
+                    int choice = JOptionPane.showOptionDialog(frame, problem + "\nNothing has been saved over it. Start again with no entries and save from now on?", "Saved entries could not be loaded", JOptionPane.DEFAULT_OPTION, JOptionPane.ERROR_MESSAGE, null, choices, choices[1]);
+                    if(choice == 0 && !Db.acknowledgeLoadProblem()){
+                        String reason = Db.getLoadProblem() != null ? "The damaged file could not be moved aside, so nothing will be saved over it." : "Could not save: " + Db.getSaveError();
+                        JOptionPane.showMessageDialog(frame, reason, "Save failed", JOptionPane.ERROR_MESSAGE);
+                    }
+                }
+
+                int skipped = Db.getSkippedOnLoad();
+                if(skipped > 0)
+                    JOptionPane.showMessageDialog(frame, skipped + (skipped == 1 ? " saved entry" : " saved entries") + " could not be read and were left out.", "Some entries were skipped", JOptionPane.WARNING_MESSAGE);
+
+                //Other programs can query the portfolio over HTTP if a port is given
+                int apiPort = Integer.getInteger("stocks.apiPort", 0);
+                if(apiPort > 0){
+                    try{
+                        ApiServer.start(apiPort);
+                    } catch(IOException ex){
+                        JOptionPane.showMessageDialog(frame, "Could not serve on port " + apiPort + ": " + ex.getMessage(), "Local server not started", JOptionPane.WARNING_MESSAGE);
+                    }
+                }
+            }
+        }.execute();
+    }
+
+    //Called on the EDT with the changes made since the last call
+    private void dbChanged(List<DbEvent> events){
+        entryModel.dbChanged(events);
+
+        boolean tagsChanged = false;
+        boolean datesChanged = false;
+        for(DbEvent i : events){
+            tagsChanged |= i.getType() == DbEvent.Type.TAGS_CHANGED;
+            datesChanged |= i.getType() != DbEvent.Type.PRICE_CHANGED;
+        }
+        if(tagsChanged)
+            filterPanel.tagsChanged();
+        if(datesChanged)
+            dateLabel.setText(Db.datesToLabel());
     }
 
     //Convenience method for creating the constraints
@@ -78,15 +157,7 @@ public class Main {
         saveButton.addActionListener(e -> {
             Entry created = createPane.tryConstruct(false);
             if (created != null){
-                Db.createEntry(created);
-
-                //Update UI
-                dateLabel.setText(Db.datesToLabel());
-                frame.getContentPane().validate();
-                frame.getContentPane().repaint();
-                //Both other panes need to be redrawn
-                drawGraphPane();
-                drawViewPane();
+                Db.createEntry(created); //The other panes follow through dbChanged
             }
         });
 
@@ -104,13 +175,15 @@ public class Main {
             PriceWorker priceWorker = new PriceWorker();
             priceWorker.addPropertyChangeListener(new PropertyChangeListener(){
                 public void propertyChange(PropertyChangeEvent evt){
-                    if(evt.getPropertyName() != "progress"){
+                    if("completed".equals(evt.getPropertyName())){
+                        //Tickers finish in any order so report the count rather than the current ticker
+                        int progress = (Integer) evt.getNewValue();
+                        progressBar.setValue(progress);
+                        progressBar.setString(progress + " of " + Db.getNumEntries());
                         return;
                     }
-                    int progress = (Integer) evt.getNewValue();
-                    progressBar.setValue(progress);
-                    if(progress < Db.getNumEntries()){
-                        progressBar.setString(Db.getEntry(progress).getTicker());
+                    if(!"state".equals(evt.getPropertyName()) || evt.getNewValue() != SwingWorker.StateValue.DONE){
+                        return;
                     }
                     else{
                         progressBar.setString("Done");
@@ -130,8 +203,6 @@ public class Main {
                         }
 
                         Db.updatePriceTime();
-                        dateLabel.setText(Db.datesToLabel());
-                        drawViewPane();
                         progressDialog.dispose();
                     }
                 };
@@ -156,47 +227,23 @@ public class Main {
 
     //Draws the pane used for graphing in addition to the one that holds the graph
     private void drawGraphPane(){
-        graphPane.removeAll();
-
-        JPanel graphPaneTag = new JPanel(new GridLayout(0, Db.maxValsForTag() + 1));
-
-        JScrollPane graphScrollPane = new JScrollPane(graphPaneTag);
-        GridBagConstraints graphScrollPaneC = createGridBagConstraints(0, 2, 0, 1);
-        graphScrollPaneC.weightx = 0.5;
-        graphScrollPaneC.weighty = 0.5;
-        graphScrollPaneC.fill = GridBagConstraints.BOTH;
-        graphPane.add(graphScrollPane, graphScrollPaneC);
+        GridBagConstraints filterPanelC = createGridBagConstraints(0, 2, 0, 1);
+        filterPanelC.weightx = 0.5;
+        filterPanelC.weighty = 0.5;
+        filterPanelC.fill = GridBagConstraints.BOTH;
+        graphPane.add(filterPanel, filterPanelC);
 
         JButton graphButton = new JButton("Graph");
 
         //Launch the graph
         graphButton.addActionListener(e -> {
-            int length = Db.maxValsForTag()+1;
             ArrayList<String> includeValues = new ArrayList<>();
             ArrayList<String> includeValueTags = new ArrayList<>();
             ArrayList<String> removeValues = new ArrayList<>();
             ArrayList<String> removeValueTags = new ArrayList<>();
-            String axisTag = "";
-
-            //Look at the buttons to see what has been selected
-            for(int i = 0; i < Db.getTags().length * length; i++){
-                JButton buttonToExamine = (JButton) graphPaneTag.getComponent(i);
-                Color buttonColour = buttonToExamine.getBackground();
-                if(i % length == 0 && buttonColour == Color.GREEN){
-                    axisTag = buttonToExamine.getText();
-                }
-                else if(buttonColour == Color.GREEN){//Includes
-                    includeValues.add(buttonToExamine.getText());
-                    includeValueTags.add(((JButton) graphPaneTag.getComponent(i - i % length)).getText());
-                }
-                else if(buttonColour == Color.RED){//Excludes
-                    removeValues.add(buttonToExamine.getText());
-                    removeValueTags.add(((JButton) graphPaneTag.getComponent(i - i % length)).getText());
-                }
-                else{
-                }
-            }
-            Map<String, Float> graphable = Db.findGraphables(axisTag, includeValues, includeValueTags, removeValues, removeValueTags);
+            String axisTag = filterPanel.getCriteria(includeValues, includeValueTags, removeValues, removeValueTags);
+
+            Map<String, Float> graphable = Db.findGraphables(axisTag, includeValues, includeValueTags, removeValues, removeValueTags, graphGroups);
             if(graphable == null){
                 JOptionPane.showMessageDialog(frame, "No entries matched the criteria.", "Error", JOptionPane.ERROR_MESSAGE);
                 return;
@@ -211,7 +258,7 @@ public class Main {
 
                 JPanel piePane = new JPanel(new GridBagLayout());
 
-                Pie myPie = new Pie(graphable);
+                Pie myPie = new Pie(graphable, Db.hasOtherGroup(graphable, graphGroups));
                 GridBagConstraints myPieC = createGridBagConstraints(0, 1, 1, 1);
                 myPieC.fill = GridBagConstraints.BOTH;
                 myPieC.weightx = 0.5;
@@ -254,143 +301,152 @@ public class Main {
             }
         });
 
+        JButton historyButton = new JButton("History");
+        historyButton.setToolTipText("Graphs the totals recorded after each price update by the chosen tag; filters are not applied");
+        historyButton.addActionListener(e -> {
+            SnapshotLog snapshots = Db.getSnapshots();
+            if(snapshots == null || snapshots.size() == 0){
+                JOptionPane.showMessageDialog(frame, "No values have been recorded yet. They are recorded each time all prices are updated.", "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            showHistory(snapshots, filterPanel.getCriteria(new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>()));
+        });
+
+        //Panel for the graph buttons
+        JPanel graphButtonPanel = new JPanel(new GridLayout(0, 2));
+        graphButtonPanel.add(historyButton);
+        graphButtonPanel.add(graphButton);
+
         GridBagConstraints graphButtonC = createGridBagConstraints(1, 1, 1, 1);
         graphButtonC.anchor = GridBagConstraints.SOUTHEAST;
-        graphPane.add(graphButton, graphButtonC);
+        graphPane.add(graphButtonPanel, graphButtonC);
 
-        JLabel instructionsLabel = new JLabel("Use the left column to select the tag that is displayed on the graph. Use the other columns to filter out entries.");
+        JLabel instructionsLabel = new JLabel("Choose the tag the graph is divided by. Click a value to graph only entries with it, again to leave them out, and again to clear it.");
         GridBagConstraints instructionsLabelC = createGridBagConstraints(0, 1, 1, 1);
         instructionsLabelC.anchor = GridBagConstraints.SOUTHWEST;
         instructionsLabelC.weightx = 0.5;
         graphPane.add(instructionsLabel, instructionsLabelC);
-
-        //Rows of tags, colomuns of values
-        int widestRow = Db.maxValsForTag();
-        String[] tags = Db.getTags();
-        for(int i = 0; i < tags.length; i++){
-            JButton tagNameButton = new JButton(tags[i]);
-            tagNameButton.addActionListener(e -> {
-                Color currentColor = tagNameButton.getBackground();
-                //Toggle off all other buttons
-                for(int j = 0; j < tags.length; j++){
-                    Component buttonToExamine = graphPaneTag.getComponent(j*(widestRow+1));
-                    buttonToExamine.setBackground(UIManager.getColor("Button.background"));
-                }
-                //Set my background
-                if(currentColor != Color.GREEN){
-                    tagNameButton.setBackground(Color.GREEN);
-                }
-            });
-            graphPaneTag.add(tagNameButton);
-
-            String[] values = Db.getValuesForTag(tags[i]);
-            int valuesInThisRow = values.length;
-            for(int j = 0; j < widestRow; j++){
-                if(j < valuesInThisRow){
-                    JButton valueButton = new JButton(values[j]);
-                    valueButton.addActionListener(e -> {
-                        Color currentColor = valueButton.getBackground();
-                        if(currentColor == Color.GREEN){
-                            valueButton.setBackground(Color.RED);
-                        }
-                        else if(currentColor == Color.RED){
-                            valueButton.setBackground(UIManager.getColor("Button.background"));
-                        }
-                        else{
-                            valueButton.setBackground(Color.GREEN);
-                        }
-                    });
-                    graphPaneTag.add(valueButton);
-                }
-                else{
-                    //invisible, reserve space
-                    JButton invisibleItem = new JButton("");
-                    invisibleItem.setVisible(false);
-                    graphPaneTag.add(invisibleItem);
-                }
-            }
-        }
     };
 
-    //Lists the current entries and provides buttons to remove or modify them
-    private void drawViewPane(){
-        viewPane.removeAll();
-        JPanel viewTagPane = new JPanel(new GridBagLayout());
-        int numRows = Db.getNumEntries();
-        for(int i = 0; i < numRows; i++){
-            Entry entryToModify = Db.getEntry(i);
-
-            JButton deleteButton = new JButton("Remove");
-            deleteButton.addActionListener(e -> {
-                Db.removeEntry(entryToModify);
-                dateLabel.setText(Db.datesToLabel());
-                drawGraphPane();
-                drawViewPane();
+    //Opens a line graph of the recorded totals of each value of the tag, by ticker if the tag is empty
+    private void showHistory(SnapshotLog snapshots, String axisTag){
+        JFrame historyFrame = new JFrame("History graph");
+        try{
+            historyFrame.setIconImage(ImageIO.read(this.getClass().getResource("icon.png")));
+        } catch(Exception unused){}//Too bad, no icon
+        historyFrame.setPreferredSize(new Dimension(800, 600));
+
+        JPanel historyPane = new JPanel(new GridBagLayout());
+
+        String[] ranges = {"Last month", "Last 3 months", "Last year", "All"};
+        JComboBox<String> rangeBox = new JComboBox<>(ranges);
+        rangeBox.setSelectedIndex(2);
+        GridBagConstraints rangeBoxC = createGridBagConstraints(0, 1, 0, 1);
+        rangeBoxC.anchor = GridBagConstraints.EAST;
+        historyPane.add(rangeBox, rangeBoxC);
+
+        JLabel graphTitle = new JLabel();
+        GridBagConstraints graphTitleC = createGridBagConstraints(0, 1, 0, 1);
+        historyPane.add(graphTitle, graphTitleC);
+
+        JPanel graphHolder = new JPanel(new BorderLayout());
+        GridBagConstraints graphHolderC = createGridBagConstraints(0, 1, 1, 1);
+        graphHolderC.fill = GridBagConstraints.BOTH;
+        graphHolderC.weightx = 0.5;
+        graphHolderC.weighty = 0.9;
+        historyPane.add(graphHolder, graphHolderC);
+
+        JPanel legendPanel = new JPanel();
+        GridBagConstraints legendPanelC = createGridBagConstraints(0, 1, 2, 1);
+        legendPanelC.fill = GridBagConstraints.BOTH;
+        legendPanelC.weightx = 0.5;
+        legendPanelC.weighty = 0.1;
+        historyPane.add(legendPanel, legendPanelC);
+
+        //Rebuilt whenever the range changes
+        Runnable drawGraph = () -> {
+            ZonedDateTime now = ZonedDateTime.now();
+            Instant to = now.toInstant();
+            Instant[] froms = {now.minusMonths(1).toInstant(), now.minusMonths(3).toInstant(), now.minusYears(1).toInstant(), Instant.MIN};
+            SnapshotLog.History history;
+            try{
+                history = snapshots.groups(axisTag, froms[rangeBox.getSelectedIndex()], to).largest(graphGroups, Db.baseToGraphFactor());
+            } catch(IOException ex){
+                JOptionPane.showMessageDialog(historyFrame, "The recorded values could not be read: " + ex.getMessage(), "Error", JOptionPane.ERROR_MESSAGE);
+                return;
+            }
+            graphTitle.setText(String.format("Category: %s - %d updates - %s", "".equals(axisTag) ? "None" : axisTag, history.times.length, Db.getGraphCurrency().toString()));
+
+            LineGraph graph = new LineGraph(history.times, history.series);
+            graphHolder.removeAll();
+            graphHolder.add(graph);
+
+            legendPanel.removeAll();
+            int[] j = {0};
+            ArrayList<Color> colourList = graph.getColours();
+            history.series.forEach((k, v) -> {
+                JLabel legendLabel = new JLabel(v.length == 0 ? k + " " : String.format("%s $%,.2f ", k, v[v.length - 1]));
+                legendLabel.setForeground(colourList.get(j[0]));
+                legendPanel.add(legendLabel);
+                j[0]++;
             });
+            historyPane.revalidate();
+            historyPane.repaint();
+        };
+        rangeBox.addActionListener(lamb -> drawGraph.run());
+        drawGraph.run();
+
+        JButton closeButton = new JButton("Close");
+        closeButton.addActionListener(lamb -> {
+                historyFrame.dispose();
+        });
+        GridBagConstraints closeButtonC = createGridBagConstraints(0, 1, 3, 1);
+        closeButtonC.anchor = GridBagConstraints.SOUTHEAST;
+        historyPane.add(closeButton, closeButtonC);
 
-            GridBagConstraints deleteButtonC = createGridBagConstraints(0, 1, i, 1);
-            deleteButtonC.fill = GridBagConstraints.HORIZONTAL;
-            deleteButtonC.weightx = 0.1;
-            viewTagPane.add(deleteButton, deleteButtonC);
+        historyFrame.add(historyPane);
+        historyFrame.pack();
+        historyFrame.setVisible(true);
+    }
 
-            JButton modifyButton = new JButton("Modify");
-            modifyButton.addActionListener(new ActionListener(){
-                @Override
-                public void actionPerformed(ActionEvent e){
-                    JFrame editFrame = new JFrame("Edit entry");
-                    try{
-                        editFrame.setIconImage(ImageIO.read(this.getClass().getResource("icon.png")));
-                    } catch(Exception unused){}//Too bad, no icon
-
-                    EditPanel localPane = new EditPanel(frame, entryToModify);
-
-                    JButton saveButton = new JButton("Modify");
-                    saveButton.addActionListener(new ActionListener(){
-                        @Override
-                        public void actionPerformed(ActionEvent e){
-                            Entry created = localPane.tryConstruct(false);
-                            if (created != null){
-                                Db.removeEntry(entryToModify);
-                                Db.createEntry(created);
-                                editFrame.dispose();
-                                dateLabel.setText(Db.datesToLabel());
-                                drawViewPane();
-                                drawGraphPane();
-                            }
-                        };
-                    });
-                    GridBagConstraints saveButtonC = createGridBagConstraints(1, 1, 8, 1);
-                    saveButtonC.anchor = GridBagConstraints.SOUTHEAST;
-                    localPane.add(saveButton, saveButtonC);
-
-                    JButton cancelButton = new JButton("Cancel");
-                    cancelButton.addActionListener(lamb -> {
-                        editFrame.dispose();
-                    });
-                    GridBagConstraints cancelButtonC = createGridBagConstraints(0, 1, 8, 1);
-                    cancelButtonC.weightx = 1;
-                    cancelButtonC.anchor = GridBagConstraints.SOUTHEAST;
-                    localPane.add(cancelButton, cancelButtonC);
-
-                    editFrame.add(localPane);
-                    editFrame.pack();
-                    editFrame.setVisible(true);
-                };
-            });
-            GridBagConstraints modifyButtonC = createGridBagConstraints(1, 1, i, 1);
-            modifyButtonC.fill = GridBagConstraints.HORIZONTAL;
-            modifyButtonC.weightx = 0.1;
-            viewTagPane.add(modifyButton, modifyButtonC);
-
-            JLabel descriptionLabel = new JLabel(Db.getEntry(i).displayLine());
-            GridBagConstraints descriptionLabelC = createGridBagConstraints(2, 1, i, 1);
-            descriptionLabelC.weightx = 0.9;
-            descriptionLabelC.fill = GridBagConstraints.HORIZONTAL;
-            descriptionLabelC.insets = new Insets(5, 5, 5, 5);
-            viewTagPane.add(descriptionLabel, descriptionLabelC);
+    //Lists the current entries and provides buttons to remove or modify them
+    private void drawViewPane(){
+        JTable table = new JTable(entryModel);
+        table.setAutoCreateRowSorter(true);
+        table.setFillsViewportHeight(true);
+        table.setRowSelectionAllowed(false);
+        table.getTableHeader().setReorderingAllowed(false);
+
+        //The buttons are only painted; a click on their cell performs the action
+        TableRowSorter<?> sorter = (TableRowSorter<?>) table.getRowSorter();
+        for(int i : new int[]{EntryTableModel.REMOVE, EntryTableModel.MODIFY}){
+            sorter.setSortable(i, false);
+            TableColumn column = table.getColumnModel().getColumn(i);
+            column.setCellRenderer(new ButtonRenderer());
+            column.setPreferredWidth(new JButton("Remove").getPreferredSize().width);
+            column.setMaxWidth(column.getPreferredWidth());
         }
+        table.getColumnModel().getColumn(EntryTableModel.TAGS).setPreferredWidth(400);
+        table.setRowHeight(Math.max(table.getRowHeight(), new JButton("Remove").getPreferredSize().height));
+        table.addMouseListener(new MouseAdapter(){
+            @Override
+            public void mouseClicked(MouseEvent e){
+                int viewRow = table.rowAtPoint(e.getPoint());
+                int viewColumn = table.columnAtPoint(e.getPoint());
+                if(viewRow < 0 || viewColumn < 0)
+                    return;
+                int column = table.convertColumnIndexToModel(viewColumn);
+                Entry entryToModify = entryModel.getEntry(table.convertRowIndexToModel(viewRow));
+                if(entryToModify == null) //Removed, the row is about to go
+                    return;
+                if(column == EntryTableModel.REMOVE)
+                    Db.removeEntry(entryToModify);
+                else if(column == EntryTableModel.MODIFY)
+                    modifyEntry(entryToModify);
+            }
+        });
 
-        JScrollPane viewScrollPane = new JScrollPane(viewTagPane);
+        JScrollPane viewScrollPane = new JScrollPane(table);
         GridBagConstraints viewScrollPaneC = createGridBagConstraints(0, 1, 0, 1);
         viewScrollPaneC.weightx = 0.5;
         viewScrollPaneC.weighty = 0.5;
@@ -398,7 +454,55 @@ public class Main {
         viewPane.add(viewScrollPane, viewScrollPaneC);
     };
 
-    //Only holds the API key at present
+    //Paints a cell as a button
+    private static class ButtonRenderer extends JButton implements TableCellRenderer {
+        @Override
+        public Component getTableCellRendererComponent(JTable table, Object value, boolean isSelected, boolean hasFocus, int row, int column){
+            setText((String) value);
+            return this;
+        }
+    }
+
+    //Opens a window to edit the entry, which replaces it with a new entry when saved
+    private void modifyEntry(Entry entryToModify){
+        JFrame editFrame = new JFrame("Edit entry");
+        try{
+            editFrame.setIconImage(ImageIO.read(this.getClass().getResource("icon.png")));
+        } catch(Exception unused){}//Too bad, no icon
+
+        EditPanel localPane = new EditPanel(frame, entryToModify);
+
+        JButton saveButton = new JButton("Modify");
+        saveButton.addActionListener(new ActionListener(){
+            @Override
+            public void actionPerformed(ActionEvent e){
+                Entry created = localPane.tryConstruct(false);
+                if (created != null){
+                    Db.removeEntry(entryToModify);
+                    Db.createEntry(created);
+                    editFrame.dispose();
+                }
+            };
+        });
+        GridBagConstraints saveButtonC = createGridBagConstraints(1, 1, 8, 1);
+        saveButtonC.anchor = GridBagConstraints.SOUTHEAST;
+        localPane.add(saveButton, saveButtonC);
+
+        JButton cancelButton = new JButton("Cancel");
+        cancelButton.addActionListener(lamb -> {
+            editFrame.dispose();
+        });
+        GridBagConstraints cancelButtonC = createGridBagConstraints(0, 1, 8, 1);
+        cancelButtonC.weightx = 1;
+        cancelButtonC.anchor = GridBagConstraints.SOUTHEAST;
+        localPane.add(cancelButton, cancelButtonC);
+
+        editFrame.add(localPane);
+        editFrame.pack();
+        editFrame.setVisible(true);
+    }
+
+    //Holds the API key, graph currency and exchange rates
     private JPanel createCfgPane(){
         JPanel cfgPane = new JPanel(new GridBagLayout());
 
@@ -433,43 +537,112 @@ public class Main {
         graphCurrBoxC.anchor = GridBagConstraints.WEST;
         cfgPane.add(graphCurrBox, graphCurrBoxC);
 
-        //Exchange rate
+        //Exchange rates, one row per currency quoted against the base
         boolean willUpdateRate = Db.getAutoRate();
-        JTextField rateField = new JTextField(willUpdateRate ? "" : Db.getExchangeRate(), 10); //Do not show outdated price
-        rateField.setEditable(!willUpdateRate);
-        rateField.addFocusListener(new FocusListener() {
-            @Override
-            public void focusGained(FocusEvent e) {} //Do nothing
+        JCheckBox autoRate = new JCheckBox("Automatic exchange rates, else specify from " + Currency.BASE + ":", willUpdateRate);
+        GridBagConstraints autoRateC = Main.createGridBagConstraints(0, 2, 2, 1);
+        autoRateC.anchor = GridBagConstraints.WEST;
+        cfgPane.add(autoRate, autoRateC);
 
-            @Override
-            public void focusLost(FocusEvent e) {
-                if (Db.getAutoRate()) //Do nothing if not enabled
-                    return;
-                String rateText = rateField.getText();
-                try{
-                    float newRate = Float.parseFloat(rateText);
-                    Db.setExchangeRate(newRate);
-                } catch (NumberFormatException unused){
-                    //Silently undo
-                    rateField.setText(Db.getExchangeRate());
+        Map<Currency, JTextField> rateFields = new EnumMap<>(Currency.class);
+        int row = 3;
+        for(Currency currency : Currency.values()){
+            if(currency == Currency.BASE)
+                continue;
+
+            JLabel rateLabel = new JLabel(Currency.BASE + " to " + currency + ": ");
+            GridBagConstraints rateLabelC = createGridBagConstraints(0, 1, row, 1);
+            cfgPane.add(rateLabel, rateLabelC);
+
+            JTextField rateField = new JTextField(willUpdateRate ? "" : Db.getExchangeRate(currency), 10); //Do not show outdated price
+            rateField.setEditable(!willUpdateRate);
+            rateField.addFocusListener(new FocusListener() {
+                @Override
+                public void focusGained(FocusEvent e) {} //Do nothing
+
+                @Override
+                public void focusLost(FocusEvent e) {
+                    if (Db.getAutoRate()) //Do nothing if not enabled
+                        return;
+                    String rateText = rateField.getText();
+                    try{
+                        float newRate = Float.parseFloat(rateText);
+                        if(!Db.setExchangeRate(currency, newRate)) //Not a usable rate, silently undo
+                            rateField.setText(Db.getExchangeRate(currency));
+                    } catch (NumberFormatException unused){
+                        //Silently undo
+                        rateField.setText(Db.getExchangeRate(currency));
+                    }
                 }
-            }
-        });
+            });
+            GridBagConstraints rateFieldC = createGridBagConstraints(1, 1, row, 1);
+            rateFieldC.anchor = GridBagConstraints.WEST;
+            cfgPane.add(rateField, rateFieldC);
+            rateFields.put(currency, rateField);
+            row++;
+        }
+
+        JLabel rateStatsLabel = new JLabel(Db.rateStatsToLabel());
+        GridBagConstraints rateStatsLabelC = createGridBagConstraints(0, 2, row, 1);
+        rateStatsLabelC.anchor = GridBagConstraints.WEST;
+        cfgPane.add(rateStatsLabel, rateStatsLabelC);
 
-        GridBagConstraints rateFieldC = createGridBagConstraints(1, 1, 2, 1);
-        cfgPane.add(rateField, rateFieldC);
+        Runnable showRate = () -> {
+            rateFields.forEach((currency, field) -> field.setText(Db.getExchangeRate(currency)));
+            rateStatsLabel.setText(Db.rateStatsToLabel());
+        };
+        if(willUpdateRate)
+            refreshRates(showRate);
 
-        JCheckBox autoRate = new JCheckBox("Automatic exchange rate, else specify CAD to USD:", Db.getAutoRate());
         autoRate.addItemListener(e -> {
-            rateField.setEditable(Db.getAutoRate());
+            for(JTextField i : rateFields.values())
+                i.setEditable(Db.getAutoRate());
             Db.toggleAutoRate();
             if(e.getStateChange() == 1)
-                rateField.setText(Db.getExchangeRate());
+                refreshRates(showRate);
         });
-        GridBagConstraints autoRateC = Main.createGridBagConstraints(0, 1, 2, 1);
-        cfgPane.add(autoRate, autoRateC);
+
+        //Readable backup of everything
+        JButton exportButton = new JButton("Export text backup...");
+        exportButton.addActionListener(e -> {
+            JFileChooser chooser = new JFileChooser();
+            chooser.setSelectedFile(new java.io.File("prevInfo.txt"));
+            if(chooser.showSaveDialog(frame) != JFileChooser.APPROVE_OPTION)
+                return;
+            try{
+                Db.exportText(chooser.getSelectedFile());
+            } catch(java.io.IOException ex){
+                JOptionPane.showMessageDialog(frame, "Could not write the backup: " + ex.getMessage(), "Export failed", JOptionPane.ERROR_MESSAGE);
+            }
+        });
+        GridBagConstraints exportButtonC = createGridBagConstraints(1, 1, row + 1, 1);
+        exportButtonC.anchor = GridBagConstraints.EAST;
+        cfgPane.add(exportButton, exportButtonC);
+
+        //Saves happen in the background, so show how they are going
+        JLabel saveStatsLabel = new JLabel(Db.saveStatsToLabel());
+        GridBagConstraints saveStatsLabelC = createGridBagConstraints(0, 2, row + 2, 1);
+        saveStatsLabelC.anchor = GridBagConstraints.WEST;
+        cfgPane.add(saveStatsLabel, saveStatsLabelC);
+        new javax.swing.Timer(2000, e -> saveStatsLabel.setText(Db.saveStatsToLabel())).start();
 
         return cfgPane;
     };
 
+    //Fetches the exchange rates off the EDT, then runs the given update on the EDT
+    private void refreshRates(Runnable after){
+        new SwingWorker<Void, Void>(){
+            @Override
+            public Void doInBackground(){
+                Db.refreshRates();
+                return null;
+            }
+
+            @Override
+            public void done(){
+                after.run();
+            }
+        }.execute();
+    }
+
 }
@@ -2,18 +2,38 @@ package main;
 
 import java.util.*;
 import java.awt.*;
+import java.awt.geom.AffineTransform;
+import java.awt.image.BufferedImage;
 import javax.swing.JComponent;
 
 //This a resizable component that displays a pie graph of the input map
+//The geometry is worked out once for the data, and the drawn pie is kept as an image until the size changes,
+//so repaints from dialogs passing over it only copy the image
 class Pie extends JComponent{
+    //Slices narrower than this along the edge are drawn together as one grey slice
+    private static final float MIN_SLICE_PIXELS = 6f;
+    private static final Color MERGED_COLOUR = Color.LIGHT_GRAY;
+
     private Map<String, Float> localMap;
     private ArrayList<Color> colourList;
     private int numItems;
     private float total;
 
+    //Slice i runs from boundary i to boundary i + 1, in whole degrees as the arcs are drawn
+    private int[] boundaries;
+    private double[] boundaryCos;
+    private double[] boundarySin;
+
+    //Last drawn pie and the size it was drawn at
+    private BufferedImage cache;
+    private int cacheWidth;
+    private int cacheHeight;
+    private double cacheScale;
+
     //Takes in a map of tickers and their values
     //The tickers aren't used but are valuable for the caller
-    Pie(Map<String, Float> graphable){
+    //If hasOther is set the last value is everything else added up, and is drawn in grey like other merged slices
+    Pie(Map<String, Float> graphable, boolean hasOther){
         localMap = graphable;
         total = 0f;
 
@@ -23,22 +43,63 @@ class Pie extends JComponent{
             total += i;
         }
 
-        //Create the list of colours by stepping through the hue
-        colourList = new ArrayList<>(numItems);
+        colourList = makeColours(numItems);
+        if(hasOther && numItems > 0)
+            colourList.set(numItems - 1, MERGED_COLOUR);
+
+        //Angles of the slice edges and the direction of each edge line
+        boundaries = new int[numItems + 1];
+        boundaryCos = new double[numItems + 1];
+        boundarySin = new double[numItems + 1];
+        float runningTotal = 0f;
+        int j = 0;
+        boundaryCos[0] = 1;
+        for(Float i : localMap.values()){
+            runningTotal += i;
+            j++;
+            boundaries[j] = Math.round(runningTotal*360f/total);
+            double radians = Math.toRadians(boundaries[j]);
+            boundaryCos[j] = Math.cos(radians);
+            boundarySin[j] = Math.sin(radians);
+        }
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        int width = getWidth();
+        int height = getHeight();
+        if(width <= 0 || height <= 0)
+            return;
+
+        //Draw at the screen's resolution so the image is as sharp as drawing directly
+        AffineTransform transform = ((Graphics2D) g).getTransform();
+        double scale = Math.max(transform.getScaleX(), 1.0);
+        if(cache == null || width != cacheWidth || height != cacheHeight || scale != cacheScale){
+            cache = new BufferedImage((int) Math.ceil(width * scale), (int) Math.ceil(height * scale), BufferedImage.TYPE_INT_ARGB);
+            Graphics2D imageGraphics = cache.createGraphics();
+            imageGraphics.scale(scale, scale);
+            drawPie(imageGraphics, new Rectangle(0, 0, width, height));
+            imageGraphics.dispose();
+            cacheWidth = width;
+            cacheHeight = height;
+            cacheScale = scale;
+        }
+        g.drawImage(cache, 0, 0, width, height, null);
+    }
+
+    //Create the list of colours by stepping through the hue
+    static ArrayList<Color> makeColours(int numItems){
+        ArrayList<Color> colours = new ArrayList<>(numItems);
         float step = 1.0f / numItems;
         float[] baseHSB = Color.RGBtoHSB(55, 148, 187, null);
 
         for(int i = 0; i < numItems; i++){
             float newHue = (baseHSB[0] + step * ((float) i)) % 1f;
-            colourList.add(new Color(Color.HSBtoRGB(newHue, baseHSB[1], baseHSB[2])));
+            colours.add(new Color(Color.HSBtoRGB(newHue, baseHSB[1], baseHSB[2])));
         }
         //Needed to prevent it being a colour wheel
-        Collections.shuffle(colourList);
-    }
-
-    @Override
-    public void paint(Graphics g) {
-        drawPie((Graphics2D) g, getBounds());
+        Collections.shuffle(colours);
+        return colours;
     }
 
     //Used to match the legend colours with the pie colours
@@ -51,10 +112,7 @@ class Pie extends JComponent{
     };
 
     void drawPie(Graphics2D g, Rectangle area){
-        int startAngle = 0;
-        int j = 0;
         int size; //The graph is a square
-        float runningTotal = 0f;
 
         //Where to draw the border line from
         int x = area.x;
@@ -71,36 +129,56 @@ class Pie extends JComponent{
             size = width;
             y += (height - width)/2;
         }
+        if(size <= 0)
+            return;
         int xOrigin = x+size/2;
         int yOrigin = y+size/2;
 
+        //Degrees that span the minimum width along the edge
+        float minDegrees = MIN_SLICE_PIXELS * 360f / (float) (Math.PI * size);
 
         //For a nice border
         g.setStroke(new BasicStroke(2));
         g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
 
-        //Draw the graph sector by sector
-        for(Float i : localMap.values()){
-            runningTotal += i;
-            int stopAngle = Math.round(runningTotal*360f/total);
-            int arcAngle = stopAngle-startAngle;
+        //Draw the graph sector by sector, with each run of narrow slices drawn as one
+        int drawn = 0;
+        int j = 0;
+        while(j < numItems){
+            int start = j;
+            Color colour = colourList.get(j);
+            if(boundaries[j + 1] - boundaries[j] < minDegrees){
+                while(j < numItems && boundaries[j + 1] - boundaries[j] < minDegrees)
+                    j++;
+                if(j - start > 1)
+                    colour = MERGED_COLOUR;
+                else
+                    colour = colourList.get(start);
+            }
+            else
+                j++;
+
+            int startAngle = boundaries[start];
+            int arcAngle = boundaries[j] - startAngle;
+            if(arcAngle == 0)
+                continue;
 
             //Fill arc with solid colour
-            g.setColor(colourList.get(j));
+            g.setColor(colour);
             g.fillArc(x, y, size, size, startAngle, arcAngle);
 
             //Border
             g.setColor(Color.BLACK);
-            if(j != 0){
-                g.drawLine(xOrigin, yOrigin, xOrigin+(int)(0.5*size*Math.cos(Math.toRadians(startAngle))), yOrigin-(int)(0.5*size*Math.sin(Math.toRadians(startAngle))));
+            if(drawn != 0){
+                g.drawLine(xOrigin, yOrigin, xOrigin+(int)(0.5*size*boundaryCos[start]), yOrigin-(int)(0.5*size*boundarySin[start]));
             }
-            startAngle = stopAngle;
-            j++;
+            drawn++;
         }
 
         //Finalize the outline
+        g.setColor(Color.BLACK);
         g.drawOval(x, y, size, size);
-        if (j != 1)
+        if (drawn > 1)
             g.drawLine(xOrigin, yOrigin, xOrigin+size/2, yOrigin); //Redraw the first line, it gets partially overlapped otherwise
    }
 }
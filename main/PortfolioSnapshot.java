@@ -0,0 +1,267 @@
+package main;
+
+import java.util.*;
+import java.time.*;
+
+//Read-only copy of the portfolio at one moment, which any number of threads can read at once without locking
+//Strings are resolved while it is built, and each tag value keeps the set of rows holding it, so filtering is bitwise
+//operations as in the database itself
+//The value history and the price history only grow, so rather than being copied they are read up to where they ended
+//when the snapshot was taken: the number of value records, and the last day with a price for each ticker held
+class PortfolioSnapshot {
+    //Ignores case like the graph pane's lists, but never treats two different strings as equal
+    private static final Comparator<String> ORDER = String.CASE_INSENSITIVE_ORDER.thenComparing(Comparator.naturalOrder());
+
+    private final LocalDateTime taken;
+    private final LocalDateTime priceTime;
+    private final Currency graphCurrency;
+    private final float[] factors; //Converts each currency into the graph currency, indexed by ordinal
+    private final int historyRecords;
+    private final PriceHistory priceHistory;
+
+    //One row per entry, in the order they were added
+    private final int numRows;
+    private final int[] ids;
+    private final int[] serials;
+    private final String[] tickers;
+    private final Currency[] currencies;
+    private final float[] quantities;
+    private final float[] prices;
+    private final boolean[] autoPriced;
+    private final String[] distinctTickers;
+    private final Map<String, Integer> tickerIndex = new HashMap<>();
+    private final int[] tickerOfRow; //Index into distinctTickers for each row
+    private final int[] lastPriceDays; //Last day in each distinct ticker's price history, or PriceSeries.NONE
+
+    //Tags sorted by name, each with its values sorted and the row of every entry holding each value
+    private final String[] tags;
+    private final Map<String, Integer> tagIndex = new HashMap<>();
+    private final String[][] values;
+    private final int[][] valueOfRow; //Index into the tag's values for each row, or -1
+    private final BitSet[][] rowsWith;
+
+    //Takes the entries in the order they were added with their serials, and the number of records in the value history;
+    //nothing passed in is kept apart from the price history, so the caller may reuse it
+    PortfolioSnapshot(Entry[] entries, int[] serials, LocalDateTime priceTime, Currency graphCurrency, float[] factors, int historyRecords, PriceHistory priceHistory){
+        this.taken = LocalDateTime.now();
+        this.priceTime = priceTime;
+        this.graphCurrency = graphCurrency;
+        this.factors = factors.clone();
+        this.historyRecords = historyRecords;
+        this.priceHistory = priceHistory;
+
+        numRows = entries.length;
+        ids = new int[numRows];
+        this.serials = serials.clone();
+        tickers = new String[numRows];
+        currencies = new Currency[numRows];
+        quantities = new float[numRows];
+        prices = new float[numRows];
+        autoPriced = new boolean[numRows];
+
+        //Gather the values of each tag by dictionary id first, the strings are then looked up once each
+        Map<Integer, Map<Integer, BitSet>> byTag = new HashMap<>();
+        tickerOfRow = new int[numRows];
+        for(int row = 0; row < numRows; row++){
+            Entry entry = entries[row];
+            ids[row] = entry.getId();
+            tickers[row] = entry.getTicker();
+            tickerOfRow[row] = tickerIndex.computeIfAbsent(tickers[row], k -> tickerIndex.size());
+            currencies[row] = entry.getCurrency();
+            quantities[row] = entry.getQuantityF();
+            prices[row] = entry.getPriceF();
+            autoPriced[row] = entry.getUpdatePrice();
+            for(int i = 0; i < entry.getNumTags(); i++){
+                byTag.computeIfAbsent(entry.getTagId(i), k -> new HashMap<>()).computeIfAbsent(entry.getValueId(i), k -> new BitSet()).set(row);
+            }
+        }
+
+        distinctTickers = new String[tickerIndex.size()];
+        tickerIndex.forEach((k, v) -> distinctTickers[v] = k);
+        lastPriceDays = new int[distinctTickers.length];
+        for(int i = 0; i < distinctTickers.length; i++){
+            PriceSeries series = priceHistory.find(distinctTickers[i]);
+            lastPriceDays[i] = series == null ? PriceSeries.NONE : series.lastDay();
+        }
+
+        TreeMap<String, Map<Integer, BitSet>> sortedTags = new TreeMap<>(ORDER);
+        byTag.forEach((k, v) -> sortedTags.put(TagDictionary.NAMES.get(k), v));
+        tags = sortedTags.keySet().toArray(new String[0]);
+        values = new String[tags.length][];
+        valueOfRow = new int[tags.length][];
+        rowsWith = new BitSet[tags.length][];
+        int tag = 0;
+        for(Map.Entry<String, Map<Integer, BitSet>> i : sortedTags.entrySet()){
+            tagIndex.put(i.getKey(), tag);
+            TreeMap<String, BitSet> sortedValues = new TreeMap<>(ORDER);
+            i.getValue().forEach((k, v) -> sortedValues.put(TagDictionary.VALUES.get(k), v));
+            values[tag] = sortedValues.keySet().toArray(new String[0]);
+            rowsWith[tag] = sortedValues.values().toArray(new BitSet[0]);
+            valueOfRow[tag] = new int[numRows];
+            Arrays.fill(valueOfRow[tag], -1);
+            for(int j = 0; j < rowsWith[tag].length; j++){
+                BitSet rows = rowsWith[tag][j];
+                for(int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)){
+                    valueOfRow[tag][row] = j;
+                }
+            }
+            tag++;
+        }
+    }
+
+    LocalDateTime getTaken(){
+        return taken;
+    }
+
+    LocalDateTime getPriceTime(){
+        return priceTime;
+    }
+
+    Currency getGraphCurrency(){
+        return graphCurrency;
+    }
+
+    int size(){
+        return numRows;
+    }
+
+    int getId(int row){
+        return ids[row];
+    }
+
+    int getSerial(int row){
+        return serials[row];
+    }
+
+    //Returns the row of the entry with the id, or -1
+    int rowOf(int id){
+        for(int row = 0; row < numRows; row++){
+            if(ids[row] == id)
+                return row;
+        }
+        return -1;
+    }
+
+    //Number of records the value history held, queries of it should read no further
+    int getHistoryRecords(){
+        return historyRecords;
+    }
+
+    //Converts a value in the base currency, as the value history holds, into the graph currency
+    float fromBase(float value){
+        return value * factors[Currency.BASE.ordinal()];
+    }
+
+    String getTicker(int row){
+        return tickers[row];
+    }
+
+    Currency getCurrency(int row){
+        return currencies[row];
+    }
+
+    float getQuantity(int row){
+        return quantities[row];
+    }
+
+    float getPrice(int row){
+        return prices[row];
+    }
+
+    boolean getAutoPriced(int row){
+        return autoPriced[row];
+    }
+
+    //Value in the entry's own currency
+    float getValue(int row){
+        return quantities[row] * prices[row];
+    }
+
+    //Value in the graph currency
+    float getConvertedValue(int row){
+        return getValue(row) * factors[currencies[row].ordinal()];
+    }
+
+    //Value of the row on the date in its own currency, from the closing price that day or the last one before it
+    //NaN if the ticker's price history doesn't reach back that far
+    float valueOn(int row, LocalDate date){
+        int last = lastPriceDays[tickerOfRow[row]];
+        PriceSeries series = last == PriceSeries.NONE ? null : priceHistory.find(tickers[row]);
+        if(series == null)
+            return Float.NaN;
+        return series.priceOn(date.toEpochDay() > last ? LocalDate.ofEpochDay(last) : date) * quantities[row];
+    }
+
+    //Closing prices of the ticker between the dates, both included; empty for a ticker no entry held
+    PriceSeries.Points pricesOf(String ticker, LocalDate from, LocalDate to){
+        Integer index = tickerIndex.get(ticker);
+        PriceSeries series = index == null || lastPriceDays[index] == PriceSeries.NONE ? null : priceHistory.find(ticker);
+        if(series == null)
+            return new PriceSeries.Points(new int[0], new float[0], 0);
+        int last = lastPriceDays[index];
+        return series.range(from, to.toEpochDay() > last ? LocalDate.ofEpochDay(last) : to);
+    }
+
+    String[] getTags(){
+        return tags.clone();
+    }
+
+    //Returns the values of the tag in sorted order, or null if no entry has the tag
+    String[] getValuesForTag(String tag){
+        Integer index = tagIndex.get(tag);
+        return index == null ? null : values[index].clone();
+    }
+
+    //Number of entries holding the value of the tag
+    int countWith(String tag, String value){
+        return rowsFor(tag, value).cardinality();
+    }
+
+    //Returns the value the row holds for the tag, or null
+    String getValueForTag(int row, String tag){
+        Integer index = tagIndex.get(tag);
+        if(index == null || valueOfRow[index][row] < 0)
+            return null;
+        return values[index][valueOfRow[index][row]];
+    }
+
+    //Returns the rows holding every included tag value and none of the excluded ones, given as tag and value pairs
+    BitSet matching(List<String[]> include, List<String[]> exclude){
+        BitSet matches = new BitSet(numRows);
+        matches.set(0, numRows);
+        for(String[] i : include){
+            matches.and(rowsFor(i[0], i[1]));
+        }
+        for(String[] i : exclude){
+            matches.andNot(rowsFor(i[0], i[1]));
+        }
+        return matches;
+    }
+
+    //Totals the rows in the graph currency along the axis, like Db.findGraphables
+    //An empty axis groups by ticker; rows without the tag are grouped as not classified
+    //Only the largest topK groups are returned, largest first, and the rest are added up into one last group
+    Map<String, Float> totals(BitSet rows, String axis, int topK){
+        //Summed by group index rather than by label, so no row needs a hash lookup
+        Integer tag = "".equals(axis) ? null : tagIndex.get(axis);
+        String[] labels = "".equals(axis) ? distinctTickers : tag == null ? new String[0] : values[tag];
+        GroupSums sums = new GroupSums(labels.length);
+        for(int row = rows.nextSetBit(0); row >= 0; row = rows.nextSetBit(row + 1)){
+            int group;
+            if("".equals(axis))
+                group = tickerOfRow[row];
+            else
+                group = tag == null ? -1 : valueOfRow[tag][row];
+            sums.add(group, getConvertedValue(row));
+        }
+        return GroupSums.largest(sums.toMap(i -> labels[i]), topK);
+    }
+
+    private BitSet rowsFor(String tag, String value){
+        Integer index = tagIndex.get(tag);
+        if(index == null)
+            return new BitSet();
+        int found = Arrays.binarySearch(values[index], value, ORDER);
+        return found >= 0 ? rowsWith[index][found] : new BitSet();
+    }
+}
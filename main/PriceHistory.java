@@ -0,0 +1,70 @@
+package main;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.concurrent.*;
+
+//Daily closing prices of every ticker, one file each in a directory
+//A series is opened the first time it is asked for and stays open, so later lookups go straight to the mapped file
+class PriceHistory implements Closeable {
+    private final Path dir;
+    private final ConcurrentHashMap<String, PriceSeries> open = new ConcurrentHashMap<>();
+
+    PriceHistory(Path dir){
+        this.dir = dir;
+    }
+
+    //Returns the ticker's series, creating an empty one if it has none yet
+    PriceSeries get(String ticker) throws IOException {
+        PriceSeries series = open.get(ticker);
+        if(series != null)
+            return series;
+        Files.createDirectories(dir);
+        try{
+            return open.computeIfAbsent(ticker, k -> {
+                try{
+                    return new PriceSeries(dir.resolve(fileName(k)));
+                } catch(IOException e){
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch(UncheckedIOException e){
+            throw e.getCause();
+        }
+    }
+
+    //Returns the ticker's series, or null if none has been saved for it
+    PriceSeries find(String ticker){
+        PriceSeries series = open.get(ticker);
+        if(series != null || !Files.exists(dir.resolve(fileName(ticker))))
+            return series;
+        try{
+            return get(ticker);
+        } catch(IOException unused){
+            return null; //Unreadable, treated as no history until it is fetched again
+        }
+    }
+
+    //Tickers can hold characters that aren't allowed in file names, such as the colon in TSX:RY
+    //Letters, digits, '.' and '-' are kept and every other byte of the ticker is written as '_' and two hex digits, '_'
+    //included, so no two tickers share a file: TSX:RY is TSX_3ARY and TSX_RY is TSX_5FRY
+    static String fileName(String ticker){
+        StringBuilder name = new StringBuilder(ticker.length() + 5);
+        for(byte b : ticker.getBytes(StandardCharsets.UTF_8)){
+            if((b >= 'A' && b <= 'Z') || (b >= 'a' && b <= 'z') || (b >= '0' && b <= '9') || b == '.' || b == '-')
+                name.append((char) b);
+            else
+                name.append('_').append(Character.toUpperCase(Character.forDigit((b >> 4) & 0xf, 16))).append(Character.toUpperCase(Character.forDigit(b & 0xf, 16)));
+        }
+        return name.append(".hist").toString();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        for(PriceSeries i : open.values()){
+            i.close();
+        }
+        open.clear();
+    }
+}
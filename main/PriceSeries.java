@@ -0,0 +1,345 @@
+package main;
+
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import java.util.zip.CRC32;
+
+//One ticker's daily closing prices, in a file that only ever grows at the end
+//Points are kept in blocks: a block holds its first day and price in full, then each following point as the change
+//from the one before in as few bytes as it needs, so a year of prices takes a few hundred bytes
+//The file is memory-mapped and the blocks are indexed by their first day, so a lookup is a binary search of the index
+//followed by decoding at most one block
+//Only the last block is ever rewritten, when it is not full yet and more points arrive
+class PriceSeries implements Closeable {
+    static final int NONE = Integer.MIN_VALUE; //Day returned when there are no points
+    static final long TICKS = 10_000; //Prices are stored as whole ten-thousandths
+    static final int BLOCK_POINTS = 64;
+
+    private static final int MAGIC = 0x53544b48; //"STKH"
+    private static final int VERSION = 1;
+    private static final int FILE_HEADER = 8; //Magic, version
+    private static final int BLOCK_HEADER = 20; //First day, first price, number of points, payload length, checksum
+
+    //Receives points in order of day
+    interface PointConsumer {
+        void accept(int day, float price);
+    }
+
+    //Points from a range query, days since the epoch with the closing price on each
+    static class Points {
+        final int[] days;
+        final float[] prices;
+        final int size;
+
+        Points(int[] days, float[] prices, int size){
+            this.days = days;
+            this.prices = prices;
+            this.size = size;
+        }
+    }
+
+    //The mapped file and its index, replaced whole after every append so readers never need a lock
+    private static class View {
+        final MappedByteBuffer buffer;
+        final int numBlocks;
+        final int[] firstDays;
+        final int[] offsets;
+        final int end; //Where the next block goes
+        final int lastDay;
+        final long lastTicks;
+        final int lastCount; //Points in the last block
+
+        View(MappedByteBuffer buffer, int numBlocks, int[] firstDays, int[] offsets, int end, int lastDay, long lastTicks, int lastCount){
+            this.buffer = buffer;
+            this.numBlocks = numBlocks;
+            this.firstDays = firstDays;
+            this.offsets = offsets;
+            this.end = end;
+            this.lastDay = lastDay;
+            this.lastTicks = lastTicks;
+            this.lastCount = lastCount;
+        }
+    }
+
+    private final FileChannel channel;
+    private volatile View view;
+
+    //Opens the series, creating the file if there is none
+    //A block left incomplete by an interrupted append is dropped, along with anything after it
+    PriceSeries(Path path) throws IOException {
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try{
+            if(channel.size() < FILE_HEADER){
+                ByteBuffer header = ByteBuffer.allocate(FILE_HEADER).putInt(MAGIC).putInt(VERSION);
+                header.flip();
+                channel.write(header, 0);
+                channel.truncate(FILE_HEADER);
+                channel.force(true);
+            }
+            if(channel.size() > Integer.MAX_VALUE)
+                throw new IOException(path + " is too large to be a price history");
+
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION)
+                throw new IOException(path + " is not a price history this version can read");
+
+            int[] firstDays = new int[16];
+            int[] offsets = new int[16];
+            int numBlocks = 0;
+            int pos = FILE_HEADER;
+            CRC32 crc = new CRC32();
+            while(pos + BLOCK_HEADER <= buffer.limit()){
+                int count = buffer.getShort(pos + 12) & 0xffff;
+                int length = buffer.getShort(pos + 14) & 0xffff;
+                if(count == 0 || count > BLOCK_POINTS || pos + BLOCK_HEADER + length > buffer.limit() || buffer.getInt(pos + 16) != checksum(crc, buffer, pos, length))
+                    break;
+                if(numBlocks == firstDays.length){
+                    firstDays = Arrays.copyOf(firstDays, numBlocks * 2);
+                    offsets = Arrays.copyOf(offsets, numBlocks * 2);
+                }
+                firstDays[numBlocks] = buffer.getInt(pos);
+                offsets[numBlocks] = pos;
+                numBlocks++;
+                pos += BLOCK_HEADER + length;
+            }
+            if(pos < buffer.limit()){
+                try{
+                    channel.truncate(pos);
+                } catch(IOException unused){
+                    //Some systems won't shrink a mapped file; appends start at the end of the good blocks regardless
+                }
+            }
+            view = index(buffer, numBlocks, firstDays, offsets, pos);
+        } catch(IOException | RuntimeException e){
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    //Last day with a price, or NONE
+    int lastDay(){
+        return view.lastDay;
+    }
+
+    //Whether a newer closing price than the last one could be available by the given day
+    //Today's close may not be published yet, so the latest expected is the last weekday before today
+    static boolean isBehind(int lastDay, int today){
+        if(lastDay == NONE)
+            return true;
+        int latest = today - 1;
+        while(LocalDate.ofEpochDay(latest).getDayOfWeek().getValue() > 5) //Saturday or Sunday
+            latest--;
+        return lastDay < latest;
+    }
+
+    //Closing price on the date, or on the last day before it with one, e.g. the Friday for a Sunday
+    //NaN if the series starts after the date
+    float priceOn(LocalDate date){
+        return priceOn(epochDay(date));
+    }
+
+    float priceOn(int day){
+        View v = view;
+        int block = blockFor(v, day);
+        if(block < 0)
+            return Float.NaN;
+
+        ByteBuffer in = v.buffer.duplicate();
+        int offset = v.offsets[block];
+        int count = v.buffer.getShort(offset + 12) & 0xffff;
+        int current = v.buffer.getInt(offset);
+        long ticks = v.buffer.getLong(offset + 4);
+        in.position(offset + BLOCK_HEADER);
+        for(int i = 1; i < count; i++){
+            int nextDay = current + (int) VarInts.read(in);
+            long nextTicks = ticks + VarInts.unzigzag(VarInts.read(in));
+            if(nextDay > day)
+                break;
+            current = nextDay;
+            ticks = nextTicks;
+        }
+        return (float) ticks / TICKS;
+    }
+
+    //Days since the epoch, with dates too far off for an int clamped, as no series reaches them
+    private static int epochDay(LocalDate date){
+        return (int) Math.max(Integer.MIN_VALUE + 1, Math.min(Integer.MAX_VALUE, date.toEpochDay()));
+    }
+
+    //Passes every point from the first date to the last, both included, to the consumer
+    void forEach(LocalDate from, LocalDate to, PointConsumer consumer){
+        View v = view;
+        int fromDay = epochDay(from);
+        int toDay = epochDay(to);
+        ByteBuffer in = v.buffer.duplicate();
+        for(int block = Math.max(blockFor(v, fromDay), 0); block < v.numBlocks && v.firstDays[block] <= toDay; block++){
+            int offset = v.offsets[block];
+            int count = v.buffer.getShort(offset + 12) & 0xffff;
+            int day = v.buffer.getInt(offset);
+            long ticks = v.buffer.getLong(offset + 4);
+            in.position(offset + BLOCK_HEADER);
+            for(int i = 0; i < count; i++){
+                if(i > 0){
+                    day += (int) VarInts.read(in);
+                    ticks += VarInts.unzigzag(VarInts.read(in));
+                }
+                if(day > toDay)
+                    return;
+                if(day >= fromDay)
+                    consumer.accept(day, (float) ticks / TICKS);
+            }
+        }
+    }
+
+    //Returns the points from the first date to the last, both included
+    Points range(LocalDate from, LocalDate to){
+        int[][] days = {new int[64]};
+        float[][] prices = {new float[64]};
+        int[] size = {0};
+        forEach(from, to, (day, price) -> {
+            if(size[0] == days[0].length){
+                days[0] = Arrays.copyOf(days[0], size[0] * 2);
+                prices[0] = Arrays.copyOf(prices[0], size[0] * 2);
+            }
+            days[0][size[0]] = day;
+            prices[0][size[0]] = price;
+            size[0]++;
+        });
+        return new Points(days[0], prices[0], size[0]);
+    }
+
+    //Adds the points, which must be in order of day; points not after the last day already held are ignored
+    //Returns the number of points added
+    synchronized int append(int[] days, long[] ticks, int length) throws IOException {
+        View v = view;
+        int start = 0;
+        while(start < length && v.lastDay != NONE && days[start] <= v.lastDay)
+            start++;
+        if(start == length)
+            return 0;
+        for(int i = start + 1; i < length; i++){
+            if(days[i] <= days[i - 1])
+                throw new IllegalArgumentException("Points must be in order of day");
+        }
+
+        //A last block that isn't full is decoded and written again with the new points following on
+        //If that is interrupted its points are lost with the torn block, and are fetched again since the last day goes back
+        int[] allDays;
+        long[] allTicks;
+        int writeAt = v.end;
+        int keptBlocks = v.numBlocks;
+        if(v.numBlocks > 0 && v.lastCount < BLOCK_POINTS){
+            keptBlocks--;
+            writeAt = v.offsets[keptBlocks];
+            allDays = new int[v.lastCount + length - start];
+            allTicks = new long[allDays.length];
+            decodeBlock(v, keptBlocks, allDays, allTicks);
+        }
+        else{
+            allDays = new int[length - start];
+            allTicks = new long[allDays.length];
+        }
+        int numOld = allDays.length - (length - start);
+        System.arraycopy(days, start, allDays, numOld, length - start);
+        System.arraycopy(ticks, start, allTicks, numOld, length - start);
+
+        ByteBuffer out = ByteBuffer.allocate(encodedBound(allDays.length));
+        CRC32 crc = new CRC32();
+        for(int first = 0; first < allDays.length; first += BLOCK_POINTS){
+            encodeBlock(out, crc, allDays, allTicks, first, Math.min(first + BLOCK_POINTS, allDays.length));
+        }
+        out.flip();
+        int newEnd = writeAt + out.remaining();
+        while(out.hasRemaining())
+            channel.write(out, writeAt + out.position());
+        channel.force(false);
+
+        //Map the grown file and extend the index with the blocks just written
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, newEnd);
+        int numBlocks = keptBlocks + (allDays.length + BLOCK_POINTS - 1) / BLOCK_POINTS;
+        int[] firstDays = Arrays.copyOf(v.firstDays, Math.max(numBlocks, v.firstDays.length));
+        int[] offsets = Arrays.copyOf(v.offsets, firstDays.length);
+        int pos = writeAt;
+        for(int i = keptBlocks; i < numBlocks; i++){
+            firstDays[i] = buffer.getInt(pos);
+            offsets[i] = pos;
+            pos += BLOCK_HEADER + (buffer.getShort(pos + 14) & 0xffff);
+        }
+        view = index(buffer, numBlocks, firstDays, offsets, newEnd);
+        return length - start;
+    }
+
+    //Builds the view, reading the last point from the last block
+    private static View index(MappedByteBuffer buffer, int numBlocks, int[] firstDays, int[] offsets, int end){
+        if(numBlocks == 0)
+            return new View(buffer, 0, firstDays, offsets, end, NONE, 0, 0);
+        int offset = offsets[numBlocks - 1];
+        int count = buffer.getShort(offset + 12) & 0xffff;
+        int day = buffer.getInt(offset);
+        long ticks = buffer.getLong(offset + 4);
+        ByteBuffer in = buffer.duplicate();
+        in.position(offset + BLOCK_HEADER);
+        for(int i = 1; i < count; i++){
+            day += (int) VarInts.read(in);
+            ticks += VarInts.unzigzag(VarInts.read(in));
+        }
+        return new View(buffer, numBlocks, firstDays, offsets, end, day, ticks, count);
+    }
+
+    //Index of the last block starting on or before the day, or -1 if there is none
+    private static int blockFor(View v, int day){
+        int found = Arrays.binarySearch(v.firstDays, 0, v.numBlocks, day);
+        return found >= 0 ? found : -found - 2;
+    }
+
+    private static void decodeBlock(View v, int block, int[] days, long[] ticks){
+        int offset = v.offsets[block];
+        int count = v.buffer.getShort(offset + 12) & 0xffff;
+        ByteBuffer in = v.buffer.duplicate();
+        in.position(offset + BLOCK_HEADER);
+        days[0] = v.buffer.getInt(offset);
+        ticks[0] = v.buffer.getLong(offset + 4);
+        for(int i = 1; i < count; i++){
+            days[i] = days[i - 1] + (int) VarInts.read(in);
+            ticks[i] = ticks[i - 1] + VarInts.unzigzag(VarInts.read(in));
+        }
+    }
+
+    private static void encodeBlock(ByteBuffer out, CRC32 crc, int[] days, long[] ticks, int first, int last){
+        int start = out.position();
+        out.putInt(days[first]).putLong(ticks[first]).putShort((short) (last - first)).putShort((short) 0).putInt(0);
+        for(int i = first + 1; i < last; i++){
+            VarInts.write(out, days[i] - days[i - 1]);
+            VarInts.write(out, VarInts.zigzag(ticks[i] - ticks[i - 1]));
+        }
+        int length = out.position() - start - BLOCK_HEADER;
+        out.putShort(start + 14, (short) length);
+        out.putInt(start + 16, checksum(crc, out, start, length));
+    }
+
+    //Largest number of bytes the points can take once encoded
+    private static int encodedBound(int numPoints){
+        int numBlocks = (numPoints + BLOCK_POINTS - 1) / BLOCK_POINTS;
+        return numBlocks * BLOCK_HEADER + numPoints * 2 * 10;
+    }
+
+    //Covers the block header up to the checksum and the payload
+    private static int checksum(CRC32 crc, ByteBuffer buffer, int offset, int length){
+        crc.reset();
+        ByteBuffer block = buffer.duplicate();
+        block.position(offset).limit(offset + 16);
+        crc.update(block);
+        block.limit(offset + BLOCK_HEADER + length).position(offset + BLOCK_HEADER);
+        crc.update(block);
+        return (int) crc.getValue();
+    }
+}
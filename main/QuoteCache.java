@@ -0,0 +1,96 @@
+package main;
+
+import java.util.*;
+import java.io.*;
+
+//Remembers fetched prices until they expire so they are not requested again
+//Once full the least recently used quote is dropped; the whole cache can be saved to survive a restart
+class QuoteCache {
+    private final long ttlMillis;
+    private final LinkedHashMap<String, Quote> quotes;
+
+    //A price and when it was fetched
+    private static class Quote {
+        final float price;
+        final long fetched;
+
+        Quote(float price, long fetched){
+            this.price = price;
+            this.fetched = fetched;
+        }
+    }
+
+    QuoteCache(long ttlMillis, int maxEntries){
+        this.ttlMillis = ttlMillis;
+        quotes = new LinkedHashMap<String, Quote>(32, 0.75f, true){ //Access order, the eldest is the least recently used
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Quote> eldest){
+                return size() > maxEntries;
+            }
+        };
+    }
+
+    //Returns the cached price or null if there is none or it has expired
+    synchronized Float get(String key){
+        Quote quote = quotes.get(key);
+        if(quote == null)
+            return null;
+        if(isExpired(quote, System.currentTimeMillis())){
+            quotes.remove(key);
+            return null;
+        }
+        return quote.price;
+    }
+
+    synchronized boolean contains(String key){
+        return get(key) != null;
+    }
+
+    synchronized void put(String key, float price){
+        quotes.put(key, new Quote(price, System.currentTimeMillis()));
+    }
+
+    synchronized void clear(){
+        quotes.clear();
+    }
+
+    private boolean isExpired(Quote quote, long now){
+        return now - quote.fetched >= ttlMillis;
+    }
+
+    //Loads the quotes saved by a previous run, skipping the ones that have since expired
+    synchronized void read(String fname){
+        long now = System.currentTimeMillis();
+        try(BufferedReader br = new BufferedReader(new FileReader(fname))){
+            String line;
+            while((line = br.readLine()) != null){
+                try{
+                    String[] splitLine = line.split(",");
+                    Quote quote = new Quote(Float.parseFloat(splitLine[1]), Long.parseLong(splitLine[2]));
+                    if(!isExpired(quote, now))
+                        quotes.put(splitLine[0], quote);
+                } catch(Exception unused){
+                    //Bad line, that quote is simply fetched again
+                }
+            }
+        } catch(IOException unused){
+            //No saved quotes, everything is fetched again
+        }
+    }
+
+    //One line per quote: key, price, time fetched in milliseconds since the epoch
+    synchronized void write(String fname){
+        long now = System.currentTimeMillis();
+        try(BufferedWriter bw = new BufferedWriter(new FileWriter(fname))){
+            for(Map.Entry<String, Quote> i : quotes.entrySet()){
+                Quote quote = i.getValue();
+                if(isExpired(quote, now))
+                    continue;
+                bw.write(String.join(",", i.getKey(), Float.toString(quote.price), Long.toString(quote.fetched)));
+                bw.newLine();
+            }
+        } catch(IOException unused){
+            //Not worth bothering the user over, the quotes will be fetched again
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package main;
+
+//Explains why a price or exchange rate could not be obtained
+class QuoteException extends Exception {
+
+    enum Reason {
+        NETWORK, //Could not talk to the provider at all
+        PROVIDER, //The provider answered with an error instead of data, e.g. a bad key or an exhausted quota
+        NO_DATA, //The response held no row for the request, usually an unknown ticker
+        MISSING_FIELD, //The expected column or key is absent, the format probably changed
+        BAD_NUMBER, //The field is present but is not a number
+        INTERRUPTED, //Cancelled before the request was made
+        STORAGE //The data arrived but could not be saved
+    }
+
+    private final Reason reason;
+
+    QuoteException(Reason reason, String detail){
+        super(detail);
+        this.reason = reason;
+    }
+
+    QuoteException(Reason reason, String detail, Throwable cause){
+        super(detail, cause);
+        this.reason = reason;
+    }
+
+    Reason getReason(){
+        return reason;
+    }
+}
@@ -0,0 +1,339 @@
+package main;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.IntConsumer;
+import java.io.*;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+
+
+//Fetches prices, exchange rates and price history from the provider
+//Tickers are fetched concurrently; this never touches the UI, so it serves the window and the command line alike
+class QuoteFetcher {
+
+    //Where the quotes come from, can be pointed at a local server
+    private static String baseUrl = System.getProperty("stocks.baseUrl", "https://www.alphavantage.co/query");
+
+    //Number of tickers fetched at the same time
+    private static int maxThreads = Integer.getInteger("stocks.threads", 4);
+
+    //Most tickers requested in one bulk quote, 0 disables bulk requests
+    //Off unless asked for, as the provider's current plans answer bulk quotes with an explanation instead of prices
+    private static int batchSize = Integer.getInteger("stocks.batchSize", 0);
+
+    //Set once the provider answers a bulk quote with an explanation or without prices, after which every ticker is
+    //requested on its own until the program is restarted
+    private static volatile boolean bulkUnsupported = false;
+
+    //Keeps us under the provider's quota, shared by every request
+    private static RateLimiter limiter = new RateLimiter(Integer.getInteger("stocks.requestsPerMinute", 75), Integer.getInteger("stocks.requestBurst", 5));
+
+    //Cache tickers and the exchange rate so we don't search for them again until they expire
+    private static QuoteCache cachedPrices = new QuoteCache(Long.getLong("stocks.quoteTtlMinutes", 15) * 60_000, Integer.getInteger("stocks.quoteCacheSize", 10_000));
+
+    //Whether to also bring each ticker's daily price history up to date, which costs a request per ticker each day
+    private static boolean fetchHistory = Boolean.getBoolean("stocks.history");
+
+    //Day each ticker's history was last asked for, since the last saved close can stay behind all day, e.g. on a holiday
+    //Kept apart from the price cache so it neither expires with prices nor takes their room
+    private static final ConcurrentHashMap<String, Integer> historyChecked = new ConcurrentHashMap<>();
+
+    //Private constructor; this class cannot be instantiated and is purely static
+    private QuoteFetcher() {}
+
+    //Updates the prices of every entry and returns a list containing tickers that had issues
+    //The number of entries newly completed is passed to progress as they finish, from any thread, adding up to every entry
+    //including the ones that are not automatically priced
+    //This blocks on the network so it must not be called from the EDT
+    static ArrayList<String> refreshAll(IntConsumer progress) throws InterruptedException {
+        List<String> failedEntries = Collections.synchronizedList(new ArrayList<>());
+        int numEntries = Db.getNumEntries();
+
+        //Already off the EDT, a good time to bring the exchange rate up to date too
+        Db.refreshRates();
+
+        //Group the entries so each ticker is only requested once
+        Map<String, List<Integer>> byTicker = Db.autoPricedByTicker();
+        int manualEntries = numEntries;
+        for(List<Integer> i : byTicker.values()){
+            manualEntries -= i.size();
+        }
+        progress.accept(manualEntries);
+
+        ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, Math.min(maxThreads, byTicker.size())));
+        try{
+            //Fill the cache with as many bulk requests as possible first, the single requests below then mostly hit the cache
+            List<String> uncached = new ArrayList<>();
+            for(String i : byTicker.keySet()){
+                if(!cachedPrices.contains(i))
+                    uncached.add(i);
+            }
+            List<Future<?>> batches = new ArrayList<>();
+            for(int i = 0; batchSize > 0 && !bulkUnsupported && i < uncached.size(); i += batchSize){
+                List<String> batch = uncached.subList(i, Math.min(i + batchSize, uncached.size()));
+                batches.add(pool.submit(() -> updatePrices(batch)));
+            }
+            waitFor(batches);
+
+            List<Future<?>> pending = new ArrayList<>(byTicker.size());
+            for(Map.Entry<String, List<Integer>> i : byTicker.entrySet()){
+                pending.add(pool.submit(() -> {
+                    String ticker = i.getKey();
+                    try{
+                        float price = updatePrice(ticker);
+                        for(int id : i.getValue())
+                            Db.setPrice(id, price);
+                    } catch(QuoteException e){
+                        failedEntries.add(ticker + " (" + e.getMessage() + ")");
+                    }
+                    if(fetchHistory){
+                        try{
+                            updateHistory(ticker);
+                        } catch(QuoteException e){
+                            failedEntries.add(ticker + " history (" + e.getMessage() + ")");
+                        }
+                    }
+                    progress.accept(i.getValue().size());
+                }));
+            }
+            waitFor(pending);
+        } finally{
+            pool.shutdownNow();
+            Db.syncJournal(); //One disk flush for every price set, even if the refresh was interrupted
+        }
+
+        //Only a refresh that ran to the end is recorded, an interrupted one has thrown by now
+        Db.recordSnapshot();
+
+        return new ArrayList<>(failedEntries);
+    }
+
+    private static void waitFor(List<Future<?>> tasks) throws InterruptedException {
+        for(Future<?> i : tasks){
+            try{
+                i.get();
+            } catch(ExecutionException unused){
+                //The task only fails if something unexpected happened, its tickers are simply left alone
+            }
+        }
+    }
+
+    //Opens a request to the provider once the limiter allows it
+    private static QuoteParser request(String query) throws QuoteException {
+        try{
+            limiter.acquire();
+        } catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+            throw new QuoteException(QuoteException.Reason.INTERRUPTED, "The request was cancelled", e);
+        }
+
+        try{
+            //Almost all of these lines can fail
+            URI uri = URI.create(baseUrl + "?" + query + "&apikey=" + Db.getApiKey());
+            URLConnection uc = uri.toURL().openConnection();
+            return new QuoteParser(new InputStreamReader(uc.getInputStream(), StandardCharsets.UTF_8));
+        } catch(Exception e){ //Could be no internet, a malformed key, or any number of other things
+            throw new QuoteException(QuoteException.Reason.NETWORK, "Could not reach the provider", e);
+        }
+    }
+
+    //Tickers go into the query as they are typed, so anything with a meaning there, such as & or +, must be escaped
+    private static String encode(String ticker){
+        return URLEncoder.encode(ticker, StandardCharsets.UTF_8);
+    }
+
+    //Returns the price, only asking the provider if it isn't cached
+    public static float updatePrice(String ticker) throws QuoteException {
+        Float cached = cachedPrices.get(ticker);
+        if(cached != null)
+            return cached;
+
+        try(QuoteParser in = request("function=GLOBAL_QUOTE&symbol=" + encode(ticker) + "&datatype=csv")){
+            in.readHeader();
+            int priceColumn = in.column("price");
+            if(!in.nextRow())
+                throw new QuoteException(QuoteException.Reason.NO_DATA, "No quote was returned");
+
+            float price = in.getFloat(priceColumn);
+            cachedPrices.put(ticker, price);
+            return price;
+        } catch(IOException e){
+            throw new QuoteException(QuoteException.Reason.NETWORK, "The connection failed while reading", e);
+        }
+    }
+
+    //Requests all of the tickers at once and caches every price found
+    //Returns the number of prices found; tickers the bulk endpoint doesn't know are left for updatePrice
+    public static int updatePrices(List<String> tickers){
+        int found = 0;
+        if(bulkUnsupported) //Found out by an earlier batch, possibly of this same refresh
+            return found;
+
+        StringJoiner symbols = new StringJoiner(",");
+        for(String i : tickers){
+            symbols.add(encode(i));
+        }
+        try(QuoteParser in = request("function=BATCH_STOCK_QUOTES&symbols=" + symbols + "&datatype=csv")){
+            //One row per ticker
+            in.readHeader();
+            int symbolColumn = in.column("symbol");
+            int priceColumn = in.column("price");
+            while(in.nextRow()){
+                try{
+                    cachedPrices.put(in.getString(symbolColumn), in.getFloat(priceColumn));
+                    found++;
+                } catch(QuoteException unused){ //Skip the row, the ticker falls back to a single request
+                }
+            }
+        } catch(QuoteException e){ //Bulk request unavailable, every ticker falls back to a single request
+            if(e.getReason() == QuoteException.Reason.PROVIDER || e.getReason() == QuoteException.Reason.MISSING_FIELD)
+                bulkUnsupported = true; //An answer, just not prices, so asking again won't help; a network failure might
+        } catch(IOException unused){ //Every ticker falls back to a single request
+        }
+        return found;
+    }
+
+    //Fetches the closing prices the ticker's history is missing since its last day and appends them
+    //Returns the number of days added
+    public static int updateHistory(String ticker) throws QuoteException {
+        int today = (int) LocalDate.now().toEpochDay();
+        if(historyChecked.getOrDefault(ticker, PriceSeries.NONE) == today) //Already asked today, even if nothing was new
+            return 0;
+
+        PriceSeries series;
+        try{
+            series = Db.getHistory().get(ticker);
+        } catch(IOException e){
+            throw new QuoteException(QuoteException.Reason.STORAGE, "Could not open the price history", e);
+        }
+        int lastDay = series.lastDay();
+        if(!PriceSeries.isBehind(lastDay, today))
+            return 0;
+
+        //The compact response holds the last 100 trading days, which covers any gap of up to about 140 days
+        String size = lastDay != PriceSeries.NONE && today - lastDay < 140 ? "compact" : "full";
+        try(QuoteParser in = request("function=TIME_SERIES_DAILY&symbol=" + encode(ticker) + "&outputsize=" + size + "&datatype=csv")){
+            in.readHeader();
+            int dayColumn = in.column("timestamp");
+            int closeColumn = in.column("close");
+            int[] days = new int[128];
+            long[] ticks = new long[128];
+            int numPoints = 0;
+            while(in.nextRow()){
+                int day = in.getEpochDay(dayColumn);
+                if(lastDay != PriceSeries.NONE && day <= lastDay)
+                    continue;
+                if(numPoints == days.length){
+                    days = Arrays.copyOf(days, numPoints * 2);
+                    ticks = Arrays.copyOf(ticks, numPoints * 2);
+                }
+                days[numPoints] = day;
+                ticks[numPoints] = Math.round(in.getDouble(closeColumn) * PriceSeries.TICKS);
+                numPoints++;
+            }
+            numPoints = sortByDay(days, ticks, numPoints);
+
+            int added = series.append(days, ticks, numPoints);
+            historyChecked.put(ticker, today);
+            return added;
+        } catch(IOException e){
+            throw new QuoteException(QuoteException.Reason.STORAGE, "Could not save the price history", e);
+        }
+    }
+
+    //The provider lists the newest day first, so reverse and then fix up anything still out of place
+    //Returns the number of points left once any repeated day is dropped
+    private static int sortByDay(int[] days, long[] ticks, int length){
+        for(int i = 0, j = length - 1; i < j; i++, j--){
+            int day = days[i];
+            days[i] = days[j];
+            days[j] = day;
+            long tick = ticks[i];
+            ticks[i] = ticks[j];
+            ticks[j] = tick;
+        }
+        for(int i = 1; i < length; i++){
+            int day = days[i];
+            long tick = ticks[i];
+            int j = i - 1;
+            for(; j >= 0 && days[j] > day; j--){
+                days[j + 1] = days[j];
+                ticks[j + 1] = ticks[j];
+            }
+            days[j + 1] = day;
+            ticks[j + 1] = tick;
+        }
+        int kept = Math.min(length, 1);
+        for(int i = 1; i < length; i++){
+            if(days[i] == days[kept - 1])
+                continue;
+            days[kept] = days[i];
+            ticks[kept] = ticks[i];
+            kept++;
+        }
+        return kept;
+    }
+
+    //Returns the rate from the base currency, only asking the provider if it isn't cached
+    public static float updateRate(Currency to) throws QuoteException {
+        String rateKey = Currency.BASE + "/" + to; //Never a valid ticker
+        Float cached = cachedPrices.get(rateKey);
+        if (cached != null)
+            return cached;
+
+        try(QuoteParser in = request("function=CURRENCY_EXCHANGE_RATE&from_currency=" + Currency.BASE + "&to_currency=" + to)){
+            float rate = in.findFloat("Exchange Rate");
+            cachedPrices.put(rateKey, rate);
+            return rate;
+        } catch(IOException e){
+            throw new QuoteException(QuoteException.Reason.NETWORK, "The connection failed while reading", e);
+        }
+    }
+
+    //Fetches the rate from the base currency to every other currency together, indexed by ordinal
+    //Only one rate per currency is needed since cross rates are derived through the base
+    //Returns the number of rates found; rates that could not be fetched are left alone
+    public static int updateRates(float[] baseRates){
+        int found = 0;
+        for(Currency i : Currency.values()){
+            if(i == Currency.BASE)
+                continue;
+            try{
+                float rate = updateRate(i);
+                if(!RateSnapshot.isValid(rate)) //Keep the previous rate rather than one nothing can be converted with
+                    continue;
+                baseRates[i.ordinal()] = rate;
+                found++;
+            } catch(QuoteException unused){ //Keep the previous rate for this currency
+            }
+        }
+        return found;
+    }
+
+    static void readCache(String fname){
+        cachedPrices.read(fname);
+    }
+
+    static void writeCache(String fname){
+        cachedPrices.write(fname);
+    }
+
+    static void setBaseUrl(String url){
+        baseUrl = url;
+    }
+
+    static void setFetchHistory(boolean fetch){
+        fetchHistory = fetch;
+    }
+
+    static void setMaxThreads(int threads){
+        maxThreads = Math.max(threads, 1);
+    }
+
+    static void setRequestLimit(int requestsPerMinute, int burst){
+        limiter = new RateLimiter(requestsPerMinute, burst);
+    }
+
+}
@@ -0,0 +1,392 @@
+package main;
+
+import java.io.*;
+import java.util.*;
+
+//Streams CSV and JSON quote responses, locating fields by name rather than by position
+//Characters are read into buffers that are reused for every row and numbers are parsed straight from them
+class QuoteParser implements Closeable {
+    private static final double[] POWERS_OF_TEN = {1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+
+    //Keys the provider uses to explain why there is no data
+    private static final String[] PROVIDER_KEYS = {"Error Message", "Note", "Information"};
+
+    private final Reader in;
+    private final char[] readBuf = new char[4096];
+    private int readPos;
+    private int readLimit;
+
+    //The current CSV row with the bounds of each field, or the current JSON token
+    private char[] field = new char[256];
+    private int fieldLen;
+    private int[] starts = new int[16];
+    private int[] ends = new int[16];
+    private int numFields;
+
+    private String[] header;
+    private String providerMessage;
+
+    QuoteParser(Reader in){
+        this.in = in;
+    }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+
+    //CSV
+
+    //Reads the column names, which must be the first line of the response
+    void readHeader() throws IOException, QuoteException {
+        skipWhitespace();
+        if(peek() == '{') //Errors come back as JSON even when CSV is requested
+            throw providerError();
+        if(!readRow())
+            throw new QuoteException(QuoteException.Reason.NO_DATA, "The response was empty");
+
+        header = new String[numFields];
+        for(int i = 0; i < numFields; i++){
+            header[i] = new String(field, starts[i], ends[i] - starts[i]).trim();
+        }
+    }
+
+    //Returns the index of the named column
+    int column(String name) throws QuoteException {
+        for(int i = 0; i < header.length; i++){
+            if(header[i].equalsIgnoreCase(name))
+                return i;
+        }
+        throw new QuoteException(QuoteException.Reason.MISSING_FIELD, "The response has no " + name + " column");
+    }
+
+    //Advances to the next row, returns false once there are none left
+    boolean nextRow() throws IOException {
+        return readRow();
+    }
+
+    float getFloat(int column) throws QuoteException {
+        checkColumn(column);
+        return parseFloat(field, starts[column], ends[column]);
+    }
+
+    double getDouble(int column) throws QuoteException {
+        checkColumn(column);
+        return parseDouble(field, starts[column], ends[column]);
+    }
+
+    //Reads a date such as 2024-01-31 as days since the epoch
+    int getEpochDay(int column) throws QuoteException {
+        checkColumn(column);
+        return parseEpochDay(field, starts[column], ends[column]);
+    }
+
+    String getString(int column) throws QuoteException {
+        checkColumn(column);
+        return new String(field, starts[column], ends[column] - starts[column]).trim();
+    }
+
+    private void checkColumn(int column) throws QuoteException {
+        if(column >= numFields)
+            throw new QuoteException(QuoteException.Reason.MISSING_FIELD, "A row has only " + numFields + " fields");
+    }
+
+    //Reads the next non-blank line into the row buffer, returns false at the end
+    private boolean readRow() throws IOException {
+        do{
+            fieldLen = 0;
+            numFields = 0;
+            if(peek() == -1)
+                return false;
+
+            int start = 0;
+            boolean quoted = false;
+            int c;
+            while((c = next()) != -1){
+                if(quoted){
+                    if(c != '"')
+                        append((char) c);
+                    else if(peek() == '"') //Escaped quote
+                        append((char) next());
+                    else
+                        quoted = false;
+                }
+                else if(c == '"')
+                    quoted = true;
+                else if(c == ','){
+                    endField(start);
+                    start = fieldLen;
+                }
+                else if(c == '\n')
+                    break;
+                else if(c != '\r')
+                    append((char) c);
+            }
+            endField(start);
+        } while(numFields == 1 && fieldLen == 0);
+        return true;
+    }
+
+    private void endField(int start){
+        if(numFields == starts.length){
+            starts = Arrays.copyOf(starts, numFields * 2);
+            ends = Arrays.copyOf(ends, numFields * 2);
+        }
+        starts[numFields] = start;
+        ends[numFields] = fieldLen;
+        numFields++;
+    }
+
+    //JSON
+
+    //Scans forward to the given key and parses its value, which may be a number or a quoted number
+    //Keys are matched ignoring the numbered prefix the provider adds, so "Exchange Rate" matches "5. Exchange Rate"
+    float findFloat(String key) throws IOException, QuoteException {
+        if(!scanTo(key))
+            throw providerMessage != null ? providerError() : new QuoteException(QuoteException.Reason.MISSING_FIELD, "The response has no " + key);
+        return parseFloat(field, 0, fieldLen);
+    }
+
+    //Leaves the value of the key in the token buffer, or returns false if the key never appears
+    //Any explanation from the provider seen along the way is remembered
+    private boolean scanTo(String key) throws IOException {
+        int c;
+        while((c = next()) != -1){
+            if(c != '"')
+                continue;
+            readString();
+            skipWhitespace();
+            if(peek() != ':') //A value rather than a key
+                continue;
+            next();
+            boolean wanted = key != null && keyMatches(key);
+            boolean provider = false;
+            for(String i : PROVIDER_KEYS){
+                provider |= keyMatches(i);
+            }
+            if(!wanted && !provider)
+                continue;
+
+            skipWhitespace();
+            if(peek() == '"'){
+                next();
+                readString();
+            }
+            else
+                readBareValue();
+
+            if(wanted)
+                return true;
+            providerMessage = new String(field, 0, fieldLen);
+        }
+        return false;
+    }
+
+    //The response is an explanation rather than data
+    private QuoteException providerError() throws IOException {
+        if(providerMessage == null)
+            scanTo(null);
+        return new QuoteException(QuoteException.Reason.PROVIDER, providerMessage != null ? "The provider replied: " + providerMessage : "The provider sent an unexpected response");
+    }
+
+    //Reads the rest of a quoted string into the token buffer, the opening quote has already been consumed
+    private void readString() throws IOException {
+        fieldLen = 0;
+        int c;
+        while((c = next()) != -1 && c != '"'){
+            if(c == '\\')
+                c = next();
+            if(c != -1)
+                append((char) c);
+        }
+    }
+
+    //Reads an unquoted value such as a number into the token buffer
+    private void readBareValue() throws IOException {
+        fieldLen = 0;
+        int c;
+        while((c = peek()) != -1 && c != ',' && c != '}' && c != ']' && !Character.isWhitespace(c)){
+            append((char) next());
+        }
+    }
+
+    private boolean keyMatches(String key){
+        //Skip a prefix like "5. "
+        int i = 0;
+        while(i < fieldLen && field[i] >= '0' && field[i] <= '9')
+            i++;
+        if(i > 0 && i < fieldLen && field[i] == '.'){
+            i++;
+            while(i < fieldLen && field[i] == ' ')
+                i++;
+        }
+        else
+            i = 0;
+
+        if(fieldLen - i != key.length())
+            return false;
+        for(int j = 0; j < key.length(); j++){
+            if(Character.toLowerCase(field[i + j]) != Character.toLowerCase(key.charAt(j)))
+                return false;
+        }
+        return true;
+    }
+
+    //Reading
+
+    //Returns the next character without consuming it, or -1 at the end
+    private int peek() throws IOException {
+        if(readPos == readLimit){
+            readLimit = Math.max(in.read(readBuf, 0, readBuf.length), 0);
+            readPos = 0;
+            if(readLimit == 0)
+                return -1;
+        }
+        return readBuf[readPos];
+    }
+
+    private int next() throws IOException {
+        int c = peek();
+        if(c != -1)
+            readPos++;
+        return c;
+    }
+
+    private void skipWhitespace() throws IOException {
+        int c;
+        while((c = peek()) != -1 && Character.isWhitespace(c))
+            next();
+    }
+
+    private void append(char c){
+        if(fieldLen == field.length)
+            field = Arrays.copyOf(field, fieldLen * 2);
+        field[fieldLen++] = c;
+    }
+
+    static float parseFloat(char[] b, int start, int end) throws QuoteException {
+        return (float) parseDouble(b, start, end);
+    }
+
+    //Parses a decimal number such as -12.5 or 1.2e3 from the buffer without creating a String
+    static double parseDouble(char[] b, int start, int end) throws QuoteException {
+        int i = start;
+        while(i < end && b[i] == ' ')
+            i++;
+        while(end > i && b[end - 1] == ' ')
+            end--;
+
+        boolean negative = false;
+        if(i < end && (b[i] == '-' || b[i] == '+')){
+            negative = b[i] == '-';
+            i++;
+        }
+
+        //Up to 18 significant digits fit in the mantissa, the rest only move the exponent
+        long mantissa = 0;
+        int exponent = 0;
+        int digits = 0;
+        boolean seenDigit = false;
+        boolean seenPoint = false;
+        for(; i < end; i++){
+            char c = b[i];
+            if(c >= '0' && c <= '9'){
+                seenDigit = true;
+                if(digits < 18){
+                    mantissa = mantissa * 10 + (c - '0');
+                    if(mantissa != 0)
+                        digits++;
+                    if(seenPoint)
+                        exponent--;
+                }
+                else if(!seenPoint)
+                    exponent++;
+            }
+            else if(c == '.' && !seenPoint)
+                seenPoint = true;
+            else
+                break;
+        }
+
+        if(seenDigit && i < end && (b[i] == 'e' || b[i] == 'E')){
+            i++;
+            boolean negativeExponent = false;
+            if(i < end && (b[i] == '-' || b[i] == '+')){
+                negativeExponent = b[i] == '-';
+                i++;
+            }
+            int written = 0;
+            int startDigits = i;
+            for(; i < end && b[i] >= '0' && b[i] <= '9'; i++){
+                written = Math.min(written * 10 + (b[i] - '0'), 1000);
+            }
+            if(i == startDigits)
+                seenDigit = false;
+            exponent += negativeExponent ? -written : written;
+        }
+
+        if(!seenDigit || i != end)
+            throw new QuoteException(QuoteException.Reason.BAD_NUMBER, "Could not read \"" + new String(b, start, end - start) + "\" as a number");
+
+        double value = mantissa;
+        if(exponent < 0)
+            value = -exponent < POWERS_OF_TEN.length ? value / POWERS_OF_TEN[-exponent] : value / Math.pow(10, -exponent);
+        else if(exponent > 0)
+            value = exponent < POWERS_OF_TEN.length ? value * POWERS_OF_TEN[exponent] : value * Math.pow(10, exponent);
+        return negative ? -value : value;
+    }
+
+    private static int daysInMonth(int year, int month){
+        if(month == 2)
+            return year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28;
+        return month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+    }
+
+    //Days since 1970-01-01 of a valid date, counted in 400 year eras that start on the 1st of March, so the leap day is
+    //always the last day of its year
+    private static int epochDay(int year, int month, int day){
+        int y = month <= 2 ? year - 1 : year;
+        int era = Math.floorDiv(y, 400);
+        int yearOfEra = y - era * 400;
+        int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    //Parses a year-month-day date from the buffer without creating a String or any other object
+    static int parseEpochDay(char[] b, int start, int end) throws QuoteException {
+        int i = start;
+        while(i < end && b[i] == ' ')
+            i++;
+        while(end > i && b[end - 1] == ' ')
+            end--;
+
+        //The provider always sends four digit years, which also keeps the arithmetic below well inside an int
+        int year = 0;
+        int month = 0;
+        int day = 0;
+        int part = 0;
+        int digits = 0;
+        for(; i < end && part < 3; i++){
+            char c = b[i];
+            if(c >= '0' && c <= '9' && digits < (part == 0 ? 4 : 2)){
+                if(part == 0)
+                    year = year * 10 + (c - '0');
+                else if(part == 1)
+                    month = month * 10 + (c - '0');
+                else
+                    day = day * 10 + (c - '0');
+                digits++;
+            }
+            else if(c == '-' && digits > 0 && part < 2){
+                part++;
+                digits = 0;
+            }
+            else
+                break;
+        }
+        if(i == end && part == 2 && digits > 0 && month >= 1 && month <= 12 && day >= 1 && day <= daysInMonth(year, month))
+            return epochDay(year, month, day);
+        throw new QuoteException(QuoteException.Reason.BAD_NUMBER, "Could not read \"" + new String(b, start, end - start) + "\" as a date");
+    }
+}
@@ -0,0 +1,42 @@
+package main;
+
+import java.util.concurrent.TimeUnit;
+
+//Token bucket used to keep remote requests under the provider's quota
+//Tokens refill continuously; a caller that finds the bucket empty reserves the next token and sleeps until it arrives
+//At most burst + requestsPerMinute requests are made in any minute
+class RateLimiter {
+    private final int requestsPerMinute;
+    private final int burst;
+    private final long nanosPerToken;
+    private double tokens;
+    private long lastRefill;
+
+    //A non-positive rate disables limiting
+    RateLimiter(int requestsPerMinute, int burst){
+        this.requestsPerMinute = Math.max(requestsPerMinute, 0);
+        this.burst = Math.max(burst, 1);
+        nanosPerToken = this.requestsPerMinute > 0 ? TimeUnit.MINUTES.toNanos(1) / this.requestsPerMinute : 0;
+        tokens = this.burst;
+        lastRefill = System.nanoTime();
+    }
+
+    //Blocks until a request may be made
+    void acquire() throws InterruptedException {
+        if(requestsPerMinute == 0)
+            return;
+
+        long waitNanos;
+        synchronized(this){
+            long now = System.nanoTime();
+            tokens = Math.min(burst, tokens + (double) (now - lastRefill) / nanosPerToken);
+            lastRefill = now;
+
+            tokens -= 1; //May go negative, which reserves a future token
+            waitNanos = tokens >= 0 ? 0 : (long) (-tokens * nanosPerToken);
+        }
+
+        if(waitNanos > 0)
+            TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+}
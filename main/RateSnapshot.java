@@ -0,0 +1,62 @@
+package main;
+
+import java.time.*;
+
+//Exchange rates frozen at the moment they were resolved, so converting with them never touches the network
+//Only the rate from the base currency to each currency is known, every other pair is a cross rate through the base
+class RateSnapshot {
+    private final int numCurrencies;
+    private final float[] baseRates; //Units of each currency per unit of the base currency, indexed by ordinal
+    private final float[] matrix; //matrix[from * numCurrencies + to] converts from into to
+    private final LocalDateTime resolved;
+
+    //A rate that isn't usable, e.g. from a damaged file, is taken as 1 rather than spreading NaN through every total
+    RateSnapshot(float[] baseRates){
+        numCurrencies = Currency.values().length;
+        this.baseRates = baseRates.clone();
+        this.baseRates[Currency.BASE.ordinal()] = 1f;
+        for(int i = 0; i < numCurrencies; i++){
+            if(!isValid(this.baseRates[i]))
+                this.baseRates[i] = 1f;
+        }
+        this.resolved = LocalDateTime.now();
+
+        matrix = new float[numCurrencies * numCurrencies];
+        for(int from = 0; from < numCurrencies; from++){
+            for(int to = 0; to < numCurrencies; to++){
+                matrix[from * numCurrencies + to] = from == to ? 1f : this.baseRates[to] / this.baseRates[from];
+            }
+        }
+    }
+
+    //Whether the rate can be divided by in a cross rate: positive and finite
+    static boolean isValid(float rate){
+        return rate > 0 && rate < Float.POSITIVE_INFINITY;
+    }
+
+    //Returns the factors converting each currency into the target, indexed by ordinal
+    float[] factorsTo(Currency target){
+        float[] factors = new float[numCurrencies];
+        for(int from = 0; from < numCurrencies; from++){
+            factors[from] = matrix[from * numCurrencies + target.ordinal()];
+        }
+        return factors;
+    }
+
+    float factor(Currency from, Currency to){
+        return matrix[from.ordinal() * numCurrencies + to.ordinal()];
+    }
+
+    //Units of the currency per unit of the base currency
+    float getBaseRate(Currency currency){
+        return baseRates[currency.ordinal()];
+    }
+
+    float[] getBaseRates(){
+        return baseRates.clone();
+    }
+
+    LocalDateTime getResolved(){
+        return resolved;
+    }
+}
@@ -0,0 +1,510 @@
+package main;
+
+import java.util.*;
+import java.util.zip.CRC32;
+import java.io.*;
+import java.nio.*;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.*;
+
+//Value of every entry and every group at the end of each price refresh, so the portfolio can be followed over time
+//The file starts with a magic number and version, then the records
+//Record layout, big endian: body length int, CRC32 of the body int, then the body: time in epoch seconds long, kind byte,
+//new strings, new groups, changed groups, changed entries
+//Times are instants, so they keep increasing when the clocks go back; they are only turned into local times for display
+//Strings and groups (a tag and one of its values) are numbered across the whole log in the order they first appear
+//Values are whole cents in the base currency. A record only holds the groups and entries whose value changed since the
+//record before, as the gap from the last changed id and the change in value, both in as few bytes as they need
+//Every KEYFRAME_INTERVAL-th record holds every value instead, so a query only decodes from the keyframe before its range
+class SnapshotLog implements Closeable {
+    static final int KEYFRAME_INTERVAL = 32;
+
+    private static final byte KEYFRAME = 1;
+    private static final byte DELTA = 2;
+
+    private static final int MAGIC = 0x53544b56; //"STKV"
+    private static final int VERSION = 2; //Version 1 had no file header and held local times read as UTC
+    private static final int FILE_HEADER = 8; //Magic, version
+    private static final int HEADER_SIZE = 8;
+    private static final int BODY_HEADER_SIZE = 9;
+
+    //Totals of each group along one tag, or of single entries, at each snapshot in a range
+    static class History {
+        final Instant[] times;
+        final Map<String, float[]> series; //Values in the base currency, 0 where the group is absent
+
+        History(Instant[] times, Map<String, float[]> series){
+            this.times = times;
+            this.series = series;
+        }
+
+        //Keeps the k series that are largest at the end of the range, largest first, and adds the rest up into one
+        //last series; every value is multiplied by the factor, e.g. to convert from the base currency
+        History largest(int k, float factor){
+            List<Map.Entry<String, float[]>> sorted = new ArrayList<>(series.entrySet());
+            int last = times.length - 1;
+            sorted.sort((a, b) -> last < 0 ? 0 : Float.compare(b.getValue()[last], a.getValue()[last]));
+
+            Map<String, float[]> kept = new LinkedHashMap<>();
+            float[] other = new float[times.length];
+            for(int i = 0; i < sorted.size(); i++){
+                float[] values = sorted.get(i).getValue();
+                float[] target = i < k ? new float[times.length] : other;
+                for(int j = 0; j < values.length; j++){
+                    target[j] += values[j] * factor;
+                }
+                if(i < k)
+                    kept.put(sorted.get(i).getKey(), target);
+            }
+            if(sorted.size() > k)
+                kept.put(GroupSums.other(sorted.size() - k), other);
+            return new History(times, kept);
+        }
+    }
+
+    //Receives the decoded state of every snapshot in a range, values indexed by group id and entry serial
+    private interface Visitor {
+        void visit(int record, long[] groups, int numGroups, long[] entries, int numEntries);
+    }
+
+    private final FileChannel channel;
+
+    //Strings and groups seen in any record
+    private final List<String> strings = new ArrayList<>();
+    private final Map<String, Integer> stringIds = new HashMap<>();
+    private int[] groupTags = new int[64];
+    private int[] groupValues = new int[64];
+    private int numGroups = 0;
+    private final Map<Long, Integer> groupIds = new HashMap<>();
+
+    //Where each record's body starts, when it was taken and how many groups had been seen by then
+    private long[] times = new long[64];
+    private long[] offsets = new long[64];
+    private int[] groupCounts = new int[64];
+    private int numRecords = 0;
+    private long end = 0;
+
+    //Values in the last record, the base for the next one
+    private long[] lastGroups = new long[64];
+    private long[] lastEntries = new long[64];
+    private int lastNumEntries = 0;
+
+    private SnapshotLog(FileChannel channel){
+        this.channel = channel;
+    }
+
+    //Reads the strings and groups from every record and the values from the last keyframe on
+    //Reading stops at the first damaged record; it and anything after it were never completely written, so they are cut off
+    static SnapshotLog open(Path path) throws IOException {
+        if(Files.exists(path) && Files.size(path) > 0 && !hasHeader(path))
+            upgrade(path);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        SnapshotLog log = new SnapshotLog(channel);
+        try{
+            if(channel.size() < FILE_HEADER){
+                ByteBuffer header = ByteBuffer.allocate(FILE_HEADER).putInt(MAGIC).putInt(VERSION);
+                header.flip();
+                channel.write(header, 0);
+                channel.truncate(FILE_HEADER);
+                channel.force(true);
+            }
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if(buf.getInt(0) != MAGIC || buf.getInt(4) != VERSION)
+                throw new IOException(path + " is not a value history this version can read");
+            buf.position(FILE_HEADER);
+            CRC32 crc = new CRC32();
+            int lastKeyframe = -1;
+            int intact = FILE_HEADER;
+            while(buf.remaining() >= HEADER_SIZE){
+                int length = buf.getInt();
+                int checksum = buf.getInt();
+                if(length < BODY_HEADER_SIZE || length > buf.remaining())
+                    break;
+                ByteBuffer body = buf.slice();
+                body.limit(length);
+                crc.reset();
+                crc.update(body.duplicate());
+                if((int) crc.getValue() != checksum)
+                    break;
+
+                long time = body.getLong();
+                if(body.get() == KEYFRAME)
+                    lastKeyframe = log.numRecords;
+                log.readDictionary(body);
+                log.addRecord(time, buf.position());
+                buf.position(buf.position() + length);
+                intact = buf.position();
+            }
+            log.end = intact;
+
+            if(lastKeyframe >= 0){
+                log.decode(buf, lastKeyframe, log.numRecords - 1, (record, groups, numGroups, entries, numEntries) -> {
+                    if(record == log.numRecords - 1){
+                        log.lastGroups = Arrays.copyOf(groups, Math.max(numGroups, 64));
+                        log.lastEntries = Arrays.copyOf(entries, Math.max(numEntries, 64));
+                        log.lastNumEntries = numEntries;
+                    }
+                });
+            }
+
+            channel.truncate(log.end);
+            channel.position(log.end);
+            return log;
+        } catch(IOException | RuntimeException e){
+            channel.close();
+            throw e;
+        }
+    }
+
+    private static boolean hasHeader(Path path) throws IOException {
+        try(DataInputStream in = new DataInputStream(Files.newInputStream(path))){
+            return in.readInt() == MAGIC;
+        } catch(EOFException unused){
+            return false;
+        }
+    }
+
+    //Version 1 files have no header and hold the local time of each record as though it were UTC
+    //They are rewritten once, with each time moved to the instant it named in this machine's time zone; a time repeated
+    //when the clocks went back is kept from going backwards, so the times stay in order
+    private static void upgrade(Path path) throws IOException {
+        ByteBuffer old = ByteBuffer.wrap(Files.readAllBytes(path));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(old.capacity() + FILE_HEADER);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        CRC32 crc = new CRC32();
+        long previous = Long.MIN_VALUE;
+        while(old.remaining() >= HEADER_SIZE){
+            int length = old.getInt();
+            int checksum = old.getInt();
+            if(length < BODY_HEADER_SIZE || length > old.remaining())
+                break;
+            byte[] body = new byte[length];
+            old.get(body);
+            crc.reset();
+            crc.update(body);
+            if((int) crc.getValue() != checksum)
+                break; //Cut off, as open would
+
+            ByteBuffer fields = ByteBuffer.wrap(body);
+            LocalDateTime local = LocalDateTime.ofEpochSecond(fields.getLong(0), 0, ZoneOffset.UTC);
+            previous = Math.max(previous, local.atZone(ZoneId.systemDefault()).toEpochSecond());
+            fields.putLong(0, previous);
+            crc.reset();
+            crc.update(body);
+            out.writeInt(length);
+            out.writeInt((int) crc.getValue());
+            out.write(body);
+        }
+        out.flush();
+        DbFile.writeAtomically(path, bytes.toByteArray());
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        channel.close();
+    }
+
+    synchronized int size(){
+        return numRecords;
+    }
+
+    synchronized long bytes(){
+        return end;
+    }
+
+    //Adds a snapshot; values are in the base currency, entry values are indexed by serial and groups keyed by tag then value
+    //An empty tag holds the totals by ticker
+    //The record is on disk once this returns
+    synchronized void append(Instant time, float[] entryValues, int numEntries, Map<String, Map<String, Float>> groupValues) throws IOException {
+        //Strings and groups seen for the first time are only kept once the record is written
+        List<String> newStrings = new ArrayList<>();
+        Map<String, Integer> newStringIds = new HashMap<>();
+        List<int[]> newGroups = new ArrayList<>();
+        Map<Long, Integer> newGroupIds = new HashMap<>();
+        long[] groups = new long[numGroups + 16];
+        for(Map.Entry<String, Map<String, Float>> i : groupValues.entrySet()){
+            int tag = stringId(i.getKey(), newStrings, newStringIds);
+            for(Map.Entry<String, Float> j : i.getValue().entrySet()){
+                int value = stringId(j.getKey(), newStrings, newStringIds);
+                long key = (long) tag << 32 | value;
+                Integer group = groupIds.get(key);
+                if(group == null){
+                    group = newGroupIds.computeIfAbsent(key, k -> {
+                        newGroups.add(new int[]{tag, value});
+                        return numGroups + newGroups.size() - 1;
+                    });
+                }
+                if(group >= groups.length)
+                    groups = Arrays.copyOf(groups, Math.max(group + 1, groups.length * 2));
+                groups[group] = toCents(j.getValue());
+            }
+        }
+        int totalGroups = numGroups + newGroups.size();
+        long[] entries = new long[Math.max(numEntries, 1)];
+        for(int i = 0; i < numEntries; i++){
+            entries[i] = toCents(entryValues[i]);
+        }
+
+        boolean keyframe = numRecords % KEYFRAME_INTERVAL == 0;
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeLong(0); //Length and checksum
+        out.writeLong(time.getEpochSecond());
+        out.writeByte(keyframe ? KEYFRAME : DELTA);
+        VarInts.write(out, newStrings.size());
+        for(String i : newStrings){
+            byte[] utf = i.getBytes(StandardCharsets.UTF_8);
+            VarInts.write(out, utf.length);
+            out.write(utf);
+        }
+        VarInts.write(out, newGroups.size());
+        for(int[] i : newGroups){
+            VarInts.write(out, i[0]);
+            VarInts.write(out, i[1]);
+        }
+        writeChanges(out, keyframe ? new long[0] : lastGroups, groups, totalGroups);
+        writeChanges(out, keyframe ? new long[0] : lastEntries, entries, Math.max(numEntries, keyframe ? 0 : lastNumEntries));
+
+        byte[] record = bytes.toByteArray();
+        ByteBuffer buf = ByteBuffer.wrap(record);
+        CRC32 crc = new CRC32();
+        crc.update(record, HEADER_SIZE, record.length - HEADER_SIZE);
+        buf.putInt(0, record.length - HEADER_SIZE);
+        buf.putInt(4, (int) crc.getValue());
+        long position = end;
+        while(buf.hasRemaining()){
+            position += channel.write(buf, position);
+        }
+        channel.force(false);
+
+        //Written, so everything it introduced can be kept
+        for(String i : newStrings){
+            stringIds.put(i, strings.size());
+            strings.add(i);
+        }
+        for(int[] i : newGroups){
+            addGroup(i[0], i[1]);
+        }
+        addRecord(time.getEpochSecond(), end + HEADER_SIZE);
+        end = position;
+        lastGroups = groups;
+        lastEntries = entries;
+        lastNumEntries = numEntries;
+    }
+
+    //Totals of each value of the tag at every snapshot taken between the times, both included
+    //An empty tag gives the totals by ticker
+    synchronized History groups(String tag, Instant from, Instant to) throws IOException {
+        return groups(tag, from, to, numRecords);
+    }
+
+    //As above, reading only the first records, as the log was when size() returned that many, so that records added
+    //since neither add times nor groups
+    synchronized History groups(String tag, Instant from, Instant to, int records) throws IOException {
+        records = Math.min(records, numRecords);
+        Integer tagId = stringIds.get(tag);
+        int knownGroups = records == 0 ? 0 : groupCounts[records - 1];
+        int[] column = new int[knownGroups]; //Column of each group of the tag, or -1
+        List<String> names = new ArrayList<>();
+        for(int i = 0; i < knownGroups; i++){
+            column[i] = -1;
+            if(tagId != null && groupTags[i] == tagId){
+                column[i] = names.size();
+                names.add(strings.get(groupValues[i]));
+            }
+        }
+        return collect(from, to, records, names, (record, groups, numGroups, entries, numEntries, row, values) -> {
+            for(int i = 0; i < Math.min(numGroups, column.length); i++){
+                if(column[i] >= 0)
+                    values[column[i]][row] = groups[i] / 100f;
+            }
+        });
+    }
+
+    //Value of each of the entries, given by serial, at every snapshot taken between the times, both included
+    //Keyed by the given names, which should tell the entries apart
+    synchronized History entries(int[] serials, String[] names, Instant from, Instant to) throws IOException {
+        return entries(serials, names, from, to, numRecords);
+    }
+
+    //As above, reading only the first records
+    synchronized History entries(int[] serials, String[] names, Instant from, Instant to, int records) throws IOException {
+        return collect(from, to, Math.min(records, numRecords), Arrays.asList(names), (record, groups, numGroups, entries, numEntries, row, values) -> {
+            for(int i = 0; i < serials.length; i++){
+                if(serials[i] < numEntries)
+                    values[i][row] = entries[serials[i]] / 100f;
+            }
+        });
+    }
+
+    //Fills one row of values from a decoded snapshot
+    private interface Collector {
+        void collect(int record, long[] groups, int numGroups, long[] entries, int numEntries, int row, float[][] values);
+    }
+
+    private History collect(Instant from, Instant to, int records, List<String> names, Collector collector) throws IOException {
+        int first = firstRecordFrom(from.getEpochSecond());
+        int last = Math.min(firstRecordFrom(to.getEpochSecond() + 1), records) - 1;
+        int numRows = Math.max(last - first + 1, 0);
+        Instant[] rowTimes = new Instant[numRows];
+        float[][] values = new float[names.size()][numRows];
+        if(numRows > 0){
+            MappedByteBuffer buf = channel.map(FileChannel.MapMode.READ_ONLY, 0, end);
+            int keyframe = first;
+            while(buf.get((int) offsets[keyframe] + 8) != KEYFRAME) //The first record is always one
+                keyframe--;
+            decode(buf, keyframe, last, (record, groups, numGroups, entries, numEntries) -> {
+                if(record < first)
+                    return;
+                int row = record - first;
+                rowTimes[row] = Instant.ofEpochSecond(times[record]);
+                collector.collect(record, groups, numGroups, entries, numEntries, row, values);
+            });
+        }
+
+        Map<String, float[]> series = new LinkedHashMap<>();
+        for(int i = 0; i < names.size(); i++){
+            series.merge(names.get(i), values[i], (a, b) -> a); //Names are expected to be unique; the first one wins
+        }
+        return new History(rowTimes, series);
+    }
+
+    //Index of the first record taken at or after the time, or numRecords if there is none
+    private int firstRecordFrom(long epochSecond){
+        int found = Arrays.binarySearch(times, 0, numRecords, epochSecond);
+        if(found < 0)
+            return -found - 1;
+        while(found > 0 && times[found - 1] == epochSecond) //Several snapshots in one second
+            found--;
+        return found;
+    }
+
+    //Decodes the records from first to last, both included; first must be a keyframe
+    private void decode(ByteBuffer buf, int first, int last, Visitor visitor){
+        long[] groups = new long[numGroups]; //Groups introduced by later records stay at 0 until then
+        long[] entries = new long[64];
+        int numEntries = 0;
+        for(int record = first; record <= last; record++){
+            ByteBuffer body = buf.duplicate();
+            body.position((int) offsets[record]);
+            body.getLong(); //Time, already indexed
+            if(body.get() == KEYFRAME){
+                Arrays.fill(groups, 0);
+                Arrays.fill(entries, 0);
+                numEntries = 0;
+            }
+            skipDictionary(body);
+            readChanges(body, groups);
+            int changedEntries = (int) VarInts.read(body);
+            int id = -1;
+            for(int i = 0; i < changedEntries; i++){
+                id += 1 + (int) VarInts.read(body);
+                if(id >= entries.length)
+                    entries = Arrays.copyOf(entries, Math.max(id + 1, entries.length * 2));
+                entries[id] += VarInts.unzigzag(VarInts.read(body));
+                numEntries = Math.max(numEntries, id + 1);
+            }
+            visitor.visit(record, groups, numGroups, entries, numEntries);
+        }
+    }
+
+    private void readChanges(ByteBuffer body, long[] values){
+        int changed = (int) VarInts.read(body);
+        int id = -1;
+        for(int i = 0; i < changed; i++){
+            id += 1 + (int) VarInts.read(body);
+            values[id] += VarInts.unzigzag(VarInts.read(body));
+        }
+    }
+
+    //Each changed value as the gap from the last changed id, less one, and the change
+    private static void writeChanges(OutputStream out, long[] before, long[] after, int length) throws IOException {
+        int changed = 0;
+        for(int i = 0; i < length; i++){
+            if(valueAt(before, i) != valueAt(after, i))
+                changed++;
+        }
+        VarInts.write(out, changed);
+        int last = -1;
+        for(int i = 0; i < length; i++){
+            long delta = valueAt(after, i) - valueAt(before, i);
+            if(delta == 0)
+                continue;
+            VarInts.write(out, i - last - 1);
+            VarInts.write(out, VarInts.zigzag(delta));
+            last = i;
+        }
+    }
+
+    private static long valueAt(long[] values, int index){
+        return index < values.length ? values[index] : 0;
+    }
+
+    private void readDictionary(ByteBuffer body){
+        int numStrings = (int) VarInts.read(body);
+        for(int i = 0; i < numStrings; i++){
+            byte[] utf = new byte[(int) VarInts.read(body)];
+            body.get(utf);
+            String string = new String(utf, StandardCharsets.UTF_8);
+            stringIds.put(string, strings.size());
+            strings.add(string);
+        }
+        int newGroups = (int) VarInts.read(body);
+        for(int i = 0; i < newGroups; i++){
+            addGroup((int) VarInts.read(body), (int) VarInts.read(body));
+        }
+    }
+
+    private static void skipDictionary(ByteBuffer body){
+        int numStrings = (int) VarInts.read(body);
+        for(int i = 0; i < numStrings; i++){
+            int length = (int) VarInts.read(body);
+            body.position(body.position() + length);
+        }
+        int newGroups = (int) VarInts.read(body);
+        for(int i = 0; i < 2 * newGroups; i++){
+            VarInts.read(body);
+        }
+    }
+
+    private int stringId(String string, List<String> newStrings, Map<String, Integer> newStringIds){
+        Integer id = stringIds.get(string);
+        if(id != null)
+            return id;
+        return newStringIds.computeIfAbsent(string, k -> {
+            newStrings.add(k);
+            return strings.size() + newStrings.size() - 1;
+        });
+    }
+
+    private void addGroup(int tag, int value){
+        if(numGroups == groupTags.length){
+            groupTags = Arrays.copyOf(groupTags, numGroups * 2);
+            groupValues = Arrays.copyOf(groupValues, numGroups * 2);
+        }
+        groupTags[numGroups] = tag;
+        groupValues[numGroups] = value;
+        groupIds.put((long) tag << 32 | value, numGroups);
+        numGroups++;
+    }
+
+    private void addRecord(long time, long offset){
+        if(numRecords == times.length){
+            times = Arrays.copyOf(times, numRecords * 2);
+            offsets = Arrays.copyOf(offsets, numRecords * 2);
+            groupCounts = Arrays.copyOf(groupCounts, numRecords * 2);
+        }
+        times[numRecords] = time;
+        offsets[numRecords] = offset;
+        groupCounts[numRecords] = numGroups;
+        numRecords++;
+    }
+
+    private static long toCents(float value){
+        return Math.round(value * 100.0);
+    }
+}
@@ -0,0 +1,36 @@
+package main;
+
+import java.util.*;
+
+//Assigns each distinct string a small int id so it is stored once and can be compared as an int
+//Ids are never reused, a string keeps its id for the life of the dictionary
+class StringDictionary {
+    static final int NONE = -1;
+
+    private final Map<String, Integer> ids = new HashMap<>();
+    private final ArrayList<String> strings = new ArrayList<>();
+
+    //Returns the id of the string, assigning one if it is new
+    synchronized int intern(String string){
+        Integer id = ids.get(string);
+        if(id == null){
+            id = strings.size();
+            strings.add(string);
+            ids.put(string, id);
+        }
+        return id;
+    }
+
+    //Returns the id of the string or NONE if it has never been seen
+    synchronized int find(String string){
+        return ids.getOrDefault(string, NONE);
+    }
+
+    synchronized String get(int id){
+        return strings.get(id);
+    }
+
+    synchronized int size(){
+        return strings.size();
+    }
+}
@@ -0,0 +1,11 @@
+package main;
+
+//The dictionaries for tag names and tag values, shared by the entries, the tag manager and the store
+//Tags are handled as ids everywhere else; the strings are only looked up for display and saving
+final class TagDictionary {
+    static final StringDictionary NAMES = new StringDictionary();
+    static final StringDictionary VALUES = new StringDictionary();
+
+    //Private constructor; this class cannot be instantiated and is purely static
+    private TagDictionary() {}
+}
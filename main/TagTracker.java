@@ -4,57 +4,73 @@ import java.util.*;
 
 
 //This class keeps track of the optional tags for all entries
+//It doubles as an inverted index, so filters are answered with bitwise operations instead of scanning the entries
 class TagTracker {
-    private Map<String, Map<String, Integer>> tagCount;
-    //The key is the tag name, the value is a map holding the value and the number of times that value is present
+    private Map<Integer, Map<Integer, BitSet>> tagIndex;
+    //The key is the tag id, the value is a map holding the value id and the ids of the entries with that value
+    //The number of times a value is present is the cardinality of its set
+
+    private static final BitSet NONE = new BitSet();
 
     public TagTracker(){
-        tagCount = new HashMap<>();
+        tagIndex = new HashMap<>();
     }
 
-    //Call to add the set of tags
-    public void addEntry(Set<Map.Entry<String, String>> tags){
-        for(Map.Entry<String, String> i : tags){
-            String tag = i.getKey();
-            String value = i.getValue();
-            
-            if(tagCount.containsKey(tag)){//Update the count for this entry
-                Map<String, Integer> thisTag = tagCount.get(tag);
-                int valueToAdd = thisTag.getOrDefault(value, 0);
-                thisTag.put(value, valueToAdd + 1);
-            }
-            else{//Add a new map for this new key
-                Map<String, Integer> toInsert = new HashMap<>();
-                toInsert.put(value, 1);
-                tagCount.put(tag, toInsert);
+    //Call to add the tags of the entry with the given id
+    //Returns whether a tag or value appeared that no other entry holds
+    public boolean addEntry(int id, Entry entry){
+        boolean changed = false;
+        for(int i = 0; i < entry.getNumTags(); i++){
+            int tag = entry.getTagId(i);
+            int value = entry.getValueId(i);
+
+            Map<Integer, BitSet> thisTag = tagIndex.computeIfAbsent(tag, k -> new HashMap<>());
+            BitSet ids = thisTag.get(value);
+            if(ids == null){
+                ids = new BitSet();
+                thisTag.put(value, ids);
+                changed = true;
             }
+            ids.set(id);
         }
+        return changed;
     };
 
-    //Call to remove the set of tags
-    public void removeEntry(Set<Map.Entry<String, String>> tags){
-        for(Map.Entry<String, String> i : tags){
-            String tag = i.getKey();
-            String value = i.getValue();
-            
-            Map<String, Integer> thisTag = tagCount.get(tag);
-            int count = thisTag.get(value);
-            if(count == 1){//Last instance of this value, remove the whole map
+    //Call to remove the tags of the entry with the given id
+    //Returns whether a tag or value disappeared because no other entry holds it
+    public boolean removeEntry(int id, Entry entry){
+        boolean changed = false;
+        for(int i = 0; i < entry.getNumTags(); i++){
+            int tag = entry.getTagId(i);
+            int value = entry.getValueId(i);
+
+            Map<Integer, BitSet> thisTag = tagIndex.get(tag);
+            BitSet ids = thisTag.get(value);
+            ids.clear(id);
+            if(ids.isEmpty()){//Last instance of this value, remove the whole set
                 thisTag.remove(value);
-            }
-            else{
-                thisTag.put(value, count - 1);
+                changed = true;
             }
             if(thisTag.isEmpty()){//No more entries contain this tag
-                tagCount.remove(tag);
+                tagIndex.remove(tag);
             }
         }
+        return changed;
     };
 
+    //Returns the ids of the entries holding this tag and value, which must not be modified
+    public BitSet entriesWith(int tag, int value){
+        Map<Integer, BitSet> thisTag = tagIndex.get(tag);
+        if(thisTag == null)
+            return NONE;
+        return thisTag.getOrDefault(value, NONE);
+    }
+
     //Returns all of the current values for the given tag
     public String[] getValuesForTag(String tag){
-        if(tagCount.containsKey(tag)){
-            return tagCount.get(tag).keySet().toArray(new String[0]);
+        Map<Integer, BitSet> thisTag = tagIndex.get(TagDictionary.NAMES.find(tag));
+        if(thisTag != null){
+            return toStrings(thisTag.keySet(), TagDictionary.VALUES);
         }
         else{
             return null;
@@ -62,18 +78,15 @@ class TagTracker {
     };
 
     public String[] getTags(){
-        return tagCount.keySet().toArray(new String[0]);
+        return toStrings(tagIndex.keySet(), TagDictionary.NAMES);
     };
 
-    //Returns the largest number of values for any tag
-    public int maxValsForTag(){
-        int max = 0;
-        for(Map<String, Integer> i : tagCount.values()){
-            if(i.size() > max){
-                max = i.size();
-            }
+    private static String[] toStrings(Set<Integer> ids, StringDictionary dictionary){
+        String[] retArray = new String[ids.size()];
+        int i = 0;
+        for(int id : ids){
+            retArray[i++] = dictionary.get(id);
         }
-        return max;
-    };
+        return retArray;
+    }
 }
-
@@ -0,0 +1,46 @@
+package main;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+
+//Numbers written in as few bytes as they need, for files that mostly hold small changes
+//Seven bits per byte, the high bit set on every byte but the last
+class VarInts {
+    //Private constructor; this class cannot be instantiated and is purely static
+    private VarInts() {}
+
+    static void write(ByteBuffer out, long value){
+        while((value & ~0x7fL) != 0){
+            out.put((byte) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    static void write(OutputStream out, long value) throws IOException {
+        while((value & ~0x7fL) != 0){
+            out.write((int) ((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.write((int) value);
+    }
+
+    static long read(ByteBuffer in){
+        long value = 0;
+        for(int shift = 0; ; shift += 7){
+            byte b = in.get();
+            value |= (long) (b & 0x7f) << shift;
+            if(b >= 0)
+                return value;
+        }
+    }
+
+    //Small changes either way become small positive numbers
+    static long zigzag(long value){
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value){
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,86 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+import org.junit.jupiter.api.*;
+
+//A burst of requests is saved once after it settles, but a steady stream can't put a save off past the cap
+//Delays are generous so a busy machine doesn't fail the test
+class AutosaveTest {
+    private final List<Long> saves = Collections.synchronizedList(new ArrayList<>()); //When each save ran, in nanos
+
+    private void save(){
+        saves.add(System.nanoTime());
+    }
+
+    private static void sleep(long millis){
+        try{
+            Thread.sleep(millis);
+        } catch(InterruptedException e){
+            throw new AssertionError(e);
+        }
+    }
+
+    private static long millisBetween(long fromNanos, long toNanos){
+        return TimeUnit.NANOSECONDS.toMillis(toNanos - fromNanos);
+    }
+
+    @Test
+    void burstIsSavedOnceAfterItSettles(){
+        Autosave autosave = new Autosave("Test", this::save, 300, 10_000);
+        long last = 0;
+        for(int i = 0; i < 5; i++){
+            last = System.nanoTime();
+            autosave.request();
+            sleep(50);
+        }
+        assertTrue(saves.isEmpty(), "Saved while requests were still arriving");
+        sleep(1000);
+        assertEquals(1, saves.size());
+        assertTrue(millisBetween(last, saves.get(0)) >= 290, "Saved " + millisBetween(last, saves.get(0)) + "ms after the last request");
+    }
+
+    @Test
+    void steadyRequestsAreSavedByTheCap(){
+        Autosave autosave = new Autosave("Test", this::save, 400, 800);
+        long first = System.nanoTime();
+        long end = first + TimeUnit.MILLISECONDS.toNanos(2000);
+        while(System.nanoTime() < end){
+            autosave.request();
+            sleep(100); //Always sooner than the delay, so only the cap brings a save
+        }
+        assertTrue(saves.size() >= 2, saves.size() + " saves in 2s with an 800ms cap");
+        long firstSave = millisBetween(first, saves.get(0));
+        assertTrue(firstSave >= 790 && firstSave < 1400, "First save after " + firstSave + "ms");
+    }
+
+    @Test
+    void flushSavesNowInsteadOfLater(){
+        Autosave autosave = new Autosave("Test", this::save, 300, 10_000);
+        autosave.request();
+        assertTrue(autosave.flush());
+        assertEquals(1, saves.size(), "The flush waits for its save");
+        sleep(600);
+        assertEquals(1, saves.size(), "The save that was waiting is dropped");
+        assertNull(autosave.getLastError());
+    }
+
+    @Test
+    void failuresAreReportedUntilASaveSucceeds(){
+        boolean[] fail = {true};
+        Autosave autosave = new Autosave("Test", () -> {
+            if(fail[0])
+                throw new IOException("Disk full");
+        }, 300, 10_000);
+        assertFalse(autosave.flush());
+        assertEquals("Disk full", autosave.getLastError());
+        assertTrue(autosave.statsToLabel().contains("1 failed"), autosave.statsToLabel());
+
+        fail[0] = false;
+        assertTrue(autosave.flush());
+        assertNull(autosave.getLastError());
+    }
+}
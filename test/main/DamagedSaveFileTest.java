@@ -0,0 +1,83 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import org.junit.jupiter.api.*;
+
+//A save file that exists but can't be read is set aside with its journal, and nothing is saved over either of them, nor
+//is the old text file loaded in its place, until the user chooses to start again
+class DamagedSaveFileTest {
+    private static Path dir;
+    private static byte[] damaged;
+    private static byte[] journal;
+    private static byte[] text;
+
+    private static DbFile.Contents contents(String... tickers){
+        DbFile.Contents contents = new DbFile.Contents();
+        contents.baseRates = new float[Currency.values().length];
+        Arrays.fill(contents.baseRates, 1f);
+        contents.priceTime = LocalDateTime.of(2024, 1, 2, 3, 4);
+        contents.dbTime = contents.priceTime;
+        for(String i : tickers){
+            contents.entries.add(new Entry(i, 1, false, 2f, Currency.CAD));
+        }
+        return contents;
+    }
+
+    //The database reads its directory once, when it is first used, and each test class runs in a fresh JVM
+    @BeforeAll
+    static void damageSaveFile() throws IOException {
+        dir = Files.createTempDirectory("stocks");
+        System.setProperty("stocks.dir", dir.toString());
+
+        DbFile.writeText(dir.resolve("prevInfo.txt"), contents("STALE"));
+        DbFile.writeBinary(dir.resolve("prevInfo.bin"), contents("AAA", "BBB"));
+        try(Journal log = Journal.open(dir.resolve("prevInfo.journal"), 0, new Journal.Replayer(){
+            public void created(LocalDateTime time, int id, int serial, Entry entry){}
+            public void removed(LocalDateTime time, int id){}
+            public void priceSet(int id, float price){}
+            public void settingsChanged(DbFile.Contents settings){}
+        })){
+            log.appendCreate(LocalDateTime.now(), 2, 2, new Entry("CCC", 1, false, 2f, Currency.CAD));
+            log.force();
+        }
+
+        Path bin = dir.resolve("prevInfo.bin");
+        damaged = Files.readAllBytes(bin);
+        damaged[0] ^= 0xff; //Not the magic number any more
+        Files.write(bin, damaged);
+        journal = Files.readAllBytes(dir.resolve("prevInfo.journal"));
+        text = Files.readAllBytes(dir.resolve("prevInfo.txt"));
+    }
+
+    @Test
+    void nothingIsSavedOverADamagedFile() throws IOException {
+        Db.readDb();
+        assertNotNull(Db.getLoadProblem());
+        assertEquals(0, Db.getNumEntries(), "Neither the stale text file nor the journal is loaded in its place");
+        assertFalse(Files.exists(dir.resolve("prevInfo.bin")));
+        assertArrayEquals(damaged, Files.readAllBytes(dir.resolve("prevInfo.bin.corrupt")));
+        assertArrayEquals(journal, Files.readAllBytes(dir.resolve("prevInfo.journal.corrupt")));
+
+        //Changes and saves are held back until the user has been told
+        Db.createEntry(new Entry("NEW", 1, false, 2f, Currency.CAD));
+        assertFalse(Db.writeDb());
+        assertFalse(Files.exists(dir.resolve("prevInfo.bin")));
+        assertFalse(Files.exists(dir.resolve("prevInfo.journal")));
+        assertArrayEquals(damaged, Files.readAllBytes(dir.resolve("prevInfo.bin.corrupt")));
+        assertArrayEquals(journal, Files.readAllBytes(dir.resolve("prevInfo.journal.corrupt")));
+        assertArrayEquals(text, Files.readAllBytes(dir.resolve("prevInfo.txt")));
+
+        //Once told, saving starts again beside the set aside files
+        assertTrue(Db.acknowledgeLoadProblem());
+        assertNull(Db.getLoadProblem());
+        assertEquals(1, DbFile.readBinary(dir.resolve("prevInfo.bin")).entries.size());
+        assertArrayEquals(damaged, Files.readAllBytes(dir.resolve("prevInfo.bin.corrupt")));
+        assertArrayEquals(journal, Files.readAllBytes(dir.resolve("prevInfo.journal.corrupt")));
+        assertArrayEquals(text, Files.readAllBytes(dir.resolve("prevInfo.txt")));
+    }
+}
@@ -0,0 +1,159 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.CountDownLatch;
+import javax.swing.SwingUtilities;
+import javax.swing.event.TableModelEvent;
+import org.junit.jupiter.api.*;
+
+//Every change is announced as it is made, and the table follows the announcements rather than reloading
+//The EDT gets them in batches, with repeated price changes to an entry counted once
+class DbEventTest {
+
+    //The database reads its directory once, when it is first used, and each test class runs in a fresh JVM
+    @BeforeAll
+    static void useTemporaryDirectory() throws IOException {
+        System.setProperty("stocks.dir", Files.createTempDirectory("stocks").toString());
+        Db.readDb();
+    }
+
+    private static Entry entry(String ticker, String... tags){
+        Entry entry = new Entry(ticker, 1, false, 2f, Currency.CAD);
+        for(int i = 0; i < tags.length; i += 2){
+            entry.addValue(tags[i], tags[i + 1]);
+        }
+        return entry;
+    }
+
+    private static DbEvent event(DbEvent.Type type, int id){
+        return new DbEvent(type, id, -1);
+    }
+
+    private static List<String> names(List<DbEvent> events){
+        List<String> names = new ArrayList<>();
+        for(DbEvent i : events){
+            names.add(i.toString());
+        }
+        return names;
+    }
+
+    @Test
+    void databaseAnnouncesEachChange(){
+        List<DbEvent> events = new ArrayList<>();
+        DbListener listener = events::addAll;
+        Db.addListener(listener);
+        try{
+            Entry first = entry("AAA", "Sector", "Energy");
+            Entry second = entry("BBB");
+            int start = Db.getNumEntries();
+            Db.createEntry(first);
+            Db.createEntry(second);
+            Db.setPrice(first.getId(), 3f);
+            Db.removeEntry(Db.getEntryById(first.getId()));
+            assertEquals(List.of(
+                "ENTRY_ADDED " + first.getId() + "@" + start, "TAGS_CHANGED -1@-1",
+                "ENTRY_ADDED " + second.getId() + "@" + (start + 1),
+                "PRICE_CHANGED " + first.getId() + "@-1",
+                "ENTRY_REMOVED " + first.getId() + "@" + start, "TAGS_CHANGED -1@-1"), names(events));
+
+            events.clear();
+            Db.toggleAutoRate();
+            Db.toggleAutoRate();
+            assertEquals(List.of("SETTINGS_CHANGED -1@-1", "SETTINGS_CHANGED -1@-1"), names(events));
+        } finally{
+            Db.removeListener(listener);
+        }
+
+        events.clear();
+        Db.createEntry(entry("CCC"));
+        assertEquals(List.of(), events, "Nothing reaches a listener once it is removed");
+    }
+
+    //Holds the EDT until released, so events sent meanwhile pile up the way they do behind a slow repaint
+    private static CountDownLatch blockEdt(){
+        CountDownLatch release = new CountDownLatch(1);
+        SwingUtilities.invokeLater(() -> {
+            try{
+                release.await();
+            } catch(InterruptedException e){
+                Thread.currentThread().interrupt();
+            }
+        });
+        return release;
+    }
+
+    @Test
+    void dispatcherBatchesAndCoalescesPrices() throws Exception {
+        List<List<String>> batches = Collections.synchronizedList(new ArrayList<>());
+        EdtDispatcher dispatcher = new EdtDispatcher(events -> {
+            assertTrue(SwingUtilities.isEventDispatchThread());
+            batches.add(names(events));
+        });
+
+        CountDownLatch release = blockEdt();
+        for(int i = 0; i < 3; i++){
+            dispatcher.dbChanged(List.of(event(DbEvent.Type.PRICE_CHANGED, 1)));
+            dispatcher.dbChanged(List.of(event(DbEvent.Type.PRICE_CHANGED, 2)));
+        }
+        dispatcher.dbChanged(List.of(event(DbEvent.Type.SETTINGS_CHANGED, -1)));
+        dispatcher.dbChanged(List.of(event(DbEvent.Type.PRICE_CHANGED, 1)));
+        dispatcher.dbChanged(List.of(new DbEvent(DbEvent.Type.ENTRY_REMOVED, 1, 0)));
+        dispatcher.dbChanged(List.of(event(DbEvent.Type.PRICE_CHANGED, 1))); //The id may be a new entry by now, so it is kept
+        release.countDown();
+        SwingUtilities.invokeAndWait(() -> {});
+
+        assertEquals(List.of(List.of(
+            "PRICE_CHANGED 1@-1", "PRICE_CHANGED 2@-1", "SETTINGS_CHANGED -1@-1",
+            "ENTRY_REMOVED 1@0", "PRICE_CHANGED 1@-1")), batches);
+
+        //Once a batch is delivered the next change is scheduled afresh
+        dispatcher.dbChanged(List.of(event(DbEvent.Type.PRICE_CHANGED, 2)));
+        SwingUtilities.invokeAndWait(() -> {});
+        assertEquals(List.of("PRICE_CHANGED 2@-1"), batches.get(1));
+    }
+
+    @Test
+    void tableFollowsEvents(){
+        EntryTableModel model = new EntryTableModel();
+        model.refresh();
+        List<String> fired = new ArrayList<>();
+        model.addTableModelListener(e -> fired.add(e.getType() + " " + e.getFirstRow() + "-" + e.getLastRow()));
+
+        List<DbEvent> events = new ArrayList<>();
+        DbListener listener = events::addAll;
+        Db.addListener(listener);
+        Entry[] entries = new Entry[5];
+        try{
+            for(int i = 0; i < entries.length; i++){
+                entries[i] = entry("T" + i);
+                Db.createEntry(entries[i]);
+            }
+            Db.removeEntry(Db.getEntryById(entries[1].getId()));
+            for(int i : new int[]{4, 0, 3, 4}){
+                Db.setPrice(entries[i].getId(), 5f);
+            }
+        } finally{
+            Db.removeListener(listener);
+        }
+        int start = model.getRowCount();
+        model.dbChanged(events);
+
+        assertEquals(start + 4, model.getRowCount());
+        for(int i = 0, row = start; i < entries.length; i++){
+            if(i != 1)
+                assertEquals("T" + i, model.getValueAt(row++, EntryTableModel.TICKER));
+        }
+        List<String> expected = new ArrayList<>();
+        for(int i = 0; i < entries.length; i++){
+            expected.add(TableModelEvent.INSERT + " " + (start + i) + "-" + (start + i));
+        }
+        expected.add(TableModelEvent.DELETE + " " + (start + 1) + "-" + (start + 1));
+        expected.add(TableModelEvent.UPDATE + " " + start + "-" + start); //The row of T0, then those of T3 and T4 together
+        expected.add(TableModelEvent.UPDATE + " " + (start + 2) + "-" + (start + 3));
+        assertEquals(expected, fired);
+    }
+}
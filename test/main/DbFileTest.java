@@ -0,0 +1,86 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+//A damaged save file must only ever fail with an IOException, which sends loading back to the text file
+class DbFileTest {
+    @TempDir
+    Path dir;
+
+    private byte[] validFile() throws IOException {
+        DbFile.Contents contents = new DbFile.Contents();
+        contents.baseRates = new float[Currency.values().length];
+        Arrays.fill(contents.baseRates, 1f);
+        contents.priceTime = LocalDateTime.of(2024, 1, 2, 3, 4);
+        contents.dbTime = contents.priceTime;
+        for(int i = 0; i < 20; i++){
+            Entry entry = new Entry("T" + i, i + 1, i % 2 == 0, 2.5f, Currency.values()[i % Currency.values().length]);
+            entry.addValue("Sector", "S" + i % 3);
+            contents.entries.add(entry);
+        }
+        Path path = dir.resolve("valid.bin");
+        DbFile.writeBinary(path, contents);
+        return Files.readAllBytes(path);
+    }
+
+    //Returns the contents, or null if reading failed as it should
+    private DbFile.Contents read(byte[] bytes) throws IOException {
+        Path path = dir.resolve("damaged.bin");
+        Files.write(path, bytes);
+        try{
+            return DbFile.readBinary(path);
+        } catch(IOException expected){
+            return null;
+        }
+    }
+
+    @Test
+    void readsValidFile() throws IOException {
+        DbFile.Contents contents = read(validFile());
+        assertNotNull(contents);
+        assertEquals(20, contents.entries.size());
+        assertEquals("T7,8.0,false,2.5,EUR,Sector,S1", contents.entries.get(7).toString().strip());
+    }
+
+    @Test
+    void truncatedFileFailsCleanly() throws IOException {
+        byte[] valid = validFile();
+        for(int length = 0; length < valid.length; length++){
+            DbFile.Contents contents = read(Arrays.copyOf(valid, length));
+            if(contents != null) //Cut inside the records, the damaged entries are left out
+                assertTrue(contents.entries.size() + contents.skipped <= 20, "Cut at " + length);
+        }
+    }
+
+    @Test
+    void damagedCountsFailCleanly() throws IOException {
+        byte[] valid = validFile();
+        for(int offset = 8; offset + 4 <= valid.length; offset++){
+            for(int count : new int[]{-1, Integer.MIN_VALUE, Integer.MAX_VALUE, 1 << 28}){
+                byte[] damaged = valid.clone();
+                ByteBuffer.wrap(damaged).putInt(offset, count);
+                read(damaged); //Anything but an IOException fails the test
+            }
+        }
+    }
+
+    @Test
+    void garbageFailsCleanly() throws IOException {
+        byte[] header = Arrays.copyOf(validFile(), 8); //Magic number and version, so decoding gets past the first check
+        Random random = new Random(1);
+        for(int i = 0; i < 500; i++){
+            byte[] garbage = new byte[8 + random.nextInt(400)];
+            random.nextBytes(garbage);
+            System.arraycopy(header, 0, garbage, 0, 8);
+            read(garbage);
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+//Rows are overwritten when an id is reused, so nothing of the previous entry may show through
+class EntryStoreTest {
+    private static final float[] FACTORS = new float[Currency.values().length];
+
+    static{
+        Arrays.fill(FACTORS, 1f);
+    }
+
+    private static Entry entry(String ticker, float price, String... tags){
+        Entry entry = new Entry(ticker, 2, false, price, Currency.CAD);
+        for(int i = 0; i < tags.length; i += 2){
+            entry.addValue(tags[i], tags[i + 1]);
+        }
+        return entry;
+    }
+
+    private static BitSet ids(int... ids){
+        BitSet set = new BitSet();
+        for(int i : ids){
+            set.set(i);
+        }
+        return set;
+    }
+
+    @Test
+    void reusedIdsDropTheTagsOfTheOldEntry(){
+        EntryStore store = new EntryStore();
+        store.set(0, entry("AAA", 1f, "Sector", "Energy", "Region", "Canada"));
+        store.set(1, entry("BBB", 2f, "Sector", "Banks"));
+        int generation = store.getGeneration(0);
+
+        store.set(0, entry("CCC", 3f, "Account", "RRSP"));
+        Entry reused = store.get(0);
+        assertEquals("CCC", reused.getTicker());
+        assertEquals(3f, reused.getPriceF());
+        assertEquals(1, reused.getNumTags());
+        assertEquals("RRSP", reused.valueForTag("Account"));
+        assertEquals(GroupSums.UNCLASSIFIED, reused.valueForTag("Sector"));
+        assertNotEquals(generation, store.getGeneration(0), "Views of the old entry must be told apart");
+        assertEquals(0, reused.getId());
+        assertEquals(store.getGeneration(0), reused.getGeneration());
+
+        assertEquals(Map.of("Banks", 4f, GroupSums.UNCLASSIFIED, 6f), store.sum(ids(0, 1), "Sector", FACTORS));
+        assertEquals(Map.of(GroupSums.UNCLASSIFIED, 10f), store.sum(ids(0, 1), "Region", FACTORS));
+        assertEquals(Map.of("RRSP", 6f, GroupSums.UNCLASSIFIED, 4f), store.sum(ids(0, 1), "Account", FACTORS));
+    }
+
+    @Test
+    void rowsBeyondTheFirstColumnsHoldNoTags(){
+        EntryStore store = new EntryStore();
+        store.set(0, entry("AAA", 1f, "Broker", "First"));
+        store.set(100, entry("BBB", 1f)); //Grows every column, including the tag column made for row 0
+        store.set(50, entry("CCC", 1f, "Style", "Growth"));
+
+        assertEquals(0, store.get(100).getNumTags());
+        assertEquals(List.of(Map.entry("Style", "Growth")), store.get(50).getIterable());
+        assertEquals(Map.of("First", 2f, GroupSums.UNCLASSIFIED, 4f), store.sum(ids(0, 50, 100), "Broker", FACTORS));
+        assertEquals(Map.of(GroupSums.UNCLASSIFIED, 6f), store.sum(ids(0, 50, 100), "No such tag", FACTORS));
+        assertEquals(Map.of("AAA", 2f, "BBB", 2f, "CCC", 2f), store.sum(ids(0, 50, 100), "", FACTORS));
+    }
+
+    @Test
+    void replacingAnEntryKeepsItsSerial(){
+        EntryStore store = new EntryStore();
+        store.set(3, entry("AAA", 1f));
+        store.setSerial(3, 7);
+        store.set(3, entry("AAA", 5f, "Sector", "Energy"));
+        assertEquals(7, store.getSerial(3), "Serials belong to the caller and are not reset by set");
+        assertEquals(10f, store.getValue(3));
+    }
+}
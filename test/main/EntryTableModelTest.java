@@ -0,0 +1,65 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import org.junit.jupiter.api.*;
+
+//The table shows each entry in the order they were added, reading its cells from the database as they are painted
+class EntryTableModelTest {
+
+    //The database reads its directory once, when it is first used, and each test class runs in a fresh JVM
+    @BeforeAll
+    static void useTemporaryDirectory() throws IOException {
+        System.setProperty("stocks.dir", Files.createTempDirectory("stocks").toString());
+        Db.readDb();
+    }
+
+    @Test
+    void cellsComeFromTheEntries(){
+        Entry first = new Entry("AAA", 4, true, 2.5f, Currency.USD);
+        first.addValue("Sector", "Energy");
+        first.addValue("Country", "CA");
+        Db.createEntry(first);
+        Db.createEntry(new Entry("BBB", 1, false, 3f, Currency.CAD));
+
+        EntryTableModel model = new EntryTableModel();
+        model.refresh();
+        assertEquals(2, model.getRowCount());
+        assertEquals(8, model.getColumnCount());
+        assertEquals("Ticker", model.getColumnName(EntryTableModel.TICKER));
+        assertEquals(Float.class, model.getColumnClass(EntryTableModel.VALUE));
+
+        assertEquals("Remove", model.getValueAt(0, EntryTableModel.REMOVE));
+        assertEquals("Modify", model.getValueAt(0, EntryTableModel.MODIFY));
+        assertEquals("AAA", model.getValueAt(0, EntryTableModel.TICKER));
+        assertEquals("USD", model.getValueAt(0, EntryTableModel.CURRENCY));
+        assertEquals(4f, model.getValueAt(0, EntryTableModel.QUANTITY));
+        assertEquals(2.5f, model.getValueAt(0, EntryTableModel.PRICE));
+        assertEquals(10f, model.getValueAt(0, EntryTableModel.VALUE));
+        assertEquals("Sector: Energy, Country: CA", model.getValueAt(0, EntryTableModel.TAGS));
+        assertEquals("BBB", model.getValueAt(1, EntryTableModel.TICKER));
+        assertEquals("", model.getValueAt(1, EntryTableModel.TAGS));
+        assertEquals(first.getId(), model.getEntry(0).getId());
+
+        //A cell read after a change shows it, even though the row was read just before
+        Db.setPrice(first.getId(), 3f);
+        model.dbChanged(List.of(new DbEvent(DbEvent.Type.PRICE_CHANGED, first.getId(), -1)));
+        assertEquals(12f, model.getValueAt(0, EntryTableModel.VALUE));
+
+        //Until the model hears of a removal the row stays, blank rather than showing a missing or reused entry
+        //The last row read is kept across its cells, so paint another row first as the table would
+        Db.removeEntry(Db.getEntryById(first.getId()));
+        assertEquals(2, model.getRowCount());
+        assertEquals("BBB", model.getValueAt(1, EntryTableModel.TICKER));
+        assertNull(model.getEntry(0));
+        assertEquals("", model.getValueAt(0, EntryTableModel.TICKER));
+        assertNull(model.getValueAt(0, EntryTableModel.PRICE));
+
+        model.refresh();
+        assertEquals(1, model.getRowCount());
+        assertEquals("BBB", model.getValueAt(0, EntryTableModel.TICKER));
+    }
+}
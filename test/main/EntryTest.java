@@ -0,0 +1,83 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+//Entries written as lines of the text file read back the same, tags in the same order
+class EntryTest {
+
+    private static Entry entry(String ticker, float quantity, boolean updatePrice, float price, Currency currency, String... tags){
+        Entry entry = new Entry(ticker, quantity, updatePrice, price, currency);
+        for(int i = 0; i < tags.length; i += 2){
+            entry.addValue(tags[i], tags[i + 1]);
+        }
+        return entry;
+    }
+
+    private static void assertSameEntry(Entry expected, Entry actual){
+        assertNotNull(actual, expected.toString());
+        assertEquals(expected.getTicker(), actual.getTicker());
+        assertEquals(expected.getQuantityF(), actual.getQuantityF());
+        assertEquals(expected.getUpdatePrice(), actual.getUpdatePrice());
+        assertEquals(expected.getPriceF(), actual.getPriceF());
+        assertEquals(expected.getCurrency(), actual.getCurrency());
+        assertEquals(expected.getIterable(), actual.getIterable());
+    }
+
+    @Test
+    void savedLinesReadBack() throws IOException {
+        Entry[] entries = {
+            entry("AAA", 10, true, 12.5f, Currency.CAD),
+            entry("TSX:RY", 0.1f, false, 1e-5f, Currency.USD, "Sector", "Banks", "Country", "CA", "Account", "TFSA"),
+            entry("BIG", 12345678f, true, 3.4028235e38f, Currency.EUR, "Note", "Has spaces and: colons"),
+        };
+
+        //Written the way a save writes them, sharing one buffer, and read back line by line as a load does
+        StringWriter out = new StringWriter();
+        StringBuilder buffer = new StringBuilder();
+        for(Entry i : entries){
+            i.writeTo(out, buffer);
+        }
+        BufferedReader in = new BufferedReader(new StringReader(out.toString()));
+        for(Entry i : entries){
+            assertSameEntry(i, Entry.fromString(in.readLine()));
+        }
+        assertNull(in.readLine());
+
+        for(Entry i : entries){
+            assertEquals(i.toString(), Entry.fromString(i.toString().trim()).toString(), "Writing the parsed line gives the same line");
+        }
+    }
+
+    @Test
+    void laterValueOfATagReplacesTheEarlier(){
+        Entry entry = Entry.fromString("AAA,1.0,false,2.0,CAD,Sector,Energy,Country,CA,Sector,Banks");
+        assertEquals(List.of(Map.entry("Sector", "Banks"), Map.entry("Country", "CA")), entry.getIterable());
+    }
+
+    @Test
+    void trailingEmptyFieldsAreIgnored(){
+        assertSameEntry(entry("AAA", 1, true, 2, Currency.CAD, "Sector", "Energy"), Entry.fromString("AAA,1.0,true,2.0,CAD,Sector,Energy,,,"));
+        assertSameEntry(entry("AAA", 1, false, 2, Currency.CAD), Entry.fromString("AAA,1,false,2,CAD,"));
+    }
+
+    @Test
+    void malformedLinesAreRefused(){
+        String[] lines = {
+            "",
+            "AAA",
+            "AAA,1.0,true,2.0",
+            "AAA,one,true,2.0,CAD",
+            "AAA,1.0,true,2.0,XYZ",
+            "AAA,1.0,true,2.0,CAD,Sector",
+            "AAA,1.0,true,2.0,CAD,Sector,Energy,Country",
+            "AAA,1.0,true,2.0,CAD,Sector,,",
+        };
+        for(String i : lines){
+            assertNull(Entry.fromString(i), i);
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+//Selections step through included, excluded and cleared, and are kept only while the values they name still exist
+class FilterModelTest {
+
+    //The database reads its directory once, when it is first used, and each test class runs in a fresh JVM
+    @BeforeAll
+    static void useTemporaryDirectory() throws IOException {
+        System.setProperty("stocks.dir", Files.createTempDirectory("stocks").toString());
+        Db.readDb();
+    }
+
+    private static Entry entry(String ticker, String... tags){
+        Entry entry = new Entry(ticker, 1, false, 2f, Currency.CAD);
+        for(int i = 0; i < tags.length; i += 2){
+            entry.addValue(tags[i], tags[i + 1]);
+        }
+        Db.createEntry(entry);
+        return entry;
+    }
+
+    @Test
+    void clicksCycleThroughTheStates(){
+        FilterModel filters = new FilterModel();
+        assertEquals(FilterModel.State.NONE, filters.getState("Sector", "Energy"));
+        assertEquals(FilterModel.State.NONE, filters.getState(null, "Energy"));
+        assertEquals("No filters, every entry is graphed", filters.describe());
+
+        assertEquals(FilterModel.State.INCLUDE, filters.cycle("Sector", "Energy"));
+        assertEquals(FilterModel.State.INCLUDE, filters.cycle("Sector", "Banks"));
+        assertEquals(FilterModel.State.EXCLUDE, filters.cycle("Sector", "Banks"));
+        assertEquals(FilterModel.State.INCLUDE, filters.cycle("Country", "CA"));
+        assertEquals(FilterModel.State.EXCLUDE, filters.getState("Sector", "Banks"));
+        assertEquals(2, filters.countSelected("Sector"));
+        assertEquals(0, filters.countSelected(null));
+        assertEquals("Only Country: CA, Sector: Energy; Not Sector: Banks", filters.describe());
+
+        ArrayList<String> incVal = new ArrayList<>();
+        ArrayList<String> incTag = new ArrayList<>();
+        ArrayList<String> remVal = new ArrayList<>();
+        ArrayList<String> remTag = new ArrayList<>();
+        filters.fillCriteria(incVal, incTag, remVal, remTag);
+        assertEquals(List.of("CA", "Energy"), incVal);
+        assertEquals(List.of("Country", "Sector"), incTag);
+        assertEquals(List.of("Banks"), remVal);
+        assertEquals(List.of("Sector"), remTag);
+
+        //Clicking past excluded clears the value, and a tag with nothing selected is forgotten
+        assertEquals(FilterModel.State.EXCLUDE, filters.cycle("Country", "CA"));
+        assertEquals(FilterModel.State.NONE, filters.cycle("Country", "CA"));
+        assertEquals(0, filters.countSelected("Country"));
+        assertEquals(FilterModel.State.NONE, filters.cycle("Sector", "Banks"));
+        assertEquals("Only Sector: Energy", filters.describe());
+
+        filters.clear();
+        assertEquals(0, filters.countSelected("Sector"));
+        assertEquals("No filters, every entry is graphed", filters.describe());
+    }
+
+    @Test
+    void valuesAreSortedAndSearched(){
+        entry("AAA", "Exchange", "nyse");
+        entry("BBB", "Exchange", "TSX");
+        entry("CCC", "Exchange", "Nasdaq");
+        FilterModel filters = new FilterModel();
+        assertArrayEquals(new String[]{"Nasdaq", "nyse", "TSX"}, filters.values("Exchange", null));
+        assertArrayEquals(new String[]{"Nasdaq", "nyse"}, filters.values("Exchange", "N"));
+        assertArrayEquals(new String[]{"TSX"}, filters.values("Exchange", "ts"));
+        assertArrayEquals(new String[0], filters.values("Exchange", "LSE"));
+        assertArrayEquals(new String[0], filters.values("No such tag", ""));
+
+        //Values are kept until the model is told the tags changed
+        entry("DDD", "Exchange", "LSE");
+        assertArrayEquals(new String[0], filters.values("Exchange", "LSE"));
+        filters.tagsChanged();
+        assertArrayEquals(new String[]{"LSE"}, filters.values("Exchange", "LSE"));
+    }
+
+    @Test
+    void selectionsOfVanishedValuesAreDropped(){
+        Entry energy = entry("XOM", "Industry", "Energy", "Region", "US");
+        entry("RY", "Industry", "Banks");
+        FilterModel filters = new FilterModel();
+        filters.setAxis("Region");
+        filters.cycle("Industry", "Energy");
+        filters.cycle("Industry", "Banks");
+        filters.cycle("Region", "US");
+
+        Db.removeEntry(Db.getEntryById(energy.getId()));
+        filters.tagsChanged();
+        assertEquals("", filters.getAxis(), "Grouping falls back to tickers once the tag is gone");
+        assertEquals(FilterModel.State.NONE, filters.getState("Industry", "Energy"));
+        assertEquals(FilterModel.State.INCLUDE, filters.getState("Industry", "Banks"));
+        assertEquals(0, filters.countSelected("Region"));
+        assertEquals("Only Industry: Banks", filters.describe());
+
+        filters.setAxis(null);
+        assertEquals("", filters.getAxis());
+    }
+}
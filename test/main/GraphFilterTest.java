@@ -0,0 +1,135 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+//Filters answered from the bitmap index give the same groups as checking every entry, as the graph pane used to
+class GraphFilterTest {
+    private static final String[] SECTORS = {"Energy", "Banks", "Tech", "Utilities", "Mining"};
+    private static final String[] COUNTRIES = {"CA", "US", "UK"};
+
+    private static float[] factors;
+
+    //The database reads its directory once, when it is first used, and each test class runs in a fresh JVM
+    @BeforeAll
+    static void createPortfolio() throws IOException {
+        System.setProperty("stocks.dir", Files.createTempDirectory("stocks").toString());
+        Db.readDb();
+
+        //Rates other than 1, so every currency's conversion shows in the totals
+        if(Db.getAutoRate())
+            Db.toggleAutoRate();
+        float[] baseRates = Db.defaultRates();
+        for(Currency i : Currency.values()){
+            if(i != Currency.BASE){
+                baseRates[i.ordinal()] = 0.5f + i.ordinal() / 8f;
+                assertTrue(Db.setExchangeRate(i, baseRates[i.ordinal()]));
+            }
+        }
+        factors = new RateSnapshot(baseRates).factorsTo(Db.getGraphCurrency());
+
+        Random random = new Random(7);
+        Currency[] currencies = Currency.values();
+        for(int i = 0; i < 200; i++){
+            Entry entry = new Entry("T" + random.nextInt(40), 1 + random.nextInt(100), false, 1 + random.nextInt(5000) / 100f, currencies[random.nextInt(currencies.length)]);
+            if(random.nextInt(5) > 0) //Some entries lack each tag
+                entry.addValue("Sector", SECTORS[random.nextInt(SECTORS.length)]);
+            if(random.nextInt(5) > 0)
+                entry.addValue("Country", COUNTRIES[random.nextInt(COUNTRIES.length)]);
+            Db.createEntry(entry);
+        }
+
+        //Free some ids and fill them again, so the index has bits to clear and to reuse
+        for(int i = 0; i < 30; i++){
+            Db.removeEntry(Db.getEntry(random.nextInt(Db.getNumEntries())));
+        }
+        for(int i = 0; i < 10; i++){
+            Entry entry = new Entry("R" + i, 10, false, 2f, Currency.CAD);
+            entry.addValue("Sector", SECTORS[i % SECTORS.length]);
+            Db.createEntry(entry);
+        }
+    }
+
+    //Checks every entry for each pair, then totals by label and sorts largest first, as before the index
+    private static Map<String, Float> expected(String axis, List<String> incTag, List<String> incVal, List<String> remTag, List<String> remVal){
+        List<Entry> kept = new ArrayList<>();
+        for(int i = 0; i < Db.getNumEntries(); i++){
+            Entry entry = Db.getEntry(i);
+            boolean keep = true;
+            for(int j = 0; j < incVal.size(); j++){
+                keep &= entry.containsPair(incTag.get(j), incVal.get(j));
+            }
+            for(int j = 0; j < remVal.size(); j++){
+                keep &= !entry.containsPair(remTag.get(j), remVal.get(j));
+            }
+            if(keep)
+                kept.add(entry);
+        }
+        if(kept.isEmpty())
+            return null;
+
+        Map<String, Double> sums = new HashMap<>();
+        for(Entry i : kept){
+            String label = "".equals(axis) ? i.getTicker() : i.valueForTag(axis);
+            sums.merge(label, (double) i.getValue() * factors[i.getCurrency().ordinal()], Double::sum);
+        }
+        Map<String, Float> sorted = new LinkedHashMap<>();
+        sums.entrySet().stream().sorted(Collections.reverseOrder(Map.Entry.comparingByValue())).forEach(i -> sorted.put(i.getKey(), i.getValue().floatValue()));
+        return sorted;
+    }
+
+    private static void check(String axis, List<String> incTag, List<String> incVal, List<String> remTag, List<String> remVal){
+        Map<String, Float> expected = expected(axis, incTag, incVal, remTag, remVal);
+        Map<String, Float> actual = Db.findGraphables(axis, new ArrayList<>(incVal), new ArrayList<>(incTag), new ArrayList<>(remVal), new ArrayList<>(remTag));
+        String query = axis + " +" + incTag + incVal + " -" + remTag + remVal;
+        if(expected == null){
+            assertNull(actual, query);
+            return;
+        }
+        assertNotNull(actual, query);
+        assertEquals(expected.keySet(), actual.keySet(), query);
+        for(Map.Entry<String, Float> i : expected.entrySet()){
+            assertEquals(i.getValue(), actual.get(i.getKey()), Math.abs(i.getValue()) * 1e-4f, query + " " + i.getKey());
+        }
+        List<Float> values = new ArrayList<>(actual.values());
+        for(int i = 1; i < values.size(); i++){
+            assertTrue(values.get(i - 1) >= values.get(i), query + " is not largest first");
+        }
+    }
+
+    @Test
+    void everyFilterMatchesCheckingEachEntry(){
+        List<String> none = List.of();
+        for(String axis : new String[]{"", "Sector", "Country", "Nonexistent"}){
+            check(axis, none, none, none, none);
+            check(axis, List.of("Sector"), List.of("Energy"), none, none);
+            check(axis, none, none, List.of("Sector"), List.of("Banks"));
+            check(axis, List.of("Country", "Sector"), List.of("CA", "Tech"), List.of("Sector"), List.of("Energy"));
+            check(axis, List.of("Sector"), List.of("Energy"), List.of("Country", "Country"), List.of("US", "UK"));
+            check(axis, List.of("Sector", "Sector"), List.of("Energy", "Banks"), none, none); //Nothing holds both
+            check(axis, List.of("Sector"), List.of("Nothing"), none, none);
+            check(axis, List.of("Nothing"), List.of("Energy"), none, none);
+            check(axis, none, none, List.of("Nothing"), List.of("Energy"));
+            check(axis, none, none, List.of("Sector", "Sector", "Sector", "Sector", "Sector"), Arrays.asList(SECTORS));
+        }
+    }
+
+    @Test
+    void topGroupsKeepTheRestAsOther(){
+        Map<String, Float> all = Db.findGraphables("Sector", new ArrayList<>(), new ArrayList<>(), new ArrayList<>(List.of("CA")), new ArrayList<>(List.of("Country")));
+        Map<String, Float> top = Db.findGraphables("Sector", new ArrayList<>(), new ArrayList<>(), new ArrayList<>(List.of("CA")), new ArrayList<>(List.of("Country")), 2);
+        assertTrue(Db.hasOtherGroup(top, 2));
+        assertEquals(3, top.size());
+        List<String> labels = new ArrayList<>(all.keySet());
+        assertEquals(labels.subList(0, 2), new ArrayList<>(top.keySet()).subList(0, 2));
+        float rest = 0f;
+        for(String i : labels.subList(2, labels.size())){
+            rest += all.get(i);
+        }
+        assertEquals(rest, top.get(GroupSums.other(labels.size() - 2)), rest * 1e-4f);
+    }
+}
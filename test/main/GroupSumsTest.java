@@ -0,0 +1,46 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+//Groups are named the same way wherever they are totalled, and only the largest few are kept apart from the rest
+class GroupSumsTest {
+
+    @Test
+    void groupsAreNamedThroughTheirLabels(){
+        GroupSums sums = new GroupSums(3);
+        sums.add(0, 1.5);
+        sums.add(2, 2);
+        sums.add(0, 1);
+        sums.add(-1, 4);
+        String[] names = {"Energy", "Unused", "Banks"};
+        assertEquals(Map.of("Energy", 2.5f, "Banks", 2f, GroupSums.UNCLASSIFIED, 4f), sums.toMap(i -> names[i]), "A label nothing was added to is left out");
+
+        //Labels sharing a name are one group
+        assertEquals(Map.of("Same", 4.5f, GroupSums.UNCLASSIFIED, 4f), sums.toMap(i -> "Same"));
+        assertEquals(Map.of(), new GroupSums(0).toMap(i -> "None"));
+    }
+
+    @Test
+    void largestAreKeptInOrderAndTheRestAddedUp(){
+        Map<String, Float> groups = new HashMap<>();
+        for(int i = 1; i <= 10; i++){
+            groups.put("G" + i, (float) i);
+        }
+
+        Map<String, Float> top = GroupSums.largest(groups, 3);
+        assertEquals(List.of("G10", "G9", "G8", "Other (7 more)"), new ArrayList<>(top.keySet()));
+        assertEquals(List.of(10f, 9f, 8f, 28f), new ArrayList<>(top.values()));
+
+        Map<String, Float> all = GroupSums.largest(groups, 10);
+        assertEquals(10, all.size(), "Nothing is left over for an Other group");
+        assertEquals("G10", all.keySet().iterator().next());
+        assertEquals(groups, all);
+        assertEquals(groups, GroupSums.largest(groups, 50));
+
+        assertEquals(Map.of("Other (10 more)", 55f), GroupSums.largest(groups, 0));
+        assertEquals(Map.of(), GroupSums.largest(new HashMap<>(), 3));
+    }
+}
@@ -0,0 +1,116 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+//The running totals must follow every change exactly as totalling the entries afresh would
+class GroupTotalsTest {
+    private static final float[] FACTORS = new float[Currency.values().length];
+
+    static{
+        Arrays.fill(FACTORS, 1f);
+        FACTORS[Currency.USD.ordinal()] = 1.5f;
+    }
+
+    //The database reads its directory once, when it is first used, and each test class runs in a fresh JVM
+    @BeforeAll
+    static void useTemporaryDirectory() throws IOException {
+        System.setProperty("stocks.dir", Files.createTempDirectory("stocks").toString());
+        Db.readDb();
+    }
+
+    private static Entry entry(String ticker, float quantity, float price, Currency currency, String... tags){
+        Entry entry = new Entry(ticker, quantity, false, price, currency);
+        for(int i = 0; i < tags.length; i += 2){
+            entry.addValue(tags[i], tags[i + 1]);
+        }
+        return entry;
+    }
+
+    @Test
+    void pricesChangeTheirGroups(){
+        GroupTotals totals = new GroupTotals();
+        Entry oil = entry("XOM", 10, 2f, Currency.USD, "Sector", "Energy");
+        Entry bank = entry("RY", 4, 5f, Currency.CAD, "Sector", "Banks");
+        Entry plain = entry("XOM", 1, 2f, Currency.USD);
+        totals.addEntry(oil);
+        totals.addEntry(bank);
+        totals.addEntry(plain);
+        assertEquals(Map.of("Energy", 30f, "Banks", 20f, GroupSums.UNCLASSIFIED, 3f), totals.totals("Sector", FACTORS));
+        assertEquals(Map.of("XOM", 33f, "RY", 20f), totals.totals("", FACTORS));
+
+        //As Db.setPrice does: the value before, then the entry with its new price and the value after
+        Entry repriced = entry("XOM", 10, 3f, Currency.USD, "Sector", "Energy");
+        totals.changeValue(repriced, oil.getValue(), repriced.getValue());
+        assertEquals(Map.of("Energy", 45f, "Banks", 20f, GroupSums.UNCLASSIFIED, 3f), totals.totals("Sector", FACTORS));
+        assertEquals(Map.of("XOM", 48f, "RY", 20f), totals.totals("", FACTORS));
+    }
+
+    @Test
+    void emptiedGroupsDisappear(){
+        GroupTotals totals = new GroupTotals();
+        Entry first = entry("AAA", 3, 0.1f, Currency.CAD, "Account", "TFSA");
+        Entry second = entry("BBB", 7, 0.3f, Currency.CAD, "Account", "RRSP");
+        totals.addEntry(first);
+        totals.addEntry(second);
+        totals.changeValue(first, first.getValue(), 0.7f); //Leaves a rounding error in the group if it were kept
+        totals.removeEntry(entry("AAA", 1, 0.7f, Currency.CAD, "Account", "TFSA"));
+
+        assertEquals(Map.of("RRSP", second.getValue()), totals.totals("Account", FACTORS), "Nothing is left unclassified either");
+        assertEquals(Set.of("BBB"), totals.totals("", FACTORS).keySet());
+
+        totals.removeEntry(second);
+        assertEquals(Map.of(), totals.totals("Account", FACTORS));
+        assertEquals(Map.of(), totals.totals("", FACTORS));
+    }
+
+    @Test
+    void reTaggingMovesTheValue(){
+        GroupTotals totals = new GroupTotals();
+        Entry before = entry("AAA", 2, 5f, Currency.CAD, "Sector", "Tech", "Country", "CA");
+        totals.addEntry(before);
+        totals.addEntry(entry("BBB", 1, 4f, Currency.USD, "Sector", "Tech"));
+
+        //An edit is a removal of the old entry and the addition of the new one
+        Entry after = entry("AAA", 2, 5f, Currency.CAD, "Sector", "Energy");
+        totals.removeEntry(before);
+        totals.addEntry(after);
+        assertEquals(Map.of("Tech", 6f, "Energy", 10f), totals.totals("Sector", FACTORS));
+        assertEquals(Map.of(GroupSums.UNCLASSIFIED, 16f), totals.totals("Country", FACTORS));
+        assertEquals(Map.of(GroupSums.UNCLASSIFIED, 16f), totals.totals("No such tag", FACTORS));
+    }
+
+    //An exclusion that matches nothing sends the query through the index instead of the running totals
+    private static void assertTotalsMatchEntries(String axis){
+        Map<String, Float> running = Db.findGraphables(axis, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>());
+        Map<String, Float> summed = Db.findGraphables(axis, new ArrayList<>(), new ArrayList<>(), new ArrayList<>(List.of("None")), new ArrayList<>(List.of("No such tag")));
+        assertEquals(summed.keySet(), running.keySet(), axis);
+        for(Map.Entry<String, Float> i : summed.entrySet()){
+            assertEquals(i.getValue(), running.get(i.getKey()), Math.abs(i.getValue()) * 1e-5f, axis + " " + i.getKey());
+        }
+    }
+
+    @Test
+    void databaseTotalsFollowEdits(){
+        Entry oil = entry("XOM", 10, 2f, Currency.USD, "Sector", "Energy");
+        Entry bank = entry("RY", 4, 5f, Currency.CAD, "Sector", "Banks", "Country", "CA");
+        Entry gone = entry("TD", 3, 7f, Currency.CAD, "Sector", "Banks");
+        Db.createEntry(oil);
+        Db.createEntry(bank);
+        Db.createEntry(gone);
+
+        Db.setPrice(oil.getId(), 2.75f);
+        Db.removeEntry(Db.getEntryById(gone.getId()));
+        Db.removeEntry(Db.getEntryById(bank.getId()));
+        Db.createEntry(entry("RY", 4, 5f, Currency.CAD, "Sector", "Insurance"));
+
+        for(String axis : new String[]{"", "Sector", "Country"}){
+            assertTotalsMatchEntries(axis);
+        }
+        assertEquals(Set.of("Energy", "Insurance"), Db.findGraphables("Sector", new ArrayList<>(), new ArrayList<>(), new ArrayList<>(), new ArrayList<>()).keySet());
+    }
+}
@@ -0,0 +1,150 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.time.LocalDateTime;
+import java.util.*;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+//A journal replays what was fully written and cuts off a record torn by a crash, so appends carry on after the last good one
+class JournalTest {
+    private static final LocalDateTime TIME = LocalDateTime.of(2024, 1, 5, 16, 0);
+
+    @TempDir
+    Path dir;
+
+    private Path path;
+
+    //Collects what is replayed, one line per record
+    private static class Recorder implements Journal.Replayer {
+        final List<String> records = new ArrayList<>();
+
+        @Override
+        public void created(LocalDateTime time, int id, int serial, Entry entry){
+            records.add("create " + id + " " + serial + " " + entry);
+        }
+
+        @Override
+        public void removed(LocalDateTime time, int id){
+            records.add("remove " + id);
+        }
+
+        @Override
+        public void priceSet(int id, float price){
+            records.add("price " + id + " " + price);
+        }
+
+        @Override
+        public void settingsChanged(DbFile.Contents settings){
+            records.add("settings " + settings.apiKey);
+        }
+    }
+
+    private static Entry entry(){
+        Entry entry = new Entry("AAA", 2, true, 1.5f, Currency.CAD);
+        entry.addValue("Sector", "Energy");
+        return entry;
+    }
+
+    @BeforeEach
+    void writeThreeRecords() throws IOException {
+        path = dir.resolve("prevInfo.journal");
+        Files.deleteIfExists(path);
+        try(Journal journal = Journal.open(path, 0, new Recorder())){
+            journal.appendCreate(TIME, 0, 0, entry());
+            journal.appendPrice(0, 2.25f);
+            journal.appendRemove(TIME, 0);
+            journal.force();
+        }
+    }
+
+    private List<String> replay(long savedSequence) throws IOException {
+        Recorder recorder = new Recorder();
+        try(Journal journal = Journal.open(path, savedSequence, recorder)){
+            return recorder.records;
+        }
+    }
+
+    //Offset where each record starts, and the end of the last
+    private List<Integer> recordStarts() throws IOException {
+        ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(path));
+        List<Integer> starts = new ArrayList<>();
+        while(buf.remaining() >= 8){
+            starts.add(buf.position());
+            buf.position(buf.position() + 8 + buf.getInt(buf.position()));
+        }
+        starts.add(buf.position());
+        return starts;
+    }
+
+    private void flipByte(int offset) throws IOException {
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)){
+            ByteBuffer one = ByteBuffer.allocate(1);
+            channel.read(one, offset);
+            one.put(0, (byte) (one.get(0) ^ 0x40)).rewind();
+            channel.write(one, offset);
+        }
+    }
+
+    @Test
+    void recordsAlreadySavedAreSkipped() throws IOException {
+        assertEquals(List.of("create 0 0 " + entry(), "price 0 2.25", "remove 0"), replay(0));
+        assertEquals(List.of("remove 0"), replay(2));
+        assertEquals(List.of(), replay(3));
+
+        try(Journal journal = Journal.open(path, 3, new Recorder())){
+            assertEquals(3, journal.getSequence(), "Sequences carry on from the save file");
+            journal.clear();
+            journal.appendPrice(1, 4f);
+            assertEquals(4, journal.getSequence(), "And keep counting after the journal is cleared");
+        }
+        assertEquals(List.of("price 1 4.0"), replay(3));
+    }
+
+    @Test
+    void truncatedTailIsCutOff() throws IOException {
+        List<Integer> starts = recordStarts();
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)){
+            channel.truncate(starts.get(3) - 3);
+        }
+
+        assertEquals(2, replay(0).size());
+        assertEquals(starts.get(2).longValue(), Files.size(path), "The torn record is removed");
+
+        try(Journal journal = Journal.open(path, 0, new Recorder())){
+            assertEquals(2, journal.getSequence());
+            journal.appendRemove(TIME, 0);
+        }
+        assertEquals(List.of("remove 0"), replay(2), "The record written after the cut is read back");
+    }
+
+    @Test
+    void badChecksumEndsTheReplay() throws IOException {
+        List<Integer> starts = recordStarts();
+        flipByte(starts.get(2) + 12); //Inside the last record's body
+
+        assertEquals(2, replay(0).size());
+        assertEquals(starts.get(2).longValue(), Files.size(path));
+
+        writeThreeRecords();
+        starts = recordStarts();
+        flipByte(starts.get(1) + 20); //A damaged record in the middle loses everything after it too
+        assertEquals(1, replay(0).size());
+        assertEquals(starts.get(1).longValue(), Files.size(path));
+    }
+
+    @Test
+    void impossibleLengthsEndTheReplay() throws IOException {
+        List<Integer> starts = recordStarts();
+        try(FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)){
+            channel.write(ByteBuffer.allocate(4).putInt(0, Integer.MAX_VALUE), starts.get(1));
+        }
+        assertEquals(1, replay(0).size());
+        assertEquals(starts.get(1).longValue(), Files.size(path));
+    }
+}
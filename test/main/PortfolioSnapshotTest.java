@@ -0,0 +1,76 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import org.junit.jupiter.api.*;
+
+//A snapshot answers as of the moment it was taken, including from the value and price histories that keep growing
+class PortfolioSnapshotTest {
+    private static final int MONDAY = (int) LocalDate.of(2024, 1, 8).toEpochDay();
+
+    //The database reads its directory once, when it is first used, and each test class runs in a fresh JVM
+    @BeforeAll
+    static void useTemporaryDirectory() throws IOException {
+        System.setProperty("stocks.dir", Files.createTempDirectory("stocks").toString());
+        Db.readDb();
+    }
+
+    private static void addPrices(String ticker, int firstDay, float... prices) throws IOException {
+        int[] days = new int[prices.length];
+        long[] ticks = new long[prices.length];
+        for(int i = 0; i < prices.length; i++){
+            days[i] = firstDay + i;
+            ticks[i] = Math.round(prices[i] * PriceSeries.TICKS);
+        }
+        Db.getHistory().get(ticker).append(days, ticks, prices.length);
+    }
+
+    @Test
+    void laterHistoryIsNotSeen() throws IOException {
+        Entry entry = new Entry("AAA", 10, false, 2f, Currency.CAD);
+        entry.addValue("Sector", "Energy");
+        Db.createEntry(entry);
+        addPrices("AAA", MONDAY, 1f, 1.5f);
+        Db.recordSnapshot();
+        PortfolioSnapshot snapshot = Db.snapshot();
+
+        Entry later = new Entry("BBB", 5, false, 4f, Currency.CAD);
+        later.addValue("Sector", "Banks");
+        Db.createEntry(later);
+        addPrices("AAA", MONDAY + 2, 3f);
+        addPrices("BBB", MONDAY, 8f);
+        Db.recordSnapshot();
+
+        int row = snapshot.rowOf(entry.getId());
+        LocalDate friday = LocalDate.ofEpochDay(MONDAY + 4);
+        assertEquals(15f, snapshot.valueOn(row, friday), "The price added after the snapshot is not used");
+        assertEquals(10f, snapshot.valueOn(row, LocalDate.ofEpochDay(MONDAY)));
+        assertTrue(Float.isNaN(snapshot.valueOn(row, LocalDate.ofEpochDay(MONDAY - 1))));
+
+        PriceSeries.Points points = snapshot.pricesOf("AAA", LocalDate.ofEpochDay(0), friday);
+        assertEquals(2, points.size);
+        assertEquals(1.5f, points.prices[1]);
+        assertEquals(0, snapshot.pricesOf("BBB", LocalDate.ofEpochDay(0), friday).size, "BBB was not held yet");
+        PortfolioSnapshot current = Db.snapshot();
+        assertEquals(30f, current.valueOn(current.rowOf(entry.getId()), friday), "A new snapshot sees it");
+        assertEquals(3, current.pricesOf("AAA", LocalDate.ofEpochDay(0), friday).size);
+
+        SnapshotLog log = Db.getSnapshots();
+        Instant from = Instant.now().minus(Duration.ofDays(1));
+        Instant to = Instant.now().plus(Duration.ofDays(1));
+        assertEquals(1, snapshot.getHistoryRecords());
+        SnapshotLog.History sectors = log.groups("Sector", from, to, snapshot.getHistoryRecords());
+        assertEquals(1, sectors.times.length);
+        assertEquals(Set.of("Energy"), sectors.series.keySet(), "A group first recorded later is not listed");
+        assertArrayEquals(new float[]{20f}, sectors.series.get("Energy"));
+        assertEquals(Set.of("Energy", "Banks"), log.groups("Sector", from, to).series.keySet());
+
+        SnapshotLog.History entries = log.entries(new int[]{0, 1}, new String[]{"AAA", "BBB"}, from, to, snapshot.getHistoryRecords());
+        assertArrayEquals(new float[]{20f}, entries.series.get("AAA"));
+        assertArrayEquals(new float[]{0f}, entries.series.get("BBB"));
+    }
+}
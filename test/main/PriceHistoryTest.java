@@ -0,0 +1,43 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+//Each ticker's closing prices are kept apart, and read back by date
+class PriceHistoryTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void tickersNeverShareAFile(){
+        assertEquals("RY.TO.hist", PriceHistory.fileName("RY.TO"));
+        assertNotEquals(PriceHistory.fileName("TSX:RY"), PriceHistory.fileName("TSX_RY"));
+        assertNotEquals(PriceHistory.fileName("A/B"), PriceHistory.fileName("A_2FB"));
+        assertNotEquals(PriceHistory.fileName("É"), PriceHistory.fileName("E"));
+    }
+
+    @Test
+    void pricesAreReadBackByDate() throws IOException {
+        LocalDate friday = LocalDate.of(2024, 1, 5);
+        try(PriceHistory history = new PriceHistory(dir)){
+            history.get("TSX:RY").append(new int[]{(int) friday.toEpochDay() - 1, (int) friday.toEpochDay()}, new long[]{1_000_000, 1_012_500}, 2);
+            history.get("TSX_RY").append(new int[]{(int) friday.toEpochDay()}, new long[]{50_000}, 1);
+        }
+
+        try(PriceHistory history = new PriceHistory(dir)){
+            PriceSeries series = history.find("TSX:RY");
+            assertEquals(101.25f, series.priceOn(friday.plusDays(2)), "Sunday takes Friday's close");
+            assertEquals(100f, series.priceOn(friday.minusDays(1)));
+            assertTrue(Float.isNaN(series.priceOn(friday.minusDays(2))));
+            assertEquals(1, series.range(friday, LocalDate.MAX).size);
+            assertEquals(2, series.range(LocalDate.MIN, friday).size);
+            assertEquals(5f, history.find("TSX_RY").priceOn(friday));
+            assertNull(history.find("TSX-RY"));
+        }
+    }
+}
@@ -0,0 +1,168 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.net.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import com.sun.net.httpserver.*;
+import org.junit.jupiter.api.*;
+
+//Refreshes against a local server standing in for the provider, answering with the CSV, JSON and errors it sends
+class QuoteFetcherTest {
+    private static final String QUOTE_HEADER = "symbol,open,high,low,price,volume,latestDay,previousClose,change,changePercent\r\n";
+
+    private static HttpServer server;
+    private static final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>(); //Keyed by function and symbol
+
+    //The database reads its directory once, when it is first used, and each test class runs in a fresh JVM
+    @BeforeAll
+    static void startProvider() throws IOException {
+        System.setProperty("stocks.dir", Files.createTempDirectory("stocks").toString());
+        System.setProperty("stocks.batchSize", "2");
+        Db.readDb();
+
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        server.createContext("/query", QuoteFetcherTest::answer);
+        server.start();
+        QuoteFetcher.setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/query");
+        QuoteFetcher.setRequestLimit(0, 1);
+    }
+
+    @AfterAll
+    static void stopProvider(){
+        server.stop(0);
+    }
+
+    private static void answer(HttpExchange exchange) throws IOException {
+        Map<String, String> params = new HashMap<>();
+        for(String i : exchange.getRequestURI().getRawQuery().split("&")){
+            int equals = i.indexOf('=');
+            params.put(i.substring(0, equals), URLDecoder.decode(i.substring(equals + 1), StandardCharsets.UTF_8));
+        }
+        String function = params.get("function");
+        String symbol = params.getOrDefault("symbol", params.getOrDefault("to_currency", ""));
+        requests.computeIfAbsent(function + " " + symbol, k -> new AtomicInteger()).incrementAndGet();
+
+        int status = 200;
+        String body;
+        if(function.equals("BATCH_STOCK_QUOTES"))
+            body = "{\n    \"Information\": \"This API function (BATCH_STOCK_QUOTES) does not exist.\"\n}";
+        else if(function.equals("CURRENCY_EXCHANGE_RATE"))
+            body = "{\n    \"Realtime Currency Exchange Rate\": {\n        \"1. From_Currency Code\": \"CAD\",\n        \"5. Exchange Rate\": \"0.75000000\"\n    }\n}";
+        else if(symbol.equals("BAD"))
+            body = "{\n    \"Error Message\": \"Invalid API call.\"\n}";
+        else if(symbol.equals("NONE"))
+            body = QUOTE_HEADER;
+        else if(symbol.equals("DOWN")){
+            status = 500;
+            body = "Internal Server Error";
+        }
+        else
+            body = QUOTE_HEADER + symbol + ",12.0,13.0,11.5," + (symbol.equals("AAA") ? "12.5" : "7.25") + ",1000,2024-01-05,12.0,0.5,4.1667%\r\n";
+
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length);
+        try(exchange){
+            exchange.getResponseBody().write(bytes);
+        }
+    }
+
+    private static int requestsFor(String key){
+        AtomicInteger count = requests.get(key);
+        return count == null ? 0 : count.get();
+    }
+
+    private static Entry create(String ticker, boolean updatePrice){
+        Entry entry = new Entry(ticker, 2, updatePrice, 1f, Currency.CAD);
+        Db.createEntry(entry);
+        return entry;
+    }
+
+    @Test
+    void refreshSetsPricesAndReportsFailures() throws InterruptedException {
+        Entry first = create("AAA", true);
+        Entry second = create("AAA", true);
+        Entry other = create("BBB", true);
+        Entry bad = create("BAD", true);
+        create("NONE", true);
+        create("DOWN", true);
+        Entry manual = create("MAN", false);
+
+        AtomicInteger progress = new AtomicInteger();
+        List<String> failed = QuoteFetcher.refreshAll(progress::addAndGet);
+
+        assertEquals(12.5f, Db.getEntryById(first.getId()).getPriceF());
+        assertEquals(12.5f, Db.getEntryById(second.getId()).getPriceF());
+        assertEquals(7.25f, Db.getEntryById(other.getId()).getPriceF());
+        assertEquals(1f, Db.getEntryById(bad.getId()).getPriceF(), "A failed ticker keeps its price");
+        assertEquals(1f, Db.getEntryById(manual.getId()).getPriceF());
+        assertEquals(Db.getNumEntries(), progress.get(), "Every entry is reported done, including the manual one");
+
+        Collections.sort(failed);
+        assertEquals(3, failed.size(), failed.toString());
+        assertTrue(failed.get(0).startsWith("BAD (The provider replied: Invalid API call."), failed.get(0));
+        assertTrue(failed.get(1).startsWith("DOWN (Could not reach the provider"), failed.get(1));
+        assertTrue(failed.get(2).startsWith("NONE (No quote was returned"), failed.get(2));
+
+        //The bulk request is answered with an explanation rather than prices, so each ticker falls back to its own
+        //request, and a ticker held by several entries is asked for once
+        int bulkRequests = requestsFor("BATCH_STOCK_QUOTES ");
+        assertTrue(bulkRequests >= 1 && bulkRequests <= 3, bulkRequests + " bulk requests for 3 batches");
+        assertEquals(1, requestsFor("GLOBAL_QUOTE AAA"));
+        assertEquals(1, requestsFor("GLOBAL_QUOTE BAD"));
+        assertEquals(0, requestsFor("GLOBAL_QUOTE MAN"));
+
+        //Prices found are cached, failures are asked for again, and the bulk endpoint is known not to answer
+        failed = QuoteFetcher.refreshAll(completed -> {});
+        assertEquals(3, failed.size());
+        assertEquals(bulkRequests, requestsFor("BATCH_STOCK_QUOTES "));
+        assertEquals(1, requestsFor("GLOBAL_QUOTE AAA"));
+        assertEquals(1, requestsFor("GLOBAL_QUOTE BBB"));
+        assertEquals(2, requestsFor("GLOBAL_QUOTE BAD"));
+    }
+
+    @Test
+    void tickersAreEscapedInTheQuery() throws QuoteException {
+        assertEquals(7.25f, QuoteFetcher.updatePrice("TSX:A&B+C"));
+        assertEquals(1, requestsFor("GLOBAL_QUOTE TSX:A&B+C"));
+    }
+
+    @Test
+    void ratesAreReadFromJson(){
+        float[] rates = new float[Currency.values().length];
+        assertEquals(Currency.values().length - 1, QuoteFetcher.updateRates(rates));
+        assertEquals(0.75f, rates[Currency.USD.ordinal()]);
+        assertEquals(0f, rates[Currency.BASE.ordinal()], "The base currency is never asked for");
+        assertEquals(1, requestsFor("CURRENCY_EXCHANGE_RATE EUR"));
+
+        QuoteFetcher.updateRates(rates);
+        assertEquals(1, requestsFor("CURRENCY_EXCHANGE_RATE EUR"), "Rates are cached like prices");
+    }
+
+    @Test
+    void limiterIsSharedByEveryThread() throws InterruptedException {
+        QuoteFetcher.setRequestLimit(600, 1); //One request every 100ms, after the first
+        try{
+            ExecutorService pool = Executors.newFixedThreadPool(4);
+            List<Callable<Float>> tasks = new ArrayList<>();
+            for(int i = 0; i < 6; i++){
+                String ticker = "LIM" + i;
+                tasks.add(() -> QuoteFetcher.updatePrice(ticker));
+            }
+            long start = System.nanoTime();
+            for(Future<Float> i : pool.invokeAll(tasks)){
+                assertDoesNotThrow(() -> assertEquals(7.25f, i.get()));
+            }
+            long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+            pool.shutdown();
+            assertTrue(elapsedMillis >= 450, "Six requests took " + elapsedMillis + "ms");
+        } finally{
+            QuoteFetcher.setRequestLimit(0, 1);
+        }
+    }
+}
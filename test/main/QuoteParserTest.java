@@ -0,0 +1,129 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.time.LocalDate;
+import org.junit.jupiter.api.*;
+
+//Parses numbers, dates, CSV and JSON the way the provider sends them, without a server
+class QuoteParserTest {
+
+    private static double number(String text) throws QuoteException {
+        return QuoteParser.parseDouble(text.toCharArray(), 0, text.length());
+    }
+
+    private static int date(String text) throws QuoteException {
+        return QuoteParser.parseEpochDay(text.toCharArray(), 0, text.length());
+    }
+
+    private static QuoteException.Reason failure(Executable parse){
+        return assertThrows(QuoteException.class, parse::run).getReason();
+    }
+
+    private interface Executable {
+        void run() throws Exception;
+    }
+
+    @Test
+    void numbersMatchTheLibrary() throws QuoteException {
+        String[] samples = {"0", "12.5", "-12.5", "+3", " 7.25 ", ".5", "5.", "0.00012345", "1.2e3", "1.2E-3", "-4e+2", "123456789012345678901234", "0.1234567890123456789"};
+        for(String i : samples){
+            assertEquals(Double.parseDouble(i.trim()), number(i), 1e-12 * Math.abs(Double.parseDouble(i.trim())), i);
+        }
+        assertEquals(0.3f, QuoteParser.parseFloat("0.3".toCharArray(), 0, 3));
+    }
+
+    @Test
+    void malformedNumbersAreRefused(){
+        for(String i : new String[]{"", " ", "-", ".", "1.2.3", "12%", "1e", "e5", "N/A", "1 2"}){
+            assertEquals(QuoteException.Reason.BAD_NUMBER, failure(() -> number(i)), i);
+        }
+    }
+
+    @Test
+    void datesMatchTheLibrary() throws QuoteException {
+        String[] samples = {"1970-01-01", "1969-12-31", "2024-01-31", "2024-02-29", "2023-03-01", "2000-02-29", "1900-03-01", "0001-01-01", "9999-12-31", " 2024-7-4 "};
+        for(String i : samples){
+            String[] parts = i.trim().split("-");
+            LocalDate expected = LocalDate.of(Integer.parseInt(parts[0]), Integer.parseInt(parts[1]), Integer.parseInt(parts[2]));
+            assertEquals(expected.toEpochDay(), date(i), i);
+        }
+    }
+
+    @Test
+    void impossibleDatesAreRefused(){
+        String[] samples = {"", "2024", "2024-01", "2024-01-", "2024-13-01", "2024-00-10", "2024-01-00", "2024-04-31", "2023-02-29", "1900-02-29", "12024-01-01", "2024-001-01", "2024/01/01", "2024-01-01T00"};
+        for(String i : samples){
+            assertEquals(QuoteException.Reason.BAD_NUMBER, failure(() -> date(i)), i);
+        }
+    }
+
+    @Test
+    void csvColumnsAreFoundByName() throws IOException, QuoteException {
+        String csv = "\r\ntimestamp,open,\"close\"\r\n2024-01-05,\"1,000.5\",12.5\r\n\r\n2024-01-04,\"say \"\"hi\"\"\",11\n";
+        try(QuoteParser in = new QuoteParser(new StringReader(csv))){
+            in.readHeader();
+            int close = in.column("CLOSE");
+            int open = in.column("open");
+            int day = in.column("timestamp");
+            assertEquals(QuoteException.Reason.MISSING_FIELD, failure(() -> in.column("volume")));
+
+            assertTrue(in.nextRow());
+            assertEquals(LocalDate.of(2024, 1, 5).toEpochDay(), in.getEpochDay(day));
+            assertEquals("1,000.5", in.getString(open), "A quoted comma stays in its field");
+            assertEquals(12.5f, in.getFloat(close));
+
+            assertTrue(in.nextRow(), "Blank lines are skipped");
+            assertEquals("say \"hi\"", in.getString(open));
+            assertEquals(11.0, in.getDouble(close));
+            assertFalse(in.nextRow());
+        }
+    }
+
+    @Test
+    void shortRowsAndEmptyResponsesAreReported() throws IOException, QuoteException {
+        try(QuoteParser in = new QuoteParser(new StringReader("a,b,c\n1,2\n"))){
+            in.readHeader();
+            int c = in.column("c");
+            assertTrue(in.nextRow());
+            assertEquals(QuoteException.Reason.MISSING_FIELD, failure(() -> in.getFloat(c)));
+        }
+        try(QuoteParser in = new QuoteParser(new StringReader("  \r\n"))){
+            assertEquals(QuoteException.Reason.NO_DATA, failure(in::readHeader));
+        }
+    }
+
+    @Test
+    void jsonInsteadOfCsvIsAProviderError() throws IOException {
+        try(QuoteParser in = new QuoteParser(new StringReader(" {\n  \"Note\": \"Thank you for using the API, slow down.\"\n}"))){
+            QuoteException e = assertThrows(QuoteException.class, in::readHeader);
+            assertEquals(QuoteException.Reason.PROVIDER, e.getReason());
+            assertEquals("The provider replied: Thank you for using the API, slow down.", e.getMessage());
+        }
+    }
+
+    @Test
+    void jsonKeysIgnoreTheirNumberedPrefix() throws IOException, QuoteException {
+        String json = "{\"Realtime Currency Exchange Rate\": {\"1. From_Currency Code\": \"CAD\", \"Exchange Rate Date\": \"x\", \"5. Exchange Rate\": \"0.73\", \"9. Bid\": 1.5e-1}}";
+        try(QuoteParser in = new QuoteParser(new StringReader(json))){
+            assertEquals(0.73f, in.findFloat("exchange rate"));
+            assertEquals(0.15f, in.findFloat("Bid"), "Bare numbers are read too");
+        }
+    }
+
+    @Test
+    void missingJsonKeysExplainWhy() throws IOException {
+        try(QuoteParser in = new QuoteParser(new StringReader("{\"Error Message\": \"Invalid \\\"API\\\" call.\"}"))){
+            QuoteException e = assertThrows(QuoteException.class, () -> in.findFloat("Exchange Rate"));
+            assertEquals(QuoteException.Reason.PROVIDER, e.getReason());
+            assertEquals("The provider replied: Invalid \"API\" call.", e.getMessage());
+        }
+        try(QuoteParser in = new QuoteParser(new StringReader("{\"Meta Data\": {}}"))){
+            assertEquals(QuoteException.Reason.MISSING_FIELD, failure(() -> in.findFloat("Exchange Rate")));
+        }
+        try(QuoteParser in = new QuoteParser(new StringReader("{\"Exchange Rate\": \"-\"}"))){
+            assertEquals(QuoteException.Reason.BAD_NUMBER, failure(() -> in.findFloat("Exchange Rate")));
+        }
+    }
+}
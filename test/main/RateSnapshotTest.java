@@ -0,0 +1,59 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import org.junit.jupiter.api.Test;
+
+//Every pair of currencies converts through the base currency's rates
+class RateSnapshotTest {
+    private static float[] rates(float usd, float eur, float gbp, float jpy){
+        float[] rates = new float[Currency.values().length];
+        rates[Currency.CAD.ordinal()] = 1f;
+        rates[Currency.USD.ordinal()] = usd;
+        rates[Currency.EUR.ordinal()] = eur;
+        rates[Currency.GBP.ordinal()] = gbp;
+        rates[Currency.JPY.ordinal()] = jpy;
+        return rates;
+    }
+
+    @Test
+    void crossRatesGoThroughTheBase(){
+        RateSnapshot snapshot = new RateSnapshot(rates(0.75f, 0.5f, 0.4f, 100f));
+        assertEquals(0.75f, snapshot.factor(Currency.CAD, Currency.USD));
+        assertEquals(0.01f, snapshot.factor(Currency.JPY, Currency.CAD), 1e-7f);
+        assertEquals(0.5f / 0.75f, snapshot.factor(Currency.USD, Currency.EUR), 1e-6f);
+        assertEquals(1f, snapshot.factor(Currency.GBP, Currency.GBP));
+
+        float[] toUsd = snapshot.factorsTo(Currency.USD);
+        assertEquals(1.5f, toUsd[Currency.EUR.ordinal()], 1e-6f);
+        assertEquals(0.75f, toUsd[Currency.CAD.ordinal()]);
+        for(Currency i : Currency.values()){
+            assertEquals(1f, snapshot.factor(i, Currency.GBP) * snapshot.factor(Currency.GBP, i), 1e-6f, "There and back from " + i);
+        }
+    }
+
+    @Test
+    void baseRateIsAlwaysOne(){
+        float[] given = rates(0.75f, 0.5f, 0.4f, 100f);
+        given[Currency.BASE.ordinal()] = 2f;
+        RateSnapshot snapshot = new RateSnapshot(given);
+        assertEquals(1f, snapshot.getBaseRate(Currency.BASE));
+        assertEquals(2f, given[Currency.BASE.ordinal()], "The caller's array is copied, not changed");
+    }
+
+    @Test
+    void unusableRatesNeverReachAConversion(){
+        assertFalse(RateSnapshot.isValid(0f));
+        assertFalse(RateSnapshot.isValid(-1f));
+        assertFalse(RateSnapshot.isValid(Float.NaN));
+        assertFalse(RateSnapshot.isValid(Float.POSITIVE_INFINITY));
+        assertTrue(RateSnapshot.isValid(Float.MIN_VALUE));
+
+        RateSnapshot snapshot = new RateSnapshot(rates(0f, -1f, Float.NaN, Float.POSITIVE_INFINITY));
+        for(Currency from : Currency.values()){
+            for(Currency to : Currency.values()){
+                assertTrue(RateSnapshot.isValid(snapshot.factor(from, to)), from + " to " + to);
+            }
+        }
+    }
+}
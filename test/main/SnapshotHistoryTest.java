@@ -0,0 +1,49 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.time.*;
+import org.junit.jupiter.api.*;
+
+//The value history follows entries by serial, so an entry that takes a removed entry's id starts a history of its own
+class SnapshotHistoryTest {
+    private static Path dir;
+
+    //The database reads its directory once, when it is first used, and each test class runs in a fresh JVM
+    @BeforeAll
+    static void useTemporaryDirectory() throws IOException {
+        dir = Files.createTempDirectory("stocks");
+        System.setProperty("stocks.dir", dir.toString());
+        Db.readDb();
+    }
+
+    @Test
+    void reusedIdStartsNewHistory() throws IOException {
+        Entry first = new Entry("AAA", 10, false, 1f, Currency.CAD);
+        Db.createEntry(first);
+        Db.createEntry(new Entry("BBB", 20, false, 1f, Currency.CAD));
+        Db.recordSnapshot();
+
+        Db.removeEntry(Db.getEntryById(first.getId()));
+        Entry second = new Entry("CCC", 30, false, 1f, Currency.CAD);
+        Db.createEntry(second);
+        assertEquals(first.getId(), second.getId(), "The lowest free id is reused");
+        Db.recordSnapshot();
+
+        Instant from = Instant.now().minus(Duration.ofDays(1));
+        Instant to = Instant.now().plus(Duration.ofDays(1));
+        SnapshotLog.History history = Db.getSnapshots().entries(new int[]{0, 2}, new String[]{"AAA", "CCC"}, from, to);
+        assertEquals(2, history.times.length);
+        assertArrayEquals(new float[]{10f, 0f}, history.series.get("AAA"));
+        assertArrayEquals(new float[]{0f, 30f}, history.series.get("CCC"));
+
+        //Saved with the serials, and the next serial is kept even though the entry holding the last one is gone
+        Db.removeEntry(Db.getEntryById(second.getId()));
+        assertTrue(Db.writeDb());
+        DbFile.Contents saved = DbFile.readBinary(dir.resolve("prevInfo.bin"));
+        assertArrayEquals(new int[]{1}, saved.serials);
+        assertEquals(3, saved.nextSerial);
+    }
+}
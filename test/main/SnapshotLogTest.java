@@ -0,0 +1,115 @@
+package main;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.*;
+import java.nio.file.*;
+import java.time.*;
+import java.util.*;
+import java.util.zip.CRC32;
+import org.junit.jupiter.api.*;
+import org.junit.jupiter.api.io.TempDir;
+
+//Records are timed by instant, so the hour repeated when the clocks go back keeps its order
+class SnapshotLogTest {
+    private static final ZoneId TORONTO = ZoneId.of("America/Toronto");
+
+    @TempDir
+    Path dir;
+
+    private TimeZone zone;
+
+    @BeforeEach
+    void useToronto(){
+        zone = TimeZone.getDefault();
+        TimeZone.setDefault(TimeZone.getTimeZone(TORONTO));
+    }
+
+    @AfterEach
+    void restoreZone(){
+        TimeZone.setDefault(zone);
+    }
+
+    private static Map<String, Map<String, Float>> byTicker(float value){
+        return Map.of("", Map.of("AAA", value));
+    }
+
+    @Test
+    void timesKeepIncreasingWhenTheClocksGoBack() throws IOException {
+        //01:30 daylight time, then 01:10 standard time forty minutes later
+        Instant first = LocalDateTime.of(2024, 11, 3, 1, 30).atZone(TORONTO).withEarlierOffsetAtOverlap().toInstant();
+        Instant second = LocalDateTime.of(2024, 11, 3, 1, 10).atZone(TORONTO).withLaterOffsetAtOverlap().toInstant();
+        assertTrue(second.isAfter(first));
+
+        Path path = dir.resolve("snapshots.bin");
+        try(SnapshotLog log = SnapshotLog.open(path)){
+            log.append(first, new float[]{1f}, 1, byTicker(1f));
+            log.append(second, new float[]{2f}, 1, byTicker(2f));
+        }
+        try(SnapshotLog log = SnapshotLog.open(path)){
+            SnapshotLog.History history = log.groups("", first, second);
+            assertArrayEquals(new Instant[]{first, second}, history.times);
+            assertArrayEquals(new float[]{1f, 2f}, history.series.get("AAA"));
+            assertEquals(1, log.groups("", second, second).times.length, "The later record alone");
+        }
+    }
+
+    //A record as the first version wrote it: the local time read as UTC, a keyframe holding a single entry value
+    private static void writeVersion1Record(DataOutputStream out, LocalDateTime local, long cents) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream fields = new DataOutputStream(body);
+        fields.writeLong(local.toEpochSecond(ZoneOffset.UTC));
+        fields.writeByte(1); //Keyframe
+        VarInts.write(fields, 0); //New strings
+        VarInts.write(fields, 0); //New groups
+        VarInts.write(fields, 0); //Changed groups
+        VarInts.write(fields, 1); //Changed entries
+        VarInts.write(fields, 0);
+        VarInts.write(fields, VarInts.zigzag(cents));
+        byte[] bytes = body.toByteArray();
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        out.writeInt(bytes.length);
+        out.writeInt((int) crc.getValue());
+        out.write(bytes);
+    }
+
+    @Test
+    void version1FilesAreUpgraded() throws IOException {
+        Path path = dir.resolve("snapshots.bin");
+        LocalDateTime morning = LocalDateTime.of(2024, 11, 3, 0, 45);
+        try(DataOutputStream out = new DataOutputStream(Files.newOutputStream(path))){
+            writeVersion1Record(out, morning, 100);
+            writeVersion1Record(out, morning.plusMinutes(45), 200); //01:30 daylight time
+            writeVersion1Record(out, morning.plusMinutes(25), 300); //01:10 standard time, stored as earlier
+            out.write(new byte[]{0, 0, 0}); //A torn record
+        }
+
+        Instant first = morning.atZone(TORONTO).toInstant();
+        Instant second = morning.plusMinutes(45).atZone(TORONTO).toInstant();
+        try(SnapshotLog log = SnapshotLog.open(path)){
+            assertEquals(3, log.size());
+            SnapshotLog.History history = log.entries(new int[]{0}, new String[]{"AAA"}, Instant.MIN, Instant.MAX);
+            assertArrayEquals(new Instant[]{first, second, second}, history.times, "Times never go backwards");
+            assertArrayEquals(new float[]{1f, 2f, 3f}, history.series.get("AAA"));
+
+            Instant later = second.plus(Duration.ofHours(1));
+            log.append(later, new float[]{4f}, 1, byTicker(4f));
+        }
+        try(SnapshotLog log = SnapshotLog.open(path)){
+            assertEquals(4, log.size(), "Upgraded once and appended to since");
+            SnapshotLog.History history = log.entries(new int[]{0}, new String[]{"AAA"}, second, Instant.MAX);
+            assertArrayEquals(new float[]{2f, 3f, 4f}, history.series.get("AAA"));
+        }
+    }
+
+    @Test
+    void otherFilesAreRefused() throws IOException {
+        Path path = dir.resolve("snapshots.bin");
+        try(DataOutputStream out = new DataOutputStream(Files.newOutputStream(path))){
+            out.writeInt(0x53544b56);
+            out.writeInt(99);
+        }
+        assertThrows(IOException.class, () -> SnapshotLog.open(path));
+    }
+}